@@ -1,6 +1,12 @@
 import app.Application;
+import app.BatchCli;
+import app.FormatBench;
+import app.MappedCli;
+import app.SolveServer;
 import io.github.humbleui.jwm.App;
 
+import java.util.Arrays;
+
 /**
  * Главный класс приложения
  */
@@ -11,6 +17,28 @@ public class Main {
      * @param args аргументы командной строки
      */
     public static void main(String[] args) {
+        // пакетное решение файлов задач без окна
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchCli.main(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        // решение по файлу точек, отображённому в память
+        if (args.length > 0 && args[0].equals("--mapped")) {
+            System.exit(MappedCli.main(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        // сравнение скорости JSON и двоичного формата задачи
+        if (args.length > 0 && args[0].equals("--bench-format")) {
+            System.exit(FormatBench.main(Arrays.copyOfRange(args, 1, args.length)));
+            return;
+        }
+        // локальный HTTP-сервис решения, работает до остановки процесса
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int code = SolveServer.main(Arrays.copyOfRange(args, 1, args.length));
+            if (code != 0)
+                System.exit(code);
+            return;
+        }
         App.start(Application::new);
     }
 }
@@ -1,6 +1,7 @@
 package app;
 
 import controls.InputFactory;
+import dialogs.PanelChords;
 import dialogs.PanelInfo;
 import dialogs.PanelSelectFile;
 import io.github.humbleui.jwm.*;
@@ -39,7 +40,11 @@ public class Application implements Consumer<Event> {
         /**
          * работа с файлами
          */
-        FILE
+        FILE,
+        /**
+         * запрос многих хорд
+         */
+        CHORDS
     }
 
     /**
@@ -96,6 +101,10 @@ public class Application implements Consumer<Event> {
      * Панель выбора файла
      */
     private final PanelSelectFile panelSelectFile;
+    /**
+     * Панель запроса хорд
+     */
+    private final PanelChords panelChords;
 
     /**
      * Конструктор окна приложения
@@ -110,6 +119,9 @@ public class Application implements Consumer<Event> {
         // Панель выбора файла
         panelSelectFile = new PanelSelectFile(window, true, DIALOG_BACKGROUND_COLOR, PANEL_PADDING);
 
+        // Панель запроса хорд
+        panelChords = new PanelChords(window, true, DIALOG_BACKGROUND_COLOR, PANEL_PADDING);
+
         // создаём панель рисования
         panelRendering = new PanelRendering(
                 window, true, PANEL_BACKGROUND_COLOR, PANEL_PADDING, 5, 4, 0, 0,
@@ -203,6 +215,15 @@ public class Application implements Consumer<Event> {
                         case H -> window.minimize();
                         case S -> PanelRendering.save();
                         case O -> PanelRendering.load();
+                        case L -> PanelChords.show();
+                        case Z -> {
+                            if (PanelRendering.isEditable())
+                                PanelRendering.task.undo();
+                        }
+                        case Y -> {
+                            if (PanelRendering.isEditable())
+                                PanelRendering.task.redo();
+                        }
                         case DIGIT1 -> {
                             if (maximizedWindow)
                                 window.restore();
@@ -245,6 +266,7 @@ public class Application implements Consumer<Event> {
         switch (currentMode) {
             case INFO -> panelInfo.accept(e);
             case FILE -> panelSelectFile.accept(e);
+            case CHORDS -> panelChords.accept(e);
             case WORK -> {
                 // передаём события на обработку панелям
                 panelControl.accept(e);
@@ -276,6 +298,7 @@ public class Application implements Consumer<Event> {
         switch (currentMode) {
             case INFO -> panelInfo.paint(canvas, windowCS);
             case FILE -> panelSelectFile.paint(canvas, windowCS);
+            case CHORDS -> panelChords.paint(canvas, windowCS);
         }
     }
 }
@@ -0,0 +1,410 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import misc.Vector2d;
+import solvers.BatchQueryEngine;
+import solvers.Chord;
+import solvers.ChordClipper;
+import solvers.PackedPoints;
+import solvers.SolveMode;
+import solvers.Solver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Решение множества файлов задач без окна
+ * <p>
+ * Файлы читаются и разбираются в одном пуле, решаются - в другом, поэтому
+ * разбор следующих файлов идёт одновременно с решением предыдущих.
+ * Число файлов "в работе" ограничено, чтобы не держать в памяти весь пакет.
+ * На каждый файл пишется одна строка JSON с ответом и временами,
+ * в конце - сводка: файлов в секунду и пар в секунду. Со списком прямоугольников
+ * каждый файл решается для всех них по одному индексу прямых
+ * ({@link BatchQueryEngine}), и строка пишется на каждый прямоугольник
+ */
+public class BatchCli {
+    /**
+     * Сколько файлов может быть в работе на один решающий поток
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+    /**
+     * Кол-во потоков разбора
+     */
+    private static final int PARSE_THREADS = 2;
+    /**
+     * Текст справки
+     */
+    private static final String USAGE = """
+            Использование: --batch [--threads N] [--mode РЕЖИМ | --rects ФАЙЛ] [--out ФАЙЛ] ПУТЬ...
+              ПУТЬ      файл задачи, папка с файлами *.json и *.tbin или @список (по пути в строке)
+              --threads кол-во решающих потоков (по умолчанию - кол-во ядер)
+              --mode    режим решения для всех файлов (по умолчанию - сохранённый в файле)
+              --rects   решить каждый файл для всех прямоугольников из ФАЙЛА вместо его
+                        собственного: по строке "x1 y1 x2 y2" (противоположные вершины)
+              --out     файл для результатов (по умолчанию - стандартный вывод)""";
+
+    /**
+     * Результат решения одного файла
+     *
+     * @param file    путь к файлу
+     * @param rect    номер прямоугольника из списка --rects, -1 - прямоугольник из файла
+     * @param points  кол-во точек
+     * @param mode    режим решения, null для списка прямоугольников
+     * @param i       номер первой точки ответа, -1, если ответа нет
+     * @param j       номер второй точки ответа, -1, если ответа нет
+     * @param a       первая точка ответа
+     * @param b       вторая точка ответа
+     * @param cross   точки пересечения прямой с прямоугольником
+     * @param length  длина хорды, -1, если ответа нет
+     * @param parseMs время чтения и разбора в мс
+     * @param solveMs время решения в мс (для списка прямоугольников - всего списка)
+     * @param error   текст ошибки, null, если файл решён
+     */
+    public record Result(String file, int rect, int points, SolveMode mode, int i, int j, Vector2d a, Vector2d b,
+                         Vector2d[] cross, double length, double parseMs, double solveMs, String error) {
+    }
+
+    /**
+     * Сводка по пакету
+     *
+     * @param files  кол-во файлов
+     * @param failed кол-во файлов с ошибкой
+     * @param pairs  кол-во пар точек во всех решённых файлах
+     * @param nanos  общее время в нс
+     */
+    public record Summary(int files, int failed, long pairs, long nanos) {
+        /**
+         * Пропускная способность по файлам
+         *
+         * @return файлов в секунду
+         */
+        public double filesPerSecond() {
+            return nanos == 0 ? 0 : files * 1e9 / nanos;
+        }
+
+        /**
+         * Пропускная способность по парам точек
+         *
+         * @return пар в секунду
+         */
+        public double pairsPerSecond() {
+            return nanos == 0 ? 0 : pairs * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Разобранная задача, ожидающая решения
+     *
+     * @param file    путь к файлу
+     * @param task    задача
+     * @param parseMs время чтения и разбора в мс
+     */
+    private record Parsed(Path file, Task task, double parseMs) {
+    }
+
+    /**
+     * Запуск из командной строки
+     *
+     * @param args аргументы после --batch
+     * @return код завершения
+     */
+    public static int main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        SolveMode mode = null;
+        Path rects = null;
+        Path out = null;
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int k = 0; k < args.length; k++) {
+                switch (args[k]) {
+                    case "--threads" -> threads = Integer.parseInt(args[++k]);
+                    case "--mode" -> mode = SolveMode.valueOf(args[++k]);
+                    case "--rects" -> rects = Path.of(args[++k]);
+                    case "--out" -> out = Path.of(args[++k]);
+                    default -> paths.add(args[k]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (paths.isEmpty() || threads < 1 || (rects != null && mode != null)) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        List<Vector2d[]> rectangles = null;
+        if (rects != null) {
+            try {
+                rectangles = readRectangles(rects);
+            } catch (IOException e) {
+                System.err.println("Список прямоугольников не прочитан: " + e.getMessage());
+                return 2;
+            }
+        }
+        try (PrintStream stream = out == null ? null : new PrintStream(Files.newOutputStream(out), false, "UTF-8")) {
+            PrintStream sink = stream == null ? System.out : stream;
+            ObjectMapper objectMapper = new ObjectMapper();
+            Consumer<Result> print = result -> {
+                try {
+                    sink.println(objectMapper.writeValueAsString(result));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            };
+            List<Path> files = collect(paths);
+            Summary summary = rectangles == null ? run(files, mode, threads, print)
+                    : runRectangles(files, rectangles, threads, print);
+            sink.flush();
+            System.err.printf("Файлов: %d, с ошибкой: %d, %.1f с, %.1f файлов/с, %.3g пар/с%n",
+                    summary.files(), summary.failed(), summary.nanos() / 1e9,
+                    summary.filesPerSecond(), summary.pairsPerSecond());
+            return summary.failed() == 0 ? 0 : 1;
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Ошибка ввода-вывода: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Развернуть аргументы в список файлов задач
+     *
+     * @param paths файлы, папки и списки вида @файл
+     * @return файлы задач
+     * @throws IOException если папку или список не удалось прочитать
+     */
+    public static List<Path> collect(List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths) {
+            if (path.startsWith("@")) {
+                for (String line : Files.readAllLines(Path.of(path.substring(1)))) {
+                    if (!line.isBlank())
+                        files.add(Path.of(line.trim()));
+                }
+            } else if (Files.isDirectory(Path.of(path))) {
+                try (Stream<Path> walk = Files.walk(Path.of(path))) {
+                    walk.filter(p -> Files.isRegularFile(p) && (p.toString().endsWith(".json")
+                                    || TaskBinary.isBinary(p.toString())))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(Path.of(path));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Прочитать список прямоугольников
+     *
+     * @param path файл: по прямоугольнику "x1 y1 x2 y2" в строке, пустые строки
+     *             и строки с # пропускаются
+     * @return прямоугольники, каждый задан двумя противоположными вершинами
+     * @throws IOException если файл не удалось прочитать или строка не разбирается
+     */
+    public static List<Vector2d[]> readRectangles(Path path) throws IOException {
+        List<Vector2d[]> rectangles = new ArrayList<>();
+        List<String> lines = Files.readAllLines(path);
+        for (int k = 0; k < lines.size(); k++) {
+            String line = lines.get(k).trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] parts = line.split("\\s+");
+            try {
+                if (parts.length != 4)
+                    throw new NumberFormatException("нужно 4 числа");
+                rectangles.add(new Vector2d[]{
+                        new Vector2d(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])),
+                        new Vector2d(Double.parseDouble(parts[2]), Double.parseDouble(parts[3]))
+                });
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("строка %d: %s", k + 1, e.getMessage()), e);
+            }
+        }
+        return rectangles;
+    }
+
+    /**
+     * Решить пакет файлов
+     *
+     * @param files   файлы задач
+     * @param mode    режим решения для всех файлов, null - сохранённый в файле
+     * @param threads кол-во решающих потоков
+     * @param sink    получатель результатов (вызывается по одному, в порядке готовности)
+     * @return сводка по пакету
+     */
+    public static Summary run(List<Path> files, SolveMode mode, int threads, Consumer<Result> sink) {
+        return run(files, threads, parsed -> List.of(solve(parsed.file().toString(), parsed.task(), mode,
+                parsed.parseMs())), sink);
+    }
+
+    /**
+     * Решить пакет файлов для списка прямоугольников: индекс прямых строится
+     * один раз на файл, прямоугольники разбираются по нему параллельно
+     *
+     * @param files      файлы задач
+     * @param rectangles прямоугольники, каждый задан двумя противоположными вершинами
+     * @param threads    кол-во решающих потоков
+     * @param sink       получатель результатов: ответы одного файла идут подряд,
+     *                   в порядке прямоугольников
+     * @return сводка по пакету
+     */
+    public static Summary runRectangles(List<Path> files, List<Vector2d[]> rectangles, int threads,
+                                        Consumer<Result> sink) {
+        return run(files, threads, parsed -> solveRectangles(parsed.file().toString(), parsed.task(), rectangles,
+                parsed.parseMs()), sink);
+    }
+
+    /**
+     * Решить пакет файлов заданным способом
+     *
+     * @param files   файлы задач
+     * @param threads кол-во решающих потоков
+     * @param solver  решение разобранного файла, результаты одного файла
+     * @param sink    получатель результатов
+     * @return сводка по пакету
+     */
+    private static Summary run(List<Path> files, int threads, Function<Parsed, List<Result>> solver,
+                               Consumer<Result> sink) {
+        ExecutorService parsers = Executors.newFixedThreadPool(Math.min(PARSE_THREADS, threads));
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        // ограничение на число файлов в работе: разбор не убегает далеко вперёд решения
+        Semaphore inFlight = new Semaphore(threads * IN_FLIGHT_PER_THREAD);
+        AtomicLong pairs = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        long startTime = System.nanoTime();
+        try {
+            for (Path file : files) {
+                inFlight.acquireUninterruptibly();
+                CompletableFuture<Void> future = CompletableFuture
+                        .supplyAsync(() -> parse(file), parsers)
+                        .thenApplyAsync(solver, workers)
+                        .exceptionally(e -> List.of(failure(file, e.getCause() == null ? e : e.getCause())))
+                        .thenAccept(results -> {
+                            // пары файла перебираются один раз, сколько бы прямоугольников ни было
+                            Result first = results.get(0);
+                            if (first.error() != null)
+                                failed.incrementAndGet();
+                            else
+                                pairs.addAndGet((long) first.points() * (first.points() - 1) / 2);
+                            synchronized (sink) {
+                                results.forEach(sink);
+                            }
+                        })
+                        .whenComplete((v, e) -> inFlight.release());
+                pending.add(future);
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture[0])).join();
+        } finally {
+            parsers.shutdown();
+            workers.shutdown();
+        }
+        return new Summary(files.size(), (int) failed.get(), pairs.get(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Прочитать и разобрать файл задачи
+     *
+     * @param file путь к файлу
+     * @return разобранная задача
+     */
+    private static Parsed parse(Path file) {
+        long startTime = System.nanoTime();
+        try {
+            Task task = TaskBinary.isBinary(file.toString()) ? TaskBinary.read(file)
+                    : TaskReader.read(file);
+            return new Parsed(file, task, (System.nanoTime() - startTime) / 1e6);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Решить разобранную задачу
+     *
+     * @param name    имя задачи для результата
+     * @param task    задача
+     * @param mode    режим решения, null - сохранённый в задаче
+     * @param parseMs время чтения и разбора в мс
+     * @return результат
+     */
+    static Result solve(String name, Task task, SolveMode mode, double parseMs) {
+        SolveMode solveMode = mode == null ? task.getSolveMode() : mode;
+        // точки и прямоугольник берём из одного снимка
+        TaskSnapshot snapshot = task.getSnapshot();
+        List<Point> points = snapshot.points();
+        List<Point> tops = snapshot.tops();
+        if (tops == null || tops.size() != 2)
+            return new Result(name, -1, points.size(), solveMode, -1, -1, null, null, null,
+                    -1, parseMs, 0, "прямоугольник не задан");
+        long startTime = System.nanoTime();
+        ChordClipper clipper = ChordClipper.of(tops.get(0).getPos(), tops.get(1).getPos());
+        Solver solver = solveMode.createSolver();
+        Chord chord = solver.solve(PackedPoints.of(points), clipper);
+        double solveMs = (System.nanoTime() - startTime) / 1e6;
+        if (!chord.exists())
+            return new Result(name, -1, points.size(), solveMode, -1, -1, null, null, null,
+                    -1, parseMs, solveMs, null);
+        Vector2d a = points.get(chord.i()).getPos();
+        Vector2d b = points.get(chord.j()).getPos();
+        return new Result(name, -1, points.size(), solveMode, chord.i(), chord.j(), a, b,
+                clipper.cross(a, b), chord.length(), parseMs, solveMs, null);
+    }
+
+    /**
+     * Решить разобранную задачу для списка прямоугольников (её собственный не используется)
+     *
+     * @param name       имя задачи для результата
+     * @param task       задача
+     * @param rectangles прямоугольники
+     * @param parseMs    время чтения и разбора в мс
+     * @return результаты в порядке прямоугольников
+     */
+    static List<Result> solveRectangles(String name, Task task, List<Vector2d[]> rectangles, double parseMs) {
+        List<Point> points = task.getSnapshot().points();
+        long startTime = System.nanoTime();
+        // индекс прямых - на весь список, он и окупается на тысячах прямоугольников
+        BatchQueryEngine.BatchResult batch = new BatchQueryEngine(PackedPoints.of(points)).solveAll(rectangles);
+        double solveMs = (System.nanoTime() - startTime) / 1e6;
+        List<Result> results = new ArrayList<>(rectangles.size());
+        for (int r = 0; r < rectangles.size(); r++) {
+            BatchQueryEngine.Answer answer = batch.answers().get(r);
+            Chord chord = answer.chord();
+            if (!chord.exists()) {
+                results.add(new Result(name, r, points.size(), null, -1, -1, null, null, null,
+                        -1, parseMs, solveMs, null));
+                continue;
+            }
+            results.add(new Result(name, r, points.size(), null, chord.i(), chord.j(),
+                    points.get(chord.i()).getPos(), points.get(chord.j()).getPos(), answer.cross(),
+                    chord.length(), parseMs, solveMs, null));
+        }
+        return results;
+    }
+
+    /**
+     * Результат для файла, который не удалось прочитать или решить
+     *
+     * @param file  путь к файлу
+     * @param error ошибка
+     * @return результат с текстом ошибки
+     */
+    private static Result failure(Path file, Throwable error) {
+        return new Result(file.toString(), -1, 0, null, -1, -1, null, null, null, -1, 0, 0, error.toString());
+    }
+}
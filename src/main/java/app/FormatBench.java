@@ -0,0 +1,173 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import misc.CoordinateSystem2d;
+import misc.Vector2d;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Сравнение скорости сохранения и загрузки задачи в JSON и в двоичном формате
+ */
+public class FormatBench {
+    /**
+     * Текст справки
+     */
+    private static final String USAGE = """
+            Использование: --bench-format [ТОЧЕК]
+              ТОЧЕК  кол-во случайных точек (по умолчанию 1000000)""";
+    /**
+     * Сколько раз повторять каждое измерение (берётся лучшее)
+     */
+    private static final int REPEATS = 3;
+
+    /**
+     * Запуск из командной строки
+     *
+     * @param args аргументы после --bench-format
+     * @return код завершения
+     */
+    public static int main(String[] args) {
+        int n;
+        try {
+            n = args.length == 0 ? 1_000_000 : Integer.parseInt(args[0]);
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        if (args.length > 1 || n < 0) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        Task task = randomTask(n);
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("chords-bench");
+            ObjectMapper objectMapper = new ObjectMapper();
+            Path json = dir.resolve("task.json");
+            Path plain = dir.resolve("plain" + TaskBinary.EXTENSION);
+            Path packed = dir.resolve("packed" + TaskBinary.EXTENSION);
+            System.out.printf("Точек: %d%n", n);
+            report("JSON", json,
+                    () -> objectMapper.writeValue(json.toFile(), task),
+                    () -> objectMapper.readValue(json.toFile(), Task.class));
+            report("JSON потоково", json,
+                    () -> objectMapper.writeValue(json.toFile(), task),
+                    () -> TaskReader.read(json));
+            report("двоичный", plain,
+                    () -> TaskBinary.write(task, plain, false),
+                    () -> TaskBinary.read(plain));
+            report("двоичный+DEFLATE", packed,
+                    () -> TaskBinary.write(task, packed, true),
+                    () -> TaskBinary.read(packed));
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Ошибка ввода-вывода: " + e.getMessage());
+            return 1;
+        } finally {
+            if (dir != null)
+                deleteQuietly(dir);
+        }
+    }
+
+    /**
+     * Действие с файлом
+     */
+    @FunctionalInterface
+    private interface FileAction {
+        /**
+         * Выполнить действие
+         *
+         * @throws IOException если чтение или запись не удались
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Измерить и напечатать скорость формата
+     *
+     * @param name  название формата
+     * @param file  файл формата
+     * @param write запись файла
+     * @param read  чтение файла
+     * @throws IOException если чтение или запись не удались
+     */
+    private static void report(String name, Path file, FileAction write, FileAction read) throws IOException {
+        long writeNanos = best(write);
+        long allocatedBefore = allocatedBytes();
+        long readNanos = best(read);
+        // выделенная при чтении память: сколько мусора и объектов создаёт загрузчик
+        double allocated = (allocatedBytes() - allocatedBefore) / (double) REPEATS / (1 << 20);
+        double megabytes = Files.size(file) / (double) (1 << 20);
+        System.out.printf("%-18s %8.1f МБ, запись %7.0f мс (%6.1f МБ/с), чтение %7.0f мс (%6.1f МБ/с), "
+                        + "выделено при чтении %s%n", name, megabytes, writeNanos / 1e6, megabytes * 1e9 / writeNanos,
+                readNanos / 1e6, megabytes * 1e9 / readNanos,
+                allocatedBefore < 0 ? "?" : String.format("%.0f МБ", allocated));
+    }
+
+    /**
+     * Лучшее время из нескольких повторов
+     *
+     * @param action действие
+     * @return время в нс
+     * @throws IOException если действие не удалось
+     */
+    private static long best(FileAction action) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            long startTime = System.nanoTime();
+            action.run();
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best;
+    }
+
+    /**
+     * Сколько байт выделил текущий поток
+     *
+     * @return байт, -1, если JVM не считает выделения
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported())
+            return bean.getCurrentThreadAllocatedBytes();
+        return -1;
+    }
+
+    /**
+     * Задача со случайными точками
+     *
+     * @param n кол-во точек
+     * @return задача
+     */
+    static Task randomTask(int n) {
+        Random random = new Random(1);
+        ArrayList<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        return new Task(new CoordinateSystem2d(new Vector2d(-10, -10), new Vector2d(10, 10)), points, tops);
+    }
+
+    /**
+     * Удалить папку замеров
+     *
+     * @param dir папка
+     */
+    private static void deleteQuietly(Path dir) {
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        } catch (IOException ignored) {
+            // временные файлы уберёт система
+        }
+    }
+}
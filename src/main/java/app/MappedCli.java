@@ -0,0 +1,68 @@
+package app;
+
+import misc.Vector2d;
+import solvers.ChordClipper;
+import solvers.MappedPoints;
+import solvers.MappedSolver;
+import solvers.PackedPoints;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Решение задачи по файлу точек, отображённому в память (точек больше, чем помещается в кучу)
+ */
+public class MappedCli {
+    /**
+     * Текст справки
+     */
+    private static final String USAGE = """
+            Использование: --mapped ФАЙЛ X1 Y1 X2 Y2
+                           --mapped --convert ЗАДАЧА.json ФАЙЛ
+              ФАЙЛ      двоичный файл точек (x, y в double)
+              X1 Y1     вершина прямоугольника
+              X2 Y2     противоположная вершина
+              --convert записать точки задачи в двоичный файл""";
+
+    /**
+     * Запуск из командной строки
+     *
+     * @param args аргументы после --mapped
+     * @return код завершения
+     */
+    public static int main(String[] args) {
+        try {
+            if (args.length == 3 && args[0].equals("--convert")) {
+                // координаты идут из разбора прямо в файл, без объектов точек
+                PackedPoints points = TaskReader.parse(Path.of(args[1])).points();
+                MappedPoints.write(Path.of(args[2]), points);
+                System.err.println("Записано точек: " + points.size());
+                return 0;
+            }
+            if (args.length != 5) {
+                System.err.println(USAGE);
+                return 2;
+            }
+            ChordClipper clipper = ChordClipper.of(
+                    new Vector2d(Double.parseDouble(args[1]), Double.parseDouble(args[2])),
+                    new Vector2d(Double.parseDouble(args[3]), Double.parseDouble(args[4])));
+            try (MappedPoints points = MappedPoints.open(Path.of(args[0]))) {
+                MappedSolver.Result result = new MappedSolver().solve(points, clipper);
+                System.out.printf("Точек: %d, хорда: %d - %d, длина %s%n", points.size(),
+                        result.chord().i(), result.chord().j(), result.chord().length());
+                System.err.printf("%.1f с, прочитано %.1f МБ, чтение %.0f МБ/с, страничных прерываний %s%n",
+                        result.nanos() / 1e9, result.bytesRead() / (double) (1 << 20), result.readMegabytesPerSecond(),
+                        result.minorFaults() < 0 ? "?" : String.format("%d (с диска %d), %.0f/с",
+                                result.minorFaults() + result.majorFaults(), result.majorFaults(),
+                                result.faultsPerSecond()));
+                return 0;
+            }
+        } catch (NumberFormatException e) {
+            System.err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            System.err.println("Ошибка ввода-вывода: " + e.getMessage());
+            return 1;
+        }
+    }
+}
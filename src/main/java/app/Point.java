@@ -2,6 +2,7 @@ package app;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import misc.Misc;
 import misc.Vector2d;
@@ -11,6 +12,7 @@ import java.util.Objects;
 /**
  * Класс точки
  */
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Point {
     /**
      * Координаты точки
@@ -0,0 +1,550 @@
+package app;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import solvers.SolveMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный HTTP-сервис решения задач
+ * <p>
+ * POST /solve принимает задачу в формате файла задачи и возвращает ответ,
+ * GET /metrics - счётчики, глубину очереди и перцентили задержки.
+ * Принятые запросы ждут в ограниченной очереди: место в ней занимается до
+ * чтения тела запроса, и если мест нет, сервис сразу отвечает 503, не разбирая
+ * задачу и не копя работу. Одновременно решается не больше
+ * (ядра * solvesPerCore) пакетов; мелкие задачи, скопившиеся в очереди,
+ * забираются одним пакетом и решаются подряд в одном потоке.
+ * Сервер слушает только loopback
+ */
+public class SolveServer {
+    /**
+     * Порт по умолчанию
+     */
+    public static final int DEFAULT_PORT = 8765;
+    /**
+     * Ёмкость очереди по умолчанию
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    /**
+     * Задача считается мелкой, если точек не больше
+     */
+    private static final int SMALL_POINTS = 2000;
+    /**
+     * Наибольшее кол-во мелких задач в пакете
+     */
+    private static final int BATCH_MAX = 32;
+    /**
+     * Сколько последних задержек хранится для перцентилей
+     */
+    private static final int LATENCY_SAMPLES = 4096;
+    /**
+     * Сколько секунд остановка ждёт раскладчик и решаемые пакеты
+     */
+    private static final int STOP_SECONDS = 10;
+    /**
+     * Текст справки
+     */
+    private static final String USAGE = """
+            Использование: --serve [--port ПОРТ] [--queue ЁМКОСТЬ] [--per-core РЕШЕНИЙ]
+              --port     порт на 127.0.0.1 (по умолчанию 8765, 0 - любой свободный)
+              --queue    ёмкость очереди запросов (по умолчанию 256)
+              --per-core одновременных решений на ядро (по умолчанию 1)""";
+
+    /**
+     * HTTP-сервер
+     */
+    private final HttpServer server;
+    /**
+     * Очередь принятых запросов
+     */
+    private final BlockingQueue<Job> queue;
+    /**
+     * Ёмкость очереди
+     */
+    private final int queueCapacity;
+    /**
+     * Свободные места в очереди: занимаются до разбора запроса,
+     * освобождаются, когда запрос забран из очереди или не разобрался
+     */
+    private final Semaphore queueSlots;
+    /**
+     * Наибольшее кол-во одновременно решаемых пакетов
+     */
+    private final int concurrency;
+    /**
+     * Свободные места для решения пакетов
+     */
+    private final Semaphore slots;
+    /**
+     * Потоки решения
+     */
+    private final ExecutorService workers;
+    /**
+     * Потоки разбора запросов
+     */
+    private final ExecutorService handlers;
+    /**
+     * Поток, раскладывающий очередь по пакетам
+     */
+    private final Thread dispatcher;
+    /**
+     * Загрузчик JSON
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Номер следующего запроса
+     */
+    private final AtomicLong nextId = new AtomicLong();
+    /**
+     * Принято запросов
+     */
+    private final AtomicLong accepted = new AtomicLong();
+    /**
+     * Отклонено запросов (очередь полна)
+     */
+    private final AtomicLong rejected = new AtomicLong();
+    /**
+     * Решено запросов
+     */
+    private final AtomicLong completed = new AtomicLong();
+    /**
+     * Запросов с ошибкой
+     */
+    private final AtomicLong failed = new AtomicLong();
+    /**
+     * Отправлено пакетов
+     */
+    private final AtomicLong batches = new AtomicLong();
+    /**
+     * Последние задержки от приёма до ответа
+     */
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_SAMPLES);
+    /**
+     * Флаг работы
+     */
+    private volatile boolean running;
+
+    /**
+     * Принятый запрос
+     *
+     * @param id         номер запроса
+     * @param exchange   обмен HTTP
+     * @param task       задача
+     * @param mode       режим решения, null - из задачи
+     * @param parseMs    время разбора в мс
+     * @param acceptedAt момент приёма по {@link System#nanoTime()}
+     */
+    private record Job(long id, HttpExchange exchange, Task task, SolveMode mode, double parseMs, long acceptedAt) {
+        /**
+         * Мелкая ли задача
+         *
+         * @return флаг
+         */
+        boolean isSmall() {
+            return task.getPoints().size() <= SMALL_POINTS;
+        }
+    }
+
+    /**
+     * Ответ на запрос решения
+     *
+     * @param id      номер запроса
+     * @param queueMs время ожидания в очереди в мс
+     * @param batch   размер пакета, в котором решалась задача
+     * @param result  результат решения
+     */
+    public record Response(long id, double queueMs, int batch, BatchCli.Result result) {
+    }
+
+    /**
+     * Сервис на 127.0.0.1
+     *
+     * @param port          порт, 0 - любой свободный
+     * @param queueCapacity ёмкость очереди
+     * @param solvesPerCore одновременных решений на ядро
+     * @throws IOException если порт занят
+     */
+    public SolveServer(int port, int queueCapacity, int solvesPerCore) throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.concurrency = Math.max(1, cores * solvesPerCore);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        queueSlots = new Semaphore(queueCapacity);
+        slots = new Semaphore(concurrency);
+        workers = Executors.newFixedThreadPool(concurrency);
+        handlers = Executors.newFixedThreadPool(cores);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(handlers);
+        server.createContext("/solve", this::handleSolve);
+        server.createContext("/metrics", this::handleMetrics);
+        dispatcher = new Thread(this::dispatch, "solve-dispatcher");
+    }
+
+    /**
+     * Запуск из командной строки
+     *
+     * @param args аргументы после --serve
+     * @return код завершения, 0 - сервис запущен
+     */
+    public static int main(String[] args) {
+        int port = DEFAULT_PORT;
+        int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        int perCore = 1;
+        try {
+            for (int k = 0; k < args.length; k++) {
+                switch (args[k]) {
+                    case "--port" -> port = Integer.parseInt(args[++k]);
+                    case "--queue" -> queueCapacity = Integer.parseInt(args[++k]);
+                    case "--per-core" -> perCore = Integer.parseInt(args[++k]);
+                    default -> throw new IllegalArgumentException(args[k]);
+                }
+            }
+            SolveServer server = new SolveServer(port, queueCapacity, perCore);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            System.err.println("Сервис решения слушает http://127.0.0.1:" + server.getPort() + "/solve");
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Не получилось запустить сервис: " + e.getMessage());
+            return 1;
+        } catch (RuntimeException e) {
+            System.err.println(USAGE);
+            return 2;
+        }
+    }
+
+    /**
+     * Запустить сервис
+     */
+    public void start() {
+        running = true;
+        dispatcher.start();
+        server.start();
+    }
+
+    /**
+     * Остановить сервис: решаемые пакеты дорешиваются (не дольше
+     * {@link #STOP_SECONDS} с), остальные принятые запросы получают 503
+     */
+    public void stop() {
+        running = false;
+        // соединения закрываются последними, иначе ответы на принятые запросы не дойдут
+        dispatcher.interrupt();
+        try {
+            // раскладчик сам отвечает на запросы, которые уже забрал из очереди
+            dispatcher.join(TimeUnit.SECONDS.toMillis(STOP_SECONDS));
+            for (Job job = queue.poll(); job != null; job = queue.poll())
+                respondError(job.exchange(), 503, "сервис остановлен");
+            workers.shutdown();
+            workers.awaitTermination(STOP_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+        handlers.shutdown();
+    }
+
+    /**
+     * Получить порт, на котором слушает сервис
+     *
+     * @return порт
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Обработчик POST /solve: разобрать задачу и поставить в очередь
+     *
+     * @param exchange обмен HTTP
+     */
+    private void handleSolve(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respondError(exchange, 405, "нужен POST");
+            return;
+        }
+        long acceptedAt = System.nanoTime();
+        // очередь полна: отказываем сразу, не читая тело, чтобы клиент повторил позже
+        if (!running || !queueSlots.tryAcquire()) {
+            reject(exchange);
+            return;
+        }
+        Task task;
+        SolveMode mode;
+        try (InputStream body = exchange.getRequestBody()) {
+            mode = parseMode(exchange.getRequestURI().getQuery());
+            task = TaskReader.parse(body).toTask();
+        } catch (IOException | IllegalArgumentException e) {
+            queueSlots.release();
+            failed.incrementAndGet();
+            respondError(exchange, 400, e.getMessage());
+            return;
+        }
+        Job job = new Job(nextId.incrementAndGet(), exchange, task, mode,
+                (System.nanoTime() - acceptedAt) / 1e6, acceptedAt);
+        // место занято заранее, поэтому очередь не переполнится
+        queue.add(job);
+        // сервис остановили во время разбора, и очередь, возможно, уже разобрана:
+        // ответ даёт тот, кто первым забрал запрос
+        if (!running && queue.remove(job)) {
+            queueSlots.release();
+            reject(exchange);
+            return;
+        }
+        accepted.incrementAndGet();
+    }
+
+    /**
+     * Отказать в приёме запроса: очередь полна или сервис остановлен
+     *
+     * @param exchange обмен HTTP
+     */
+    private void reject(HttpExchange exchange) {
+        rejected.incrementAndGet();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respondError(exchange, 503, running ? "очередь заполнена" : "сервис остановлен");
+    }
+
+    /**
+     * Режим решения из строки запроса вида mode=QUAD_TREE
+     *
+     * @param query строка запроса, может быть null
+     * @return режим или null, если не задан
+     * @throws IllegalArgumentException если режим неизвестен
+     */
+    private static SolveMode parseMode(String query) {
+        if (query == null)
+            return null;
+        for (String part : query.split("&")) {
+            if (part.startsWith("mode="))
+                return SolveMode.valueOf(part.substring("mode=".length()));
+        }
+        return null;
+    }
+
+    /**
+     * Обработчик GET /metrics
+     *
+     * @param exchange обмен HTTP
+     */
+    private void handleMetrics(HttpExchange exchange) {
+        respond(exchange, 200, metrics());
+    }
+
+    /**
+     * Снимок метрик сервиса
+     *
+     * @return метрики по именам
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("accepted", accepted.get());
+        metrics.put("rejected", rejected.get());
+        metrics.put("completed", completed.get());
+        metrics.put("failed", failed.get());
+        metrics.put("batches", batches.get());
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queueCapacity);
+        metrics.put("inFlight", concurrency - slots.availablePermits());
+        metrics.put("concurrency", concurrency);
+        metrics.put("latencyMs", latencies.percentiles(50, 90, 99, 100));
+        return metrics;
+    }
+
+    /**
+     * Цикл раскладки очереди по пакетам
+     * <p>
+     * Мелкие задачи, уже ждущие в очереди, забираются одним пакетом;
+     * пакет не ждёт новых задач, поэтому одиночный запрос не теряет времени.
+     * Место для решения занимается до отправки пакета, так что при перегрузке
+     * работа копится в ограниченной очереди, а не в пуле
+     */
+    private void dispatch() {
+        Job carried = null;
+        List<Job> pending = List.of();
+        try {
+            while (running) {
+                Job first = carried != null ? carried : take(queue.poll(100, TimeUnit.MILLISECONDS));
+                carried = null;
+                if (first == null)
+                    continue;
+                List<Job> batch = new ArrayList<>();
+                batch.add(first);
+                while (first.isSmall() && batch.size() < BATCH_MAX) {
+                    Job next = take(queue.poll());
+                    if (next == null)
+                        break;
+                    if (!next.isSmall()) {
+                        // крупная задача пойдёт следующим пакетом
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                pending = batch;
+                slots.acquire();
+                batches.incrementAndGet();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            for (Job job : batch)
+                                solve(job, batch.size());
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    break;
+                }
+                pending = List.of();
+            }
+        } catch (InterruptedException e) {
+            // сервис остановлен
+        }
+        // взятые из очереди, но не отправленные на решение запросы тоже получают ответ
+        List<Job> unanswered = new ArrayList<>(pending);
+        if (carried != null)
+            unanswered.add(carried);
+        for (Job job : unanswered)
+            respondError(job.exchange(), 503, "сервис остановлен");
+    }
+
+    /**
+     * Отметить, что запрос забран из очереди, и освободить его место
+     *
+     * @param job запрос или null
+     * @return тот же запрос
+     */
+    private Job take(Job job) {
+        if (job != null)
+            queueSlots.release();
+        return job;
+    }
+
+    /**
+     * Решить задачу запроса и ответить
+     *
+     * @param job   запрос
+     * @param batch размер пакета
+     */
+    private void solve(Job job, int batch) {
+        double queueMs = (System.nanoTime() - job.acceptedAt()) / 1e6;
+        try {
+            BatchCli.Result result = BatchCli.solve("#" + job.id(), job.task(), job.mode(), job.parseMs());
+            if (result.error() != null)
+                failed.incrementAndGet();
+            else
+                completed.incrementAndGet();
+            respond(job.exchange(), result.error() == null ? 200 : 422, new Response(job.id(), queueMs, batch, result));
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            respondError(job.exchange(), 500, e.toString());
+        }
+        latencies.add((System.nanoTime() - job.acceptedAt()) / 1e6);
+    }
+
+    /**
+     * Ответить сообщением об ошибке
+     *
+     * @param exchange обмен HTTP
+     * @param code     код ответа
+     * @param message  текст ошибки
+     */
+    private void respondError(HttpExchange exchange, int code, String message) {
+        respond(exchange, code, Map.of("error", String.valueOf(message)));
+    }
+
+    /**
+     * Ответить объектом в JSON
+     *
+     * @param exchange обмен HTTP
+     * @param code     код ответа
+     * @param body     тело ответа
+     */
+    private void respond(HttpExchange exchange, int code, Object body) {
+        try (exchange) {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(code, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // клиент ушёл, не дождавшись ответа
+        }
+    }
+
+    /**
+     * Кольцевой буфер последних задержек
+     */
+    private static class LatencyWindow {
+        /**
+         * Задержки в мс
+         */
+        private final double[] samples;
+        /**
+         * Сколько задержек добавлено всего
+         */
+        private long count;
+
+        /**
+         * Буфер заданной ёмкости
+         *
+         * @param capacity ёмкость
+         */
+        LatencyWindow(int capacity) {
+            samples = new double[capacity];
+        }
+
+        /**
+         * Добавить задержку
+         *
+         * @param ms задержка в мс
+         */
+        synchronized void add(double ms) {
+            samples[(int) (count++ % samples.length)] = ms;
+        }
+
+        /**
+         * Перцентили по последним задержкам
+         *
+         * @param levels уровни в процентах
+         * @return задержки по уровням, например "p50"
+         */
+        Map<String, Double> percentiles(int... levels) {
+            double[] sorted;
+            synchronized (this) {
+                sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+            }
+            Arrays.sort(sorted);
+            Map<String, Double> result = new LinkedHashMap<>();
+            for (int level : levels) {
+                int k = (int) Math.ceil(level / 100.0 * sorted.length) - 1;
+                result.put("p" + level, sorted.length == 0 ? 0 : sorted[Math.max(k, 0)]);
+            }
+            return result;
+        }
+    }
+}
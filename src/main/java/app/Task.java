@@ -2,27 +2,53 @@ package app;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import dialogs.PanelInfo;
 import io.github.humbleui.jwm.MouseButton;
 import io.github.humbleui.skija.*;
+import misc.Allocations;
 import misc.CoordinateSystem2d;
 import misc.CoordinateSystem2i;
+import misc.PersistentList;
 import misc.Vector2d;
 import misc.Vector2i;
 import panels.PanelLog;
+import solvers.AnytimeSolver;
+import solvers.ApproxSolver;
+import solvers.Chord;
+import solvers.ChordClipper;
+import solvers.ChordMailbox;
+import solvers.ChordQuery;
+import solvers.GridSolver;
+import solvers.IncrementalSolver;
+import solvers.LineDedupSolver;
+import solvers.LineIndex;
+import solvers.PackedPoints;
+import solvers.ResultCache;
+import solvers.RectangleTracker;
+import solvers.SolveProgress;
+import solvers.SolveMode;
+import solvers.Solver;
 
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static app.Colors.*;
-import static java.lang.Math.max;
-import static java.lang.Math.min;
 
 /**
  * Класс задачи
  */
-@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, property = "@class")
+@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, property = "@class", defaultImpl = Task.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class Task {
     /**
      * Текст задачи
@@ -52,37 +78,99 @@ public class Task {
      */
     private final CoordinateSystem2d ownCS;
     /**
-     * Список точек, через которые мы проводим прямые
+     * Текущий снимок точек, прямоугольника и решения; изменения задачи
+     * публикуют новый снимок атомарно
      */
-    private final ArrayList<Point> points;
+    private final AtomicReference<TaskSnapshot> state;
     /**
-     * Список вершин прямоугольника
+     * Размер точки
      */
-    private final ArrayList<Point> tops;
+    private static final int POINT_SIZE = 3;
     /**
-     * Список точек, являющихся решением нашей задачи
+     * Последняя СК окна
      */
-    private final ArrayList<Point> sPoints;
+    private CoordinateSystem2i lastWindowCS;
     /**
-     * Список точек пересечения прямой и прямоугольника
+     * Флаг задан ли прямоугольник
      */
-    private final ArrayList<Vector2d> crossPoints;
+    @JsonIgnore
+    public boolean rectangle;
     /**
-     * Размер точки
+     * Режим решения задачи
      */
-    private static final int POINT_SIZE = 3;
+    private SolveMode solveMode = SolveMode.BRUTE_FORCE;
     /**
-     * Последняя СК окна
+     * Сколько байт было выделено за последнее решение (-1, если неизвестно)
      */
-    private CoordinateSystem2i lastWindowCS;
+    private long lastSolveBytes = -1;
     /**
-     * Флаг, решена ли задача
+     * Время последнего решения в нс
      */
-    private boolean solved;
+    private long lastSolveNanos;
     /**
-     * Флаг задан ли прямоугольник
+     * Флаг живого решения: ответ поддерживается при каждом изменении точек
      */
-    public boolean rectangle;
+    private boolean liveSolve;
+    /**
+     * Инкрементальный решатель живого режима, null, пока прямоугольник не задан
+     */
+    private IncrementalSolver liveSolver;
+    /**
+     * Пересчёт ответа при перетаскивании вершины, null вне перетаскивания
+     */
+    private RectangleTracker tracker;
+    /**
+     * Индекс перетаскиваемой вершины прямоугольника, -1, если вершина не перетаскивается
+     */
+    private int draggedTop = -1;
+    /**
+     * Снимок до начала перетаскивания вершины (всё перетаскивание - один шаг истории)
+     */
+    private TaskSnapshot dragStart;
+    /**
+     * История изменений для отмены и повтора
+     */
+    private final TaskHistory history = new TaskHistory(HISTORY_CAPACITY);
+    /**
+     * Журнал изменений, null, если изменения не журналируются
+     */
+    private TaskJournal journal;
+    /**
+     * Фоновое решение, null, если задача не решается
+     */
+    private BackgroundSolve background;
+    /**
+     * Кэш решений задачи, null - решать без кэша
+     */
+    private ResultCache resultCache = RESULT_CACHE;
+    /**
+     * Поток фоновых решений (один на все задачи, решения идут по очереди)
+     */
+    private static final ExecutorService SOLVE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "solver");
+        // фоновое решение не должно мешать закрытию приложения
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Сколько изменений задачи можно отменить
+     */
+    private static final int HISTORY_CAPACITY = 10000;
+    /**
+     * Сколько точек отмена или повтор пишут в журнал записями в любом случае;
+     * если точек изменилось больше и больше половины снимка, журнал складывается в снимок
+     */
+    private static final int RESTORE_RECORDS = 64;
+    /**
+     * Сколько ответов держит в памяти кэш решений
+     */
+    private static final int CACHE_CAPACITY = 256;
+    /**
+     * Кэш решений, по умолчанию общий для всех задач; папку для ответов на диске
+     * задаёт свойство chords.cacheDir, без него кэш только в памяти
+     */
+    private static final ResultCache RESULT_CACHE = new ResultCache(CACHE_CAPACITY,
+            System.getProperty("chords.cacheDir") == null ? null : Path.of(System.getProperty("chords.cacheDir")));
     /**
      * Порядок разделителя сетки, т.е. раз в сколько отсечек
      * будет нарисована увеличенная
@@ -97,13 +185,10 @@ public class Task {
      * @param tops вершины прямоугольника
      */
     @JsonCreator
-    public Task(@JsonProperty("ownCS") CoordinateSystem2d ownCS, @JsonProperty("points") ArrayList<Point> points,
-                @JsonProperty("rect") ArrayList<Point> tops) {
+    public Task(@JsonProperty("ownCS") CoordinateSystem2d ownCS, @JsonProperty("points") List<Point> points,
+                @JsonProperty("rect") List<Point> tops) {
         this.ownCS = ownCS;
-        this.points = points;
-        this.tops = tops;
-        this.sPoints = new ArrayList<>();
-        this.crossPoints = new ArrayList<>();
+        this.state = new AtomicReference<>(TaskSnapshot.of(points, tops));
     }
 
     /**
@@ -128,11 +213,19 @@ public class Task {
      * @param windowCS СК окна
      */
     private void renderTask(Canvas canvas, CoordinateSystem2i windowCS) {
+        // показываем лучшую хорду, найденную фоновым решением к этому кадру
+        pollBackgroundSolve();
+        // весь кадр рисуем по одному снимку
+        TaskSnapshot snapshot = state.get();
+        List<Point> points = snapshot.points();
+        List<Point> tops = snapshot.tops();
+        List<Point> sPoints = snapshot.sPoints();
+        List<Vector2d> crossPoints = snapshot.crossPoints();
         canvas.save();
         // создаём перо
         try (var paint = new Paint()) {
                 for (Point p : points) {
-                    if (!solved) {
+                    if (!snapshot.solved()) {
                         paint.setColor(p.getColor());
                     }else{
                         if(sPoints.contains(p)){
@@ -195,10 +288,12 @@ public class Task {
                 canvas.drawLine(renderPointA.x, renderPointA.y, renderPointB.x, renderPointB.y, paint);
 
                 // выделяем отрезок, образованный точками пересечения прямой и прямоугольника
-                Vector2i crossPointA = windowCS.getCoords(crossPoints.get(0).x, -crossPoints.get(0).y, ownCS);
-                Vector2i crossPointB = windowCS.getCoords(crossPoints.get(1).x, -crossPoints.get(1).y, ownCS);
-                paint.setStrokeWidth(3);
-                canvas.drawLine(crossPointA.x, crossPointA.y, crossPointB.x, crossPointB.y, paint);
+                if (!crossPoints.isEmpty()) {
+                    Vector2i crossPointA = windowCS.getCoords(crossPoints.get(0).x, -crossPoints.get(0).y, ownCS);
+                    Vector2i crossPointB = windowCS.getCoords(crossPoints.get(1).x, -crossPoints.get(1).y, ownCS);
+                    paint.setStrokeWidth(3);
+                    canvas.drawLine(crossPointA.x, crossPointA.y, crossPointB.x, crossPointB.y, paint);
+                }
             }
         }
         canvas.restore();
@@ -210,10 +305,43 @@ public class Task {
      * @param pos      положение
      */
     public void addPoint(Vector2d pos) {
-        solved = false;
+        TaskSnapshot before = state.get();
+        appendPoint(pos);
+        history.record(before);
+    }
+
+    /**
+     * Добавить точку, не записывая шаг истории
+     *
+     * @param pos положение
+     */
+    private void appendPoint(Vector2d pos) {
         Point newPoint = new Point(pos);
-        points.add(newPoint);
+        state.updateAndGet(s -> s.withPoint(newPoint));
+        journal(j -> j.addPoint(pos));
         PanelLog.info("точка " + newPoint + " добавлена во " + newPoint.getSetName());
+        // в живом режиме досчитываем только пары с новой точкой
+        if (liveSolver != null) {
+            liveSolver.add(pos.x, pos.y);
+            applySolution(liveSolver.best(), liveSolver.getClipper(), false);
+        }
+    }
+
+    /**
+     * Удалить точку
+     *
+     * @param index индекс точки
+     */
+    public void removePoint(int index) {
+        TaskSnapshot before = state.getAndUpdate(s -> s.withoutPoint(index));
+        history.record(before);
+        journal(j -> j.removePoint(index));
+        Point removed = before.points().get(index);
+        PanelLog.info("точка " + removed + " удалена");
+        if (liveSolver != null) {
+            liveSolver.remove(index);
+            applySolution(liveSolver.best(), liveSolver.getClipper(), false);
+        }
     }
 
     /**
@@ -222,8 +350,8 @@ public class Task {
      * @param pos      положение
      */
     public void addTop(Vector2d pos) {
-        solved = false;
         Point newPoint = new Point(pos);
+        List<Point> tops = state.get().tops();
         if(tops.size() == 1){
             Point PointA = tops.get(0);
             if( PointA.getPos().x == pos.x || PointA.getPos().y == pos.y){
@@ -235,8 +363,12 @@ public class Task {
             PanelLog.warning("Прямоугольник уже был задан при помощи 2 противоположных вершин");
             return;
         }
-        tops.add(newPoint);
+        history.record(state.getAndUpdate(s -> s.withTop(newPoint)));
+        journal(j -> j.addTop(pos));
+        tops = state.get().tops();
         PanelLog.info("точка " + newPoint + " установлена вершиной прямоугольника");
+        if (tops.size() == 2 && liveSolve)
+            startLiveSolve();
     }
 
     /**
@@ -249,12 +381,126 @@ public class Task {
         if (lastWindowCS == null) return;
         // получаем положение на экране
         Vector2d taskPos = ownCS.getCoords(pos, lastWindowCS);
-        if (mouseButton.equals(MouseButton.PRIMARY) || mouseButton.equals(MouseButton.SECONDARY)) {
+        if (mouseButton.equals(MouseButton.SECONDARY)) {
+            // правый клик по точке удаляет её, по пустому месту - добавляет новую
+            int index = pointAt(pos);
+            if (index >= 0)
+                removePoint(index);
+            else
+                addPoint(taskPos);
+        } else if (mouseButton.equals(MouseButton.PRIMARY)) {
             addPoint(taskPos);
         }
     }
 
 
+    /**
+     * Взять вершину прямоугольника под курсором для перетаскивания
+     * <p>
+     * Индекс прямых строится один раз на всё перетаскивание, а каждое
+     * следующее положение вершины пересчитывается от прошлого ответа
+     *
+     * @param pos положение мыши
+     * @return взята ли вершина
+     */
+    public boolean grabTop(Vector2i pos) {
+        TaskSnapshot snapshot = state.get();
+        List<Point> tops = snapshot.tops();
+        if (lastWindowCS == null || tops.size() != 2)
+            return false;
+        for (int i = 0; i < tops.size(); i++) {
+            Point p = tops.get(i);
+            Vector2i windowPos = lastWindowCS.getCoords(p.pos.x, -p.pos.y, ownCS);
+            if (Math.abs(windowPos.x - pos.x) <= POINT_SIZE && Math.abs(windowPos.y - pos.y) <= POINT_SIZE) {
+                draggedTop = i;
+                dragStart = snapshot;
+                rectangle = true;
+                tracker = new RectangleTracker(new LineIndex(PackedPoints.of(snapshot.points())));
+                // индексы хорды верны, только пока точки не менялись после решения
+                tracker.setHint(snapshot.solved() ? snapshot.chord() : Chord.NONE);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Перетащить взятую вершину прямоугольника и пересчитать ответ
+     *
+     * @param pos положение мыши
+     */
+    public void dragTop(Vector2i pos) {
+        if (draggedTop < 0)
+            return;
+        Vector2d taskPos = ownCS.getCoords(pos, lastWindowCS);
+        // на экране y-координата развёрнута
+        Vector2d newPos = new Vector2d(taskPos.x, -taskPos.y);
+        int index = draggedTop;
+        Point other = state.get().tops().get(1 - index);
+        // вырожденный прямоугольник пропускаем, вершина останется на прошлом месте
+        if (other.getPos().x == newPos.x || other.getPos().y == newPos.y)
+            return;
+        TaskSnapshot moved = state.updateAndGet(s -> s.withTopAt(index, new Point(newPos)));
+        if (moved.points().size() < 2)
+            return;
+        ChordClipper clipper = moved.clipper();
+        long startTime = System.nanoTime();
+        Chord best = tracker.update(clipper);
+        lastSolveNanos = System.nanoTime() - startTime;
+        applySolution(moved, best, clipper, false);
+    }
+
+    /**
+     * Отпустить перетаскиваемую вершину
+     */
+    public void releaseTop() {
+        if (draggedTop < 0)
+            return;
+        int index = draggedTop;
+        Point top = state.get().tops().get(index);
+        PanelLog.info("вершина прямоугольника перемещена в " + top +
+                String.format(", последний пересчёт %.1f мс", lastSolveNanos / 1e6));
+        draggedTop = -1;
+        tracker = null;
+        // всё перетаскивание отменяется одним шагом и журналируется одной записью
+        if (!dragStart.sameInput(state.get())) {
+            history.record(dragStart);
+            journal(j -> j.moveTop(index, top.getPos()));
+        }
+        dragStart = null;
+        // живой решатель считал пары для старого прямоугольника
+        if (liveSolve)
+            startLiveSolve();
+    }
+
+    /**
+     * Перетаскивается ли вершина прямоугольника
+     *
+     * @return флаг
+     */
+    @JsonIgnore
+    public boolean isDragging() {
+        return draggedTop >= 0;
+    }
+
+    /**
+     * Найти точку, нарисованную под курсором
+     *
+     * @param pos положение мыши
+     * @return индекс точки или -1
+     */
+    private int pointAt(Vector2i pos) {
+        List<Point> points = state.get().points();
+        for (int i = points.size() - 1; i >= 0; i--) {
+            Point p = points.get(i);
+            // так же, как при рисовании, y-координату разворачиваем
+            Vector2i windowPos = lastWindowCS.getCoords(p.pos.x, -p.pos.y, ownCS);
+            if (Math.abs(windowPos.x - pos.x) <= POINT_SIZE && Math.abs(windowPos.y - pos.y) <= POINT_SIZE)
+                return i;
+        }
+        return -1;
+    }
+
     /**
      * Добавить случайные точки
      *
@@ -262,13 +508,16 @@ public class Task {
      */
     public void addRandomPoints(int cnt) {
         CoordinateSystem2i addGrid = new CoordinateSystem2i(30, 30);
+        // все случайные точки отменяются одним шагом
+        TaskSnapshot before = state.get();
 
         for (int i = 0; i < cnt; i++) {
             Vector2i gridPos = addGrid.getRandomCoords();
             Vector2d pos = ownCS.getCoords(gridPos, addGrid);
             // сработает примерно в половине случаев
-            addPoint(pos);
+            appendPoint(pos);
         }
+        history.record(before);
     }
 
 
@@ -314,139 +563,551 @@ public class Task {
      * Очистить задачу
      */
     public void clear() {
-        points.clear();
-        tops.clear();
-        sPoints.clear();
-        solved = false;
+        history.record(state.getAndUpdate(TaskSnapshot::cleared));
+        journal(TaskJournal::clear);
         rectangle = false;
+        // без прямоугольника живому решателю отсекать нечем
+        liveSolver = null;
+    }
+
+    /**
+     * Отменить последнее изменение точек или прямоугольника
+     *
+     * @return true, если изменение отменено
+     */
+    public boolean undo() {
+        if (isDragging())
+            return false;
+        TaskSnapshot target = history.undo(state.get());
+        if (target == null) {
+            PanelLog.info("Отменять нечего");
+            return false;
+        }
+        restore(target);
+        PanelLog.info("Изменение отменено, точек: " + target.points().size());
+        return true;
+    }
+
+    /**
+     * Повторить отменённое изменение
+     *
+     * @return true, если изменение повторено
+     */
+    public boolean redo() {
+        if (isDragging())
+            return false;
+        TaskSnapshot target = history.redo(state.get());
+        if (target == null) {
+            PanelLog.info("Повторять нечего");
+            return false;
+        }
+        restore(target);
+        PanelLog.info("Изменение повторено, точек: " + target.points().size());
+        return true;
+    }
+
+    /**
+     * Вернуть точки и прямоугольник из снимка истории
+     *
+     * @param target снимок
+     */
+    private void restore(TaskSnapshot target) {
+        // ответ фонового решения по прошлым точкам будет отброшен при применении
+        TaskSnapshot before = state.getAndUpdate(s -> s.restored(target));
+        journal(j -> journalRestore(j, before, target));
+        rectangle = target.tops().size() == 2;
+        if (liveSolve && rectangle)
+            startLiveSolve();
+        else
+            liveSolver = null;
+    }
+
+    /**
+     * Записать в журнал переход между снимками как обратные изменения
+     * <p>
+     * Шаг истории меняет точки одним куском (добавленные в конец, одна удалённая,
+     * всё при очистке), а неизменённые точки переходят в следующие версии теми же
+     * объектами, поэтому кусок находится по общему началу и концу списков.
+     * Снимок пишется, только если изменённых точек больше, чем стоит сам снимок
+     *
+     * @param j      журнал
+     * @param before снимок до перехода
+     * @param target снимок после перехода
+     */
+    private void journalRestore(TaskJournal j, TaskSnapshot before, TaskSnapshot target) {
+        PersistentList<Point> from = before.points();
+        PersistentList<Point> to = target.points();
+        if (to.isEmpty() && target.tops().isEmpty()) {
+            j.clear();
+            return;
+        }
+        int prefix = 0;
+        Iterator<Point> fromIt = from.iterator();
+        Iterator<Point> toIt = to.iterator();
+        while (fromIt.hasNext() && toIt.hasNext() && fromIt.next() == toIt.next())
+            prefix++;
+        int suffix = 0;
+        int common = Math.min(from.size(), to.size()) - prefix;
+        while (suffix < common && from.get(from.size() - 1 - suffix) == to.get(to.size() - 1 - suffix))
+            suffix++;
+        int removed = from.size() - prefix - suffix;
+        int inserted = to.size() - prefix - suffix;
+        if (removed + inserted > RESTORE_RECORDS && removed + inserted > to.size() / 2) {
+            j.checkpoint(copy());
+            return;
+        }
+        for (int i = 0; i < removed; i++)
+            j.removePoint(prefix);
+        // без общего конца точки дописываются в конец списка
+        for (int i = prefix; i < prefix + inserted; i++) {
+            if (suffix == 0)
+                j.addPoint(to.get(i).getPos());
+            else
+                j.insertPoint(i, to.get(i).getPos());
+        }
+        PersistentList<Point> fromTops = before.tops();
+        PersistentList<Point> toTops = target.tops();
+        for (int i = fromTops.size() - 1; i >= toTops.size(); i--)
+            j.removeTop(i);
+        for (int i = 0; i < Math.min(fromTops.size(), toTops.size()); i++) {
+            if (fromTops.get(i) != toTops.get(i))
+                j.moveTop(i, toTops.get(i).getPos());
+        }
+        for (int i = fromTops.size(); i < toTops.size(); i++)
+            j.addTop(toTops.get(i).getPos());
     }
 
     /**
      * Решить задачу
      */
     public void solve() {
-        if(tops.isEmpty() || tops.size() == 1){
+        TaskSnapshot snapshot = prepareSolve();
+        if (snapshot == null)
+            return;
+        ChordClipper clipper = snapshot.clipper();
+        long startBytes = Allocations.allocatedBytes();
+        long startTime = System.nanoTime();
+        // координаты копируем в плотные массивы один раз на решение
+        PackedPoints packed = PackedPoints.of(snapshot.points());
+        // ключ по содержимому: изменённая задача даёт другой ключ
+        ResultCache cache = resultCache;
+        ResultCache.Key key = cache == null ? null : ResultCache.key(packed, clipper, solveMode);
+        Chord cached = cache == null ? null : cache.get(key, packed, clipper);
+        if (cached != null) {
+            lastSolveNanos = System.nanoTime() - startTime;
+            lastSolveBytes = -1;
+            logCache(cache, true);
+            applySolution(snapshot, cached, clipper, true);
+            return;
+        }
+        // перебираем пары точек выбранным решателем
+        Solver solver = solveMode.createSolver();
+        Chord best = solver.solve(packed, clipper);
+        lastSolveNanos = System.nanoTime() - startTime;
+        lastSolveBytes = startBytes < 0 ? -1 : Allocations.allocatedBytes() - startBytes;
+        if (cache != null && isCacheable(solver))
+            cache.put(key, best);
+        reportSolve(solver, best);
+        logCache(cache, false);
+        applySolution(snapshot, best, clipper, true);
+    }
+
+    /**
+     * Запустить решение задачи в фоновом потоке
+     * <p>
+     * Решатель получает плотные массивы одного снимка задачи и не трогает
+     * её списки. Когда решение закончится или будет отменено, в фоновом
+     * потоке вызывается onFinish; применить ответ нужно в потоке интерфейса
+     * через {@link #finishBackgroundSolve()}
+     *
+     * @param onFinish обработчик окончания решения (вызывается в фоновом потоке)
+     * @return true, если решение запущено
+     */
+    public boolean solveInBackground(Runnable onFinish) {
+        return solveInBackground(solveMode.createSolver(), onFinish);
+    }
+
+    /**
+     * Запустить приближённое решение в фоновом потоке: длина найденной хорды
+     * не меньше (1 - eps) от лучшей; ответ применяется так же, как у
+     * {@link #solveInBackground(Runnable)}
+     *
+     * @param eps      допустимая доля недобора длины, от 0 до 1
+     * @param onFinish обработчик окончания решения (вызывается в фоновом потоке)
+     * @return true, если решение запущено
+     */
+    public boolean solveApproxInBackground(double eps, Runnable onFinish) {
+        return solveInBackground(new ApproxSolver(eps), onFinish);
+    }
+
+    /**
+     * Запустить решение заданным решателем в фоновом потоке
+     *
+     * @param solver   решатель
+     * @param onFinish обработчик окончания решения (вызывается в фоновом потоке)
+     * @return true, если решение запущено
+     */
+    private boolean solveInBackground(Solver solver, Runnable onFinish) {
+        if (background != null) {
+            PanelLog.warning("Задача уже решается");
+            return false;
+        }
+        TaskSnapshot snapshot = prepareSolve();
+        if (snapshot == null)
+            return false;
+        ChordClipper clipper = snapshot.clipper();
+        PackedPoints packed = PackedPoints.of(snapshot.points());
+        ResultCache cache = resultCache;
+        BackgroundSolve job = new BackgroundSolve(snapshot, packed, clipper, solver,
+                cache == null ? null : ResultCache.key(packed, clipper, solveMode));
+        // решатель с бюджетом времени показывает улучшения, не дожидаясь конца
+        if (job.solver instanceof AnytimeSolver anytime)
+            anytime.setMailbox(job.mailbox);
+        background = job;
+        // точный ответ из кэша годится и приближённому решению
+        Chord cached = cache == null ? null : cache.get(job.key, packed, clipper);
+        if (cached != null) {
+            // ответ уже известен: завершаем решение сразу, без фонового потока
+            job.result = cached;
+            job.cached = true;
+            job.progress.complete();
+            onFinish.run();
+            return true;
+        }
+        SOLVE_EXECUTOR.execute(() -> {
+            long startBytes = Allocations.allocatedBytes();
+            long startTime = System.nanoTime();
+            try {
+                job.result = job.solver.solve(job.packed, job.clipper, job.progress);
+                if (cache != null && isCacheable(job.solver))
+                    cache.put(job.key, job.result);
+            } catch (CancellationException e) {
+                // отменённое решение ответа не даёт
+            } catch (RuntimeException e) {
+                job.error = e;
+            }
+            job.nanos = System.nanoTime() - startTime;
+            job.bytes = startBytes < 0 ? -1 : Allocations.allocatedBytes() - startBytes;
+            onFinish.run();
+        });
+        return true;
+    }
+
+    /**
+     * Применить результат фонового решения (вызывается в потоке интерфейса)
+     *
+     * @return true, если задача решена
+     */
+    public boolean finishBackgroundSolve() {
+        BackgroundSolve job = background;
+        if (job == null)
+            return false;
+        background = null;
+        if (job.error != null) {
+            PanelLog.error("Ошибка при решении задачи\n" + job.error);
+        } else if (job.result == null) {
+            PanelLog.warning(String.format("Решение отменено: перебрано %d из %d пар",
+                    job.progress.getDone(), job.progress.getTotal()));
+        } else if (!job.source.sameInput(state.get())) {
+            // пока шло решение, точки или прямоугольник могли измениться
+            PanelLog.warning("Задача изменилась во время решения, ответ отброшен");
+        } else {
+            lastSolveNanos = job.nanos;
+            lastSolveBytes = job.bytes;
+            if (!job.cached)
+                reportSolve(job.solver, job.result);
+            logCache(resultCache, job.cached);
+            applySolution(job.source, job.result, job.clipper, true);
+            return true;
+        }
+        // промежуточный ответ без окончательного не показываем
+        cancel();
+        return false;
+    }
+
+    /**
+     * Забрать промежуточную хорду фонового решения и показать её
+     */
+    private void pollBackgroundSolve() {
+        BackgroundSolve job = background;
+        if (job == null)
+            return;
+        Chord chord = job.mailbox.take();
+        // индексы хорды относятся к снимку, сделанному при запуске
+        if (chord != null)
+            applySolution(job.source, chord, job.clipper, false);
+    }
+
+    /**
+     * Отменить фоновое решение
+     */
+    public void cancelBackgroundSolve() {
+        if (background != null)
+            background.progress.cancel();
+    }
+
+    /**
+     * Идёт ли фоновое решение
+     *
+     * @return флаг
+     */
+    @JsonIgnore
+    public boolean isSolving() {
+        return background != null;
+    }
+
+    /**
+     * Получить ход фонового решения
+     *
+     * @return ход решения или null, если задача не решается
+     */
+    @JsonIgnore
+    public SolveProgress getSolveProgress() {
+        BackgroundSolve job = background;
+        return job == null ? null : job.progress;
+    }
+
+    /**
+     * Проверить, можно ли решать задачу, и снять прошлое решение
+     *
+     * @return снимок, который нужно решать, или null, если задача не может быть решена
+     */
+    private TaskSnapshot prepareSolve() {
+        TaskSnapshot snapshot = state.get();
+        if (snapshot.tops().size() < 2) {
             PanelLog.error("Задача не может быть решена, потому что прямоугольник не был задан");
             rectangle = false;
-        }else if(points.size() >= 2){
-            rectangle = true;
-            // k - коэффициент наклона прямой
-            double k;
-            // c - свободный член
-            double c;
-            // создаем переменную, в которую мы будем записывать длины отрезков, расположенных внутри прямоугольника
-            double lengthMax = -1;
-            double length = -1;
-
-            double _top = max(tops.get(0).getPos().y, tops.get(1).getPos().y);
-            double _bottom = min(tops.get(0).getPos().y, tops.get(1).getPos().y);
-            double _right = max(tops.get(0).getPos().x, tops.get(1).getPos().x);
-            double _left = min(tops.get(0).getPos().x, tops.get(1).getPos().x);
-
-            Point aMax = null;
-            Point bMax = null;
-            Vector2d crossA = null;
-            Vector2d crossB = null;
-            Vector2d crossAmax = null;
-            Vector2d crossBmax = null;
-
-            // перебираем пары точек
-            for (int i = 0; i < points.size(); i++) {
-                for (int j = i + 1; j < points.size(); j++) {
-                    // сохраняем точки
-                    Point a = points.get(i);
-                    Point b = points.get(j);
-
-                    // случай, когда прямая параллельна ординате
-                    if (a.getPos().x == b.getPos().x) {
-                        // проверяем, пересекает ли прямая прямоугольник
-                        if (a.getPos().x >= _left && a.getPos().x <= _right) {
-                            length = _top - _bottom;
-                            crossA = new Vector2d(a.getPos().x, _bottom);
-                            crossB = new Vector2d(a.getPos().x, _top);
-                        }
-                    } else {
-                        k = (a.getPos().y - b.getPos().y) / (a.getPos().x - b.getPos().x);
-                        // ищем коэффициент наклона прямой и свободный член
-                        c = a.getPos().y - a.getPos().x * k;
-
-                        // ищем точку пересечения прямой и нашего прямоугольника
-
-                        // случай, когда прямая параллельна абсциссе
-                        if (k == 0) {
-                            if (a.getPos().y >= _bottom && a.getPos().y <= _top) {
-                                length = _right - _left;
-                                crossA = new Vector2d(_left, a.getPos().y);
-                                crossB = new Vector2d(_right, a.getPos().y);
-                            }
-                        } else {
-                            double yLeft = k * _left + c;
-                            double yRight = k * _right + c;
-                            double xTop = (_top - c) / k;
-                            double xBottom = (_bottom - c) / k;
-
-                            if (yLeft <= _top && yLeft >= _bottom) {
-                                Vector2d v = new Vector2d(_left, yLeft);
-                                crossA = v;
-                                if (yRight <= _top && yRight >= _bottom) {
-                                    Vector2d v2 = new Vector2d(_right, yRight);
-                                    crossB = v2;
-                                    length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                                } else if (xBottom >= _left && xBottom <= _right) {
-                                    Vector2d v2 = new Vector2d(xBottom, _bottom);
-                                    crossB = v2;
-                                    length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                                } else if (xTop >= _left && xTop <= _right) {
-                                    Vector2d v2 = new Vector2d(xTop, _top);
-                                    crossB = v2;
-                                    length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                                }
-                            } else if (yRight <= _top && yRight >= _bottom) {
-                                Vector2d v = new Vector2d(_right, yRight);
-                                crossA = v;
-                                if (xBottom >= _left && xBottom <= _right) {
-                                    Vector2d v2 = new Vector2d(xBottom, _bottom);
-                                    crossB = v2;
-                                    length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                                } else if (xTop >= _left && xTop <= _right) {
-                                    Vector2d v2 = new Vector2d(xTop, _top);
-                                    crossB = v2;
-                                    length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                                }
-                            } else if (xBottom >= _left && xBottom <= _right) {
-                                Vector2d v = new Vector2d(xBottom, _bottom);
-                                Vector2d v2 = new Vector2d(xTop, _top);
-                                crossA = v;
-                                crossB = v2;
-                                length = Math.sqrt((v2.x - v.x) * (v2.x - v.x) + (v2.y - v.y) * (v2.y - v.y));
-                            }
-                        }
-                        if (length > lengthMax) {
-                            lengthMax = length;
-                            aMax = a;
-                            bMax = b;
-                            crossAmax = crossA;
-                            crossBmax = crossB;
-                        }
-                    }
-                }
-            }
-            // задача решена
-            solved = true;
-
-            if (aMax != null && bMax != null) {
-                sPoints.add(aMax);
-                sPoints.add(bMax);
-                crossPoints.add(crossAmax);
-                crossPoints.add(crossBmax);
-
-                // выводим на панель лога координаты точек пересечения
-                PanelLog.info("Точка {" + crossPoints.get(0).x + ';' + crossPoints.get(0).y +
-                        "} является точкой пересечения прямой и прямоугольника");
-                PanelLog.info("Точка {" + crossPoints.get(1).x + ';' + crossPoints.get(1).y +
-                        "} является точкой пересечения прямой и прямоугольника");
+            return null;
+        }
+        if (snapshot.points().size() < 2)
+            return null;
+        rectangle = true;
+        // прямоугольник задан двумя противоположными вершинами
+        return state.updateAndGet(TaskSnapshot::withoutSolution);
+    }
+
+    /**
+     * Вывести в лог время решения и статистику решателя
+     *
+     * @param solver решатель
+     * @param best   найденная хорда
+     */
+    private void reportSolve(Solver solver, Chord best) {
+        PanelLog.info(String.format("Решение: %.1f мс, выделено %s", lastSolveNanos / 1e6,
+                lastSolveBytes < 0 ? "?" : lastSolveBytes / 1024 + " КБ"));
+        if (solver instanceof GridSolver grid) {
+            if (grid.isLastOnGrid()) {
+                if (grid.getLastDirection() != null)
+                    PanelLog.info("Направление прямой ответа в шагах сетки: " +
+                            Arrays.toString(grid.getLastDirection()));
+            } else {
+                PanelLog.warning("Точки не лежат на сетке, прямые сравнивались в double");
             }
+            logLineStats(grid.getLastStats(), best);
+        } else if (solver instanceof LineDedupSolver dedup) {
+            logLineStats(dedup.getLastStats(), best);
+        } else if (solver instanceof AnytimeSolver anytime) {
+            if (anytime.isLastProven())
+                PanelLog.info("Оптимум доказан до конца бюджета времени");
+            else
+                PanelLog.warning("Бюджет времени исчерпан, ответ может быть не лучшим");
+        } else if (solver instanceof ApproxSolver approx) {
+            ApproxSolver.Result result = approx.getLastResult();
+            if (result.exact())
+                PanelLog.warning("Сетка направлений не дала гарантии, задача решена точно");
+            PanelLog.info(String.format("Приближённо: корзин %d, оценка сверху %.4f, недобор не больше %.2f%%",
+                    result.directions(), result.upperBound(), result.achievedEps() * 100));
+        }
+    }
+
+    /**
+     * Можно ли запомнить ответ решателя в кэше
+     * <p>
+     * Решатель с бюджетом времени мог не дойти до оптимума, а приближённый
+     * ищет хорду лишь не короче (1 - eps) от лучшей, такой ответ не должен
+     * возвращаться при следующем решении
+     *
+     * @param solver решатель, закончивший решение
+     * @return true, если ответ окончательный
+     */
+    private static boolean isCacheable(Solver solver) {
+        if (solver instanceof ApproxSolver)
+            return false;
+        return !(solver instanceof AnytimeSolver anytime) || anytime.isLastProven();
+    }
+
+    /**
+     * Вывести в лог результат обращения к кэшу решений и его счётчики
+     *
+     * @param cache кэш решений, null - кэша нет
+     * @param hit   найден ли ответ в кэше
+     */
+    private static void logCache(ResultCache cache, boolean hit) {
+        if (cache == null)
+            return;
+        PanelLog.info(String.format("Кэш решений: %s (попаданий %d, с диска %d, промахов %d)",
+                hit ? "ответ найден" : "промах", cache.getHits(), cache.getDiskHits(),
+                cache.getMisses()));
+    }
+
+    /**
+     * Вывести в лог статистику перебора прямых без повторов
+     *
+     * @param stats статистика
+     * @param best  найденная хорда
+     */
+    private static void logLineStats(LineDedupSolver.LineStats stats, Chord best) {
+        PanelLog.info(String.format("Прямых: %d, пропущено повторов: %d из %d пар",
+                stats.lines(), stats.skipped(), stats.pairs()));
+        if (best.exists())
+            PanelLog.info("На прямой ответа точки " + Arrays.toString(stats.winningLine()) +
+                    ", пар: " + stats.winningPairs());
+    }
+
+    /**
+     * Найти за один проход k самых длинных хорд и все хорды не короче порога
+     *
+     * @param k         сколько самых длинных хорд нужно, 0 - не нужны
+     * @param minLength порог длины, {@link Double#POSITIVE_INFINITY} - хорды по порогу не нужны
+     * @return результат запроса или null, если задача не может быть решена
+     */
+    public ChordQuery.Result queryChords(int k, double minLength) {
+        TaskSnapshot snapshot = state.get();
+        if (snapshot.tops().size() != 2) {
+            PanelLog.error("Запрос невозможен, потому что прямоугольник не был задан");
+            return null;
+        }
+        ChordClipper clipper = snapshot.clipper();
+        ChordQuery.Result result = new ChordQuery(k, minLength).run(PackedPoints.of(snapshot.points()), clipper);
+        PanelLog.info(String.format("Запрос хорд: %d самых длинных, %d не короче порога, %.1f мс",
+                result.top().length, result.over().length, result.nanos() / 1e6));
+        return result;
+    }
+
+    /**
+     * Показать хорду как решение задачи
+     *
+     * @param chord хорда из результата запроса
+     */
+    public void showChord(Chord chord) {
+        TaskSnapshot snapshot = state.get();
+        if (snapshot.tops().size() != 2 || chord.j() >= snapshot.points().size())
+            return;
+        rectangle = true;
+        applySolution(snapshot, chord, snapshot.clipper(), true);
+    }
+
+    /**
+     * Записать найденную хорду как решение текущей задачи
+     *
+     * @param best    лучшая хорда
+     * @param clipper отсечение прямоугольником
+     * @param log     нужно ли выводить точки пересечения в лог
+     */
+    private void applySolution(Chord best, ChordClipper clipper, boolean log) {
+        applySolution(state.get(), best, clipper, log);
+    }
+
+    /**
+     * Записать найденную хорду как решение задачи, если задача не изменилась
+     * с того снимка, по которому хорда найдена
+     *
+     * @param source  снимок, по которому найдена хорда
+     * @param best    лучшая хорда
+     * @param clipper отсечение прямоугольником
+     * @param log     нужно ли выводить точки пересечения в лог
+     * @return true, если решение записано
+     */
+    private boolean applySolution(TaskSnapshot source, Chord best, ChordClipper clipper, boolean log) {
+        TaskSnapshot solved = state.updateAndGet(s -> s.sameInput(source) ? s.withSolution(best, clipper) : s);
+        // индексы хорды относятся к другим точкам
+        if (!solved.sameInput(source))
+            return false;
+        List<Vector2d> crossPoints = solved.crossPoints();
+        if (best.exists() && log && !crossPoints.isEmpty()) {
+            // выводим на панель лога координаты точек пересечения
+            PanelLog.info("Точка {" + crossPoints.get(0).x + ';' + crossPoints.get(0).y +
+                    "} является точкой пересечения прямой и прямоугольника");
+            PanelLog.info("Точка {" + crossPoints.get(1).x + ';' + crossPoints.get(1).y +
+                    "} является точкой пересечения прямой и прямоугольника");
         }
+        return true;
+    }
+
+    /**
+     * Включен ли живой режим решения
+     *
+     * @return флаг
+     */
+    @JsonIgnore
+    public boolean isLiveSolve() {
+        return liveSolve;
+    }
+
+    /**
+     * Включить или выключить живой режим: ответ поддерживается инкрементально
+     * при добавлении и удалении точек
+     *
+     * @param liveSolve флаг
+     */
+    public void setLiveSolve(boolean liveSolve) {
+        this.liveSolve = liveSolve;
+        if (!liveSolve)
+            liveSolver = null;
+        else if (state.get().tops().size() == 2)
+            startLiveSolve();
+        else
+            PanelLog.info("Решение появится, когда будет задан прямоугольник");
+    }
+
+    /**
+     * Запустить живой решатель: один полный перебор, дальше только изменения
+     */
+    private void startLiveSolve() {
+        rectangle = true;
+        TaskSnapshot snapshot = state.get();
+        ChordClipper clipper = snapshot.clipper();
+        liveSolver = new IncrementalSolver(clipper);
+        liveSolver.reset(PackedPoints.of(snapshot.points()));
+        applySolution(snapshot, liveSolver.best(), clipper, true);
+    }
+
+    /**
+     * Получить режим решения
+     *
+     * @return режим решения
+     */
+    public SolveMode getSolveMode() {
+        return solveMode;
+    }
+
+    /**
+     * Получить кол-во байт, выделенных за последнее решение
+     *
+     * @return кол-во байт или -1, если неизвестно
+     */
+    @JsonIgnore
+    public long getLastSolveBytes() {
+        return lastSolveBytes;
+    }
+
+    /**
+     * Получить время последнего решения
+     *
+     * @return время в нс
+     */
+    @JsonIgnore
+    public long getLastSolveNanos() {
+        return lastSolveNanos;
+    }
+
+    /**
+     * Задать режим решения
+     *
+     * @param solveMode режим решения
+     */
+    public void setSolveMode(SolveMode solveMode) {
+        this.solveMode = solveMode;
     }
 
     /**
@@ -463,17 +1124,88 @@ public class Task {
      *
      * @return название мира
      */
-    public ArrayList<Point> getPoints() {
-        return points;
+    public List<Point> getPoints() {
+        return state.get().points();
+    }
+
+    /**
+     * Получить вершины прямоугольника
+     * (нужен для json)
+     *
+     * @return вершины прямоугольника
+     */
+    @JsonProperty("rect")
+    public List<Point> getTops() {
+        return state.get().tops();
+    }
+
+    /**
+     * Получить текущий снимок задачи
+     * <p>
+     * Снимок не меняется, поэтому его можно решать и рисовать
+     * в любом потоке, пока задача меняется в потоке интерфейса
+     *
+     * @return снимок
+     */
+    @JsonIgnore
+    public TaskSnapshot getSnapshot() {
+        return state.get();
+    }
+
+    /**
+     * Заменить кэш решений задачи (по умолчанию он общий для всех задач)
+     *
+     * @param resultCache кэш, null - решать без кэша
+     */
+    @JsonIgnore
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Подключить журнал изменений: текущее состояние сразу становится
+     * его снимком, дальше каждое изменение точек и прямоугольника пишется в журнал
+     *
+     * @param journal журнал, null - отключить
+     */
+    @JsonIgnore
+    public void setJournal(TaskJournal journal) {
+        this.journal = journal;
+        if (journal != null)
+            journal.checkpoint(copy());
+    }
+
+    /**
+     * Записать изменение в журнал, а разросшийся журнал сложить в снимок
+     *
+     * @param record запись изменения
+     */
+    private void journal(Consumer<TaskJournal> record) {
+        if (journal == null)
+            return;
+        record.accept(journal);
+        // снимок берём в том же потоке, что и записи, поэтому он согласован с журналом
+        if (journal.isCompactionDue())
+            journal.checkpoint(copy());
+    }
+
+    /**
+     * Копия задачи по текущему снимку (списки точек не копируются, они неизменяемые)
+     *
+     * @return новая задача с теми же точками, прямоугольником и режимом решения, но без решения
+     */
+    public Task copy() {
+        TaskSnapshot snapshot = state.get();
+        Task task = new Task(ownCS, snapshot.points(), snapshot.tops());
+        task.setSolveMode(solveMode);
+        return task;
     }
 
     /**
      * Отмена решения задачи
      */
     public void cancel() {
-        solved = false;
-        sPoints.clear();
-        crossPoints.clear();
+        state.updateAndGet(TaskSnapshot::withoutSolution);
     }
 
     /**
@@ -481,14 +1213,16 @@ public class Task {
      *
      * @return флаг
      */
+    @JsonIgnore
     public boolean isSolved() {
-        return solved;
+        return state.get().solved();
     }
 
     /**
      * проверка, нарисован ли прямоугольник
      * @return флаг
      */
+    @JsonIgnore
     public boolean isRectanglePaint(){
         return rectangle;
     }
@@ -497,15 +1231,18 @@ public class Task {
      * проверка, можно ли провести прямую
      * @return флаг
      */
+    @JsonIgnore
     public boolean isLineAble(){
-        return points.size() >= 2;
+        return state.get().points().size() >= 2;
     }
 
     /**
      * проверка, пересекает ли прямоугольник прямая, параллельная одной из осей координат
      */
+    @JsonIgnore
     public boolean isParallelLineCross(){
-        return sPoints.size() == 0 && solved;
+        TaskSnapshot snapshot = state.get();
+        return snapshot.sPoints().isEmpty() && snapshot.solved();
     }
 
     /**
@@ -538,15 +1275,17 @@ public class Task {
     /**
      * Получить список точек, являющихся решением
      */
-     public ArrayList<Point> getsPoints(){
-         return sPoints;
+    @JsonIgnore
+     public List<Point> getsPoints(){
+         return state.get().sPoints();
      }
 
     /**
      * Получить список точек, являющихся пересечением прямой и прямоугольника
      */
-    public ArrayList<Vector2d> getCrossPoints(){
-        return crossPoints;
+    @JsonIgnore
+    public List<Vector2d> getCrossPoints(){
+        return state.get().crossPoints();
     }
 
     /**
@@ -576,4 +1315,77 @@ public class Task {
         }
     }
 
+
+    /**
+     * Фоновое решение: входные данные, ход и результат
+     */
+    private static class BackgroundSolve {
+        /**
+         * Снимок задачи, который решается
+         */
+        final TaskSnapshot source;
+        /**
+         * Координаты точек снимка
+         */
+        final PackedPoints packed;
+        /**
+         * Отсечение прямоугольником
+         */
+        final ChordClipper clipper;
+        /**
+         * Решатель
+         */
+        final Solver solver;
+        /**
+         * Ход решения
+         */
+        final SolveProgress progress;
+        /**
+         * Ключ задачи в кэше решений, null - решение без кэша
+         */
+        final ResultCache.Key key;
+        /**
+         * Ящик для промежуточных хорд
+         */
+        final ChordMailbox mailbox = new ChordMailbox();
+        /**
+         * Найденная хорда, null, если решение отменено или упало
+         */
+        volatile Chord result;
+        /**
+         * Ошибка решателя
+         */
+        volatile RuntimeException error;
+        /**
+         * Время решения в нс
+         */
+        volatile long nanos;
+        /**
+         * Сколько байт выделено за решение, -1, если неизвестно или ответ взят из кэша
+         */
+        volatile long bytes = -1;
+        /**
+         * Взят ли ответ из кэша
+         */
+        boolean cached;
+
+        /**
+         * Конструктор фонового решения
+         *
+         * @param source  снимок задачи
+         * @param packed  координаты точек снимка
+         * @param clipper отсечение прямоугольником
+         * @param solver  решатель
+         * @param key     ключ задачи в кэше решений, null - без кэша
+         */
+        BackgroundSolve(TaskSnapshot source, PackedPoints packed, ChordClipper clipper, Solver solver,
+                        ResultCache.Key key) {
+            this.source = source;
+            this.packed = packed;
+            this.clipper = clipper;
+            this.solver = solver;
+            this.key = key;
+            this.progress = new SolveProgress(packed.size());
+        }
+    }
 }
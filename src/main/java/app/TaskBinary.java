@@ -0,0 +1,355 @@
+package app;
+
+import misc.CoordinateSystem2d;
+import misc.Vector2d;
+import solvers.SolveMode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Компактный двоичный формат задачи
+ * <p>
+ * Заголовок: сигнатура, версия, флаги, режим решения, СК задачи, вершины
+ * прямоугольника и кол-во точек. Дальше точки блоками по {@link #BLOCK_POINTS}:
+ * в блоке сначала все X, потом все Y (по столбцам), каждая координата записана
+ * как разность битов double с предыдущей в zigzag-varint, поэтому у близких
+ * и "круглых" координат старшие байты не пишутся. С флагом сжатия блок
+ * дополнительно упакован DEFLATE. Блоки независимы, их можно разбирать по одному
+ */
+public class TaskBinary {
+    /**
+     * Расширение файлов формата
+     */
+    public static final String EXTENSION = ".tbin";
+    /**
+     * Сигнатура ("CHTB")
+     */
+    private static final int MAGIC = 0x43485442;
+    /**
+     * Версия формата
+     */
+    private static final int VERSION = 1;
+    /**
+     * Флаг сжатия блоков DEFLATE
+     */
+    private static final int FLAG_DEFLATE = 1;
+    /**
+     * Кол-во точек в блоке
+     */
+    static final int BLOCK_POINTS = 4096;
+    /**
+     * Наибольший размер varint-записи long
+     */
+    private static final int MAX_VARINT_BYTES = 10;
+
+    /**
+     * Закрытый конструктор
+     */
+    private TaskBinary() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Записан ли файл в двоичном формате (по расширению)
+     *
+     * @param path путь к файлу
+     * @return флаг
+     */
+    public static boolean isBinary(String path) {
+        return path.endsWith(EXTENSION);
+    }
+
+    /**
+     * Записать задачу в файл
+     *
+     * @param task     задача
+     * @param path     путь к файлу
+     * @param compress сжимать ли блоки
+     * @throws IOException если файл не удалось записать
+     */
+    public static void write(Task task, Path path, boolean compress) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(task, out, compress);
+        }
+    }
+
+    /**
+     * Записать задачу в поток
+     *
+     * @param task     задача
+     * @param out      поток (не закрывается)
+     * @param compress сжимать ли блоки
+     * @throws IOException если запись не удалась
+     */
+    public static void write(Task task, OutputStream out, boolean compress) throws IOException {
+        // точки и вершины берём из одного снимка
+        TaskSnapshot snapshot = task.getSnapshot();
+        List<Point> points = snapshot.points();
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeByte(compress ? FLAG_DEFLATE : 0);
+        data.writeUTF(task.getSolveMode().name());
+        CoordinateSystem2d ownCS = task.getOwnCS();
+        writeVector(data, ownCS.getMin());
+        writeVector(data, ownCS.getMax());
+        data.writeByte(snapshot.tops().size());
+        for (Point top : snapshot.tops())
+            writeVector(data, top.getPos());
+        data.writeInt(points.size());
+
+        double[] xs = new double[BLOCK_POINTS];
+        double[] ys = new double[BLOCK_POINTS];
+        byte[] raw = new byte[2 * BLOCK_POINTS * MAX_VARINT_BYTES];
+        byte[] packed = new byte[raw.length + raw.length / 100 + 64];
+        Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        try {
+            int k = 0;
+            for (Point p : points) {
+                xs[k] = p.getPos().x;
+                ys[k] = p.getPos().y;
+                if (++k == BLOCK_POINTS) {
+                    writeBlock(data, xs, ys, k, raw, packed, deflater);
+                    k = 0;
+                }
+            }
+            if (k > 0)
+                writeBlock(data, xs, ys, k, raw, packed, deflater);
+        } finally {
+            if (deflater != null)
+                deflater.end();
+        }
+        data.flush();
+    }
+
+    /**
+     * Записать блок точек
+     *
+     * @param data     поток
+     * @param xs       координаты X
+     * @param ys       координаты Y
+     * @param count    кол-во точек в блоке
+     * @param raw      буфер кодированного блока
+     * @param packed   буфер сжатого блока
+     * @param deflater упаковщик, null - без сжатия
+     * @throws IOException если запись не удалась
+     */
+    private static void writeBlock(DataOutputStream data, double[] xs, double[] ys, int count,
+                                   byte[] raw, byte[] packed, Deflater deflater) throws IOException {
+        int length = encodeColumn(xs, count, raw, 0);
+        length = encodeColumn(ys, count, raw, length);
+        data.writeInt(count);
+        data.writeInt(length);
+        if (deflater == null) {
+            data.write(raw, 0, length);
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+        int packedLength = 0;
+        while (!deflater.finished())
+            packedLength += deflater.deflate(packed, packedLength, packed.length - packedLength);
+        data.writeInt(packedLength);
+        data.write(packed, 0, packedLength);
+    }
+
+    /**
+     * Закодировать столбец координат разностями битов
+     *
+     * @param values координаты
+     * @param count  кол-во координат
+     * @param out    буфер
+     * @param offset смещение в буфере
+     * @return смещение после записанных байт
+     */
+    private static int encodeColumn(double[] values, int count, byte[] out, int offset) {
+        long prev = 0;
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long delta = bits - prev;
+            prev = bits;
+            // zigzag: маленькие по модулю разности любого знака дают короткую запись
+            long v = (delta << 1) ^ (delta >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out[offset++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out[offset++] = (byte) v;
+        }
+        return offset;
+    }
+
+    /**
+     * Прочитать задачу из файла
+     *
+     * @param path путь к файлу
+     * @return задача
+     * @throws IOException если файл не удалось прочитать или он повреждён
+     */
+    public static Task read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Прочитать задачу из потока
+     *
+     * @param in поток (не закрывается)
+     * @return задача
+     * @throws IOException если чтение не удалось или данные повреждены
+     */
+    public static Task read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC)
+            throw new IOException("не двоичный файл задачи");
+        int version = data.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("неизвестная версия формата: " + version);
+        boolean compressed = (data.readUnsignedByte() & FLAG_DEFLATE) != 0;
+        SolveMode solveMode;
+        try {
+            solveMode = SolveMode.byName(data.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("неизвестный режим решения", e);
+        }
+        CoordinateSystem2d ownCS = new CoordinateSystem2d(readVector(data), readVector(data));
+        int topCount = data.readUnsignedByte();
+        ArrayList<Point> tops = new ArrayList<>(topCount);
+        for (int i = 0; i < topCount; i++)
+            tops.add(new Point(readVector(data)));
+        int n = data.readInt();
+        if (n < 0)
+            throw new IOException("файл повреждён: точек " + n);
+
+        // n взято из файла: повреждённый заголовок не должен заранее занимать гигабайты
+        ArrayList<Point> points = new ArrayList<>(Math.min(n, BLOCK_POINTS));
+        double[] xs = new double[BLOCK_POINTS];
+        double[] ys = new double[BLOCK_POINTS];
+        byte[] raw = new byte[2 * BLOCK_POINTS * MAX_VARINT_BYTES];
+        byte[] packed = new byte[raw.length + raw.length / 100 + 64];
+        Inflater inflater = compressed ? new Inflater() : null;
+        try {
+            while (points.size() < n) {
+                int count = readBlock(data, xs, ys, raw, packed, inflater);
+                if (count > n - points.size())
+                    throw new IOException("файл повреждён: лишние точки");
+                for (int i = 0; i < count; i++)
+                    points.add(new Point(new Vector2d(xs[i], ys[i])));
+            }
+        } finally {
+            if (inflater != null)
+                inflater.end();
+        }
+        Task task = new Task(ownCS, points, tops);
+        task.setSolveMode(solveMode);
+        return task;
+    }
+
+    /**
+     * Прочитать блок точек
+     *
+     * @param data     поток
+     * @param xs       массив для координат X
+     * @param ys       массив для координат Y
+     * @param raw      буфер кодированного блока
+     * @param packed   буфер сжатого блока
+     * @param inflater распаковщик, null - блок не сжат
+     * @return кол-во точек в блоке
+     * @throws IOException если чтение не удалось или блок повреждён
+     */
+    private static int readBlock(DataInputStream data, double[] xs, double[] ys, byte[] raw, byte[] packed,
+                                 Inflater inflater) throws IOException {
+        int count = data.readInt();
+        int length = data.readInt();
+        if (count <= 0 || count > BLOCK_POINTS || length < 0 || length > raw.length)
+            throw new IOException("файл повреждён: блок из " + count + " точек, " + length + " байт");
+        if (inflater == null) {
+            data.readFully(raw, 0, length);
+        } else {
+            int packedLength = data.readInt();
+            if (packedLength < 0 || packedLength > packed.length)
+                throw new IOException("файл повреждён: сжатый блок " + packedLength + " байт");
+            data.readFully(packed, 0, packedLength);
+            inflater.reset();
+            inflater.setInput(packed, 0, packedLength);
+            try {
+                if (inflater.inflate(raw, 0, length) != length || !inflater.finished())
+                    throw new IOException("файл повреждён: блок не распаковался");
+            } catch (DataFormatException e) {
+                throw new IOException("файл повреждён: " + e.getMessage(), e);
+            }
+        }
+        int offset = decodeColumn(raw, 0, length, xs, count);
+        if (decodeColumn(raw, offset, length, ys, count) != length)
+            throw new IOException("файл повреждён: длина блока не совпала");
+        return count;
+    }
+
+    /**
+     * Раскодировать столбец координат
+     *
+     * @param in     буфер
+     * @param offset смещение в буфере
+     * @param end    конец данных блока
+     * @param values массив для координат
+     * @param count  кол-во координат
+     * @return смещение после прочитанных байт
+     * @throws IOException если данные блока кончились раньше времени
+     */
+    private static int decodeColumn(byte[] in, int offset, int end, double[] values, int count) throws IOException {
+        long prev = 0;
+        for (int i = 0; i < count; i++) {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (offset >= end || shift >= 64)
+                    throw new IOException("файл повреждён: оборванная координата");
+                b = in[offset++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            prev += (v >>> 1) ^ -(v & 1);
+            values[i] = Double.longBitsToDouble(prev);
+        }
+        return offset;
+    }
+
+    /**
+     * Записать вектор
+     *
+     * @param data   поток
+     * @param vector вектор
+     * @throws IOException если запись не удалась
+     */
+    private static void writeVector(DataOutputStream data, Vector2d vector) throws IOException {
+        data.writeDouble(vector.x);
+        data.writeDouble(vector.y);
+    }
+
+    /**
+     * Прочитать вектор
+     *
+     * @param data поток
+     * @return вектор
+     * @throws IOException если чтение не удалось
+     */
+    private static Vector2d readVector(DataInputStream data) throws IOException {
+        return new Vector2d(data.readDouble(), data.readDouble());
+    }
+}
@@ -0,0 +1,165 @@
+package app;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import panels.PanelLog;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Загрузка и сохранение задач в фоновом потоке ввода-вывода
+ * <p>
+ * Файлы читаются и пишутся по одному в отдельном потоке, поэтому окно
+ * не замирает на больших задачах. Ход и итог пишутся в {@link PanelLog}
+ * (он принимает записи из любого потока). Сохранение идёт во временный
+ * файл рядом с целевым, который сбрасывается на диск и атомарно
+ * переименовывается: при сбое на диске остаётся старый файл целиком
+ */
+public class TaskFiles {
+    /**
+     * Поток ввода-вывода (один на приложение, файлы обрабатываются по очереди)
+     */
+    private static final ExecutorService IO_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "io");
+        // недописанный временный файл не должен мешать закрытию приложения
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Запись JSON; поток закрываем сами, после сброса на диск
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    /**
+     * Закрытый конструктор
+     */
+    private TaskFiles() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Загрузить задачу в фоне
+     *
+     * @param path    путь к файлу (.tbin - двоичный формат, иначе JSON)
+     * @param preview получатель частично загруженной задачи, вызывается в потоке
+     *                ввода-вывода по мере чтения точек; null - не показывать
+     * @return задача, когда файл прочитан
+     */
+    public static CompletableFuture<Task> load(Path path, Consumer<Task> preview) {
+        return CompletableFuture.supplyAsync(() -> {
+            long startTime = System.nanoTime();
+            try {
+                Task task = read(path, preview);
+                PanelLog.success(String.format("Файл %s загружен за %.0f мс, точек: %d (%.1f МБ/с)", path,
+                        (System.nanoTime() - startTime) / 1e6, task.getPoints().size(),
+                        Files.size(path) * 1e9 / (System.nanoTime() - startTime) / (1 << 20)));
+                return task;
+            } catch (IOException e) {
+                PanelLog.error("Не получилось прочитать файл " + path + "\n" + e);
+                throw new UncheckedIOException(e);
+            }
+        }, IO_EXECUTOR);
+    }
+
+    /**
+     * Прочитать задачу в текущем потоке
+     *
+     * @param path    путь к файлу
+     * @param preview получатель частично загруженной задачи, null - не показывать
+     * @return задача
+     * @throws IOException если файл не удалось прочитать или разобрать
+     */
+    static Task read(Path path, Consumer<Task> preview) throws IOException {
+        if (TaskBinary.isBinary(path.toString()))
+            return TaskBinary.read(path);
+        try (InputStream in = Files.newInputStream(path)) {
+            return TaskReader.parse(in, preview == null ? null : partial -> {
+                Task task = partial.toTask();
+                PanelLog.info("Загружено точек: " + task.getPoints().size());
+                preview.accept(task);
+            }).toTask();
+        }
+    }
+
+    /**
+     * Сохранить задачу в фоне
+     * <p>
+     * Сохраняется снимок на момент вызова: правки, сделанные во время записи, в файл не попадут
+     *
+     * @param task задача
+     * @param path путь к файлу (.tbin - двоичный формат, иначе JSON)
+     * @return признак окончания записи
+     */
+    public static CompletableFuture<Void> save(Task task, Path path) {
+        Task frozen = task.copy();
+        return CompletableFuture.runAsync(() -> {
+            long startTime = System.nanoTime();
+            try {
+                write(frozen, path);
+                PanelLog.success(String.format("Файл %s сохранён за %.0f мс, точек: %d", path,
+                        (System.nanoTime() - startTime) / 1e6, frozen.getPoints().size()));
+            } catch (IOException e) {
+                PanelLog.error("Не получилось записать файл " + path + "\n" + e);
+                throw new UncheckedIOException(e);
+            }
+        }, IO_EXECUTOR);
+    }
+
+    /**
+     * Записать задачу атомарно в текущем потоке
+     *
+     * @param task задача
+     * @param path путь к файлу
+     * @throws IOException если файл не удалось записать
+     */
+    static void write(Task task, Path path) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                // DEFLATE почти не ужимает случайные double, поэтому сжатие включается отдельно
+                if (TaskBinary.isBinary(path.toString()))
+                    TaskBinary.write(task, out, Boolean.getBoolean("chords.deflate"));
+                else
+                    MAPPER.writeValue(out, task);
+                out.flush();
+                // данные должны лечь на диск раньше, чем имя файла начнёт указывать на них
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    /**
+     * Сбросить на диск запись папки, чтобы переименование пережило отключение питания
+     *
+     * @param directory папка
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // не на всех системах папку можно открыть как файл, там переименование и так надёжно
+        }
+    }
+}
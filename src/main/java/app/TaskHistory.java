@@ -0,0 +1,90 @@
+package app;
+
+import java.util.ArrayDeque;
+
+/**
+ * История изменений задачи для отмены и повтора
+ * <p>
+ * Хранит снимки задачи до каждого изменения. Списки точек в снимках
+ * общие со следующими версиями, поэтому шаг истории стоит O(log n) памяти,
+ * а переход к любой версии - просто подмена снимка
+ */
+public class TaskHistory {
+    /**
+     * Сколько шагов можно отменить
+     */
+    private final int capacity;
+    /**
+     * Снимки для отмены, последний - самый свежий
+     */
+    private final ArrayDeque<TaskSnapshot> undo = new ArrayDeque<>();
+    /**
+     * Снимки для повтора, последний - ближайший
+     */
+    private final ArrayDeque<TaskSnapshot> redo = new ArrayDeque<>();
+
+    /**
+     * История заданной длины
+     *
+     * @param capacity сколько шагов можно отменить
+     */
+    public TaskHistory(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+    }
+
+    /**
+     * Запомнить снимок перед изменением; повторять отменённое после этого нечего
+     *
+     * @param before снимок до изменения
+     */
+    public void record(TaskSnapshot before) {
+        if (undo.size() == capacity)
+            undo.removeFirst();
+        undo.addLast(before);
+        redo.clear();
+    }
+
+    /**
+     * Шаг назад
+     *
+     * @param current текущий снимок (станет доступен для повтора)
+     * @return снимок, к которому нужно вернуться, или null, если отменять нечего
+     */
+    public TaskSnapshot undo(TaskSnapshot current) {
+        if (undo.isEmpty())
+            return null;
+        redo.addLast(current);
+        return undo.removeLast();
+    }
+
+    /**
+     * Шаг вперёд
+     *
+     * @param current текущий снимок (станет доступен для отмены)
+     * @return снимок, к которому нужно перейти, или null, если повторять нечего
+     */
+    public TaskSnapshot redo(TaskSnapshot current) {
+        if (redo.isEmpty())
+            return null;
+        undo.addLast(current);
+        return redo.removeLast();
+    }
+
+    /**
+     * Получить кол-во шагов, которые можно отменить
+     *
+     * @return кол-во шагов
+     */
+    public int getUndoSize() {
+        return undo.size();
+    }
+
+    /**
+     * Получить кол-во шагов, которые можно повторить
+     *
+     * @return кол-во шагов
+     */
+    public int getRedoSize() {
+        return redo.size();
+    }
+}
@@ -0,0 +1,682 @@
+package app;
+
+import misc.Vector2d;
+import panels.PanelLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал изменений задачи с восстановлением после сбоя
+ * <p>
+ * В папке журнала лежат снимок snapshot-N.tbin (задача в {@link TaskBinary})
+ * и журнал journal-N.log с изменениями, сделанными после снимка. Запись журнала:
+ * байт операции, её аргументы и CRC32, так что оборванный хвост распознаётся
+ * и отбрасывается. Записи копятся в очереди и пишутся отдельным потоком:
+ * всё, что накопилось, пока шёл прошлый fsync, сбрасывается на диск одним
+ * fsync (групповая фиксация). Когда журнал вырастает больше порога, задача
+ * складывается в снимок N+1 и начинается журнал N+1, а старые файлы удаляются;
+ * снимок пишется атомарно раньше нового журнала, поэтому при сбое в любой
+ * момент на диске остаётся согласованная пара
+ */
+public class TaskJournal implements AutoCloseable {
+    /**
+     * Порог размера журнала, после которого он складывается в новый снимок
+     */
+    public static final int COMPACT_BYTES = 4 << 20;
+    /**
+     * Сигнатура журнала ("CHJL")
+     */
+    private static final int MAGIC = 0x43484A4C;
+    /**
+     * Версия формата
+     */
+    private static final int VERSION = 1;
+    /**
+     * Размер заголовка журнала: сигнатура, версия, номер поколения
+     */
+    private static final int HEADER_BYTES = 16;
+    /**
+     * Байт контрольной суммы в конце записи
+     */
+    private static final int CRC_BYTES = 4;
+    /**
+     * Операция: добавить точку (x, y)
+     */
+    private static final byte ADD_POINT = 1;
+    /**
+     * Операция: добавить вершину прямоугольника (x, y)
+     */
+    private static final byte ADD_TOP = 2;
+    /**
+     * Операция: очистить задачу
+     */
+    private static final byte CLEAR = 3;
+    /**
+     * Операция: удалить точку (индекс)
+     */
+    private static final byte REMOVE_POINT = 4;
+    /**
+     * Операция: переместить вершину прямоугольника (индекс, x, y)
+     */
+    private static final byte MOVE_TOP = 5;
+    /**
+     * Операция: вставить точку (индекс, x, y)
+     */
+    private static final byte INSERT_POINT = 6;
+    /**
+     * Операция: удалить вершину прямоугольника (индекс)
+     */
+    private static final byte REMOVE_TOP = 7;
+    /**
+     * Имя файла снимка
+     */
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\" + TaskBinary.EXTENSION);
+    /**
+     * Имя файла журнала
+     */
+    private static final Pattern JOURNAL_NAME = Pattern.compile("journal-(\\d+)\\.log");
+
+    /**
+     * Элемент очереди записи: ровно одно из полей не null
+     *
+     * @param record   готовая запись журнала
+     * @param snapshot задача, которую нужно сложить в новый снимок
+     * @param synced   отметка, которую нужно снять, когда всё записанное раньше ляжет на диск
+     */
+    private record Entry(byte[] record, Task snapshot, CountDownLatch synced) {
+    }
+
+    /**
+     * Папка журнала
+     */
+    private final Path directory;
+    /**
+     * Порог размера журнала
+     */
+    private final long compactBytes;
+    /**
+     * Очередь записи
+     */
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    /**
+     * Поток записи
+     */
+    private final Thread writer;
+    /**
+     * Задача, восстановленная при открытии, null, если восстанавливать нечего
+     */
+    private final Task recovered;
+    /**
+     * Сколько записей журнала применено к снимку при восстановлении
+     */
+    private final int replayed;
+    /**
+     * Текущий журнал, null до первого снимка (только поток записи)
+     */
+    private FileChannel channel;
+    /**
+     * Номер поколения снимка и журнала (только поток записи)
+     */
+    private long generation;
+    /**
+     * Размер текущего журнала в байтах (только поток записи)
+     */
+    private long journalBytes;
+    /**
+     * Пора ли сложить журнал в новый снимок
+     */
+    private volatile boolean compactionDue;
+    /**
+     * Журнал отключён после ошибки записи или закрыт
+     */
+    private volatile boolean stopped;
+    /**
+     * Сколько записей добавлено в журнал
+     */
+    private volatile long records;
+    /**
+     * Сколько раз журнал сброшен на диск
+     */
+    private volatile long commits;
+    /**
+     * Сколько раз журнал сложен в снимок
+     */
+    private volatile long compactions;
+
+    /**
+     * Журнал изменений
+     *
+     * @param directory    папка журнала
+     * @param compactBytes порог размера журнала
+     * @param channel      открытый журнал, null, если снимка ещё нет
+     * @param generation   номер поколения
+     * @param journalBytes размер журнала
+     * @param recovered    восстановленная задача или null
+     * @param replayed     сколько записей применено к снимку
+     */
+    private TaskJournal(Path directory, long compactBytes, FileChannel channel, long generation, long journalBytes,
+                        Task recovered, int replayed) {
+        this.directory = directory;
+        this.compactBytes = compactBytes;
+        this.channel = channel;
+        this.generation = generation;
+        this.journalBytes = journalBytes;
+        this.recovered = recovered;
+        this.replayed = replayed;
+        writer = new Thread(this::run, "journal");
+        // запись, не дождавшаяся fsync, при выходе теряется так же, как при сбое
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Открыть журнал и восстановить задачу по последнему снимку и журналу после него
+     *
+     * @param directory    папка журнала (создаётся, если её нет)
+     * @param compactBytes после скольких байт журнала складывать его в новый снимок
+     * @return журнал
+     * @throws IOException если папку или снимок не удалось прочитать
+     */
+    public static TaskJournal open(Path directory, long compactBytes) throws IOException {
+        Files.createDirectories(directory);
+        long generation = -1;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Matcher matcher = SNAPSHOT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches())
+                    generation = Math.max(generation, Long.parseLong(matcher.group(1)));
+            }
+        }
+        if (generation < 0) {
+            // без снимка журнал применить не к чему
+            deleteOlder(directory, Long.MAX_VALUE);
+            return new TaskJournal(directory, compactBytes, null, 0, 0, null, 0);
+        }
+        deleteOlder(directory, generation);
+        Task snapshot = TaskBinary.read(snapshotPath(directory, generation));
+        Path journalPath = journalPath(directory, generation);
+        TaskSnapshot state = snapshot.getSnapshot();
+        int replayed = 0;
+        long end = HEADER_BYTES;
+        if (Files.exists(journalPath)) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(journalPath));
+            if (data.remaining() >= HEADER_BYTES && data.getInt() == MAGIC && data.getInt() == VERSION
+                    && data.getLong() == generation) {
+                TaskSnapshot next;
+                while ((next = replay(data, state)) != null) {
+                    state = next;
+                    replayed++;
+                    end = data.position();
+                }
+                if (end < data.limit())
+                    PanelLog.warning(String.format("Хвост журнала повреждён, отброшено %d байт", data.limit() - end));
+            } else {
+                PanelLog.warning("Журнал " + journalPath + " не подходит к снимку и пропущен");
+                end = 0;
+            }
+        }
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (end < HEADER_BYTES) {
+                channel.truncate(0);
+                writeFully(channel, header(generation), 0);
+                end = HEADER_BYTES;
+            } else {
+                // дописываем после последней целой записи
+                channel.truncate(end);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        TaskFiles.syncDirectory(directory);
+        Task task = new Task(snapshot.getOwnCS(), state.points(), state.tops());
+        task.setSolveMode(snapshot.getSolveMode());
+        return new TaskJournal(directory, compactBytes, channel, generation, end, task, replayed);
+    }
+
+    /**
+     * Применить к снимку следующую запись журнала
+     *
+     * @param data  журнал, позиция - начало записи
+     * @param state снимок задачи
+     * @return снимок после записи или null, если журнал кончился или запись повреждена
+     */
+    private static TaskSnapshot replay(ByteBuffer data, TaskSnapshot state) {
+        int start = data.position();
+        if (!data.hasRemaining())
+            return null;
+        byte op = data.get(start);
+        int length = payloadBytes(op);
+        if (length < 0 || data.remaining() < 1 + length + CRC_BYTES)
+            return null;
+        CRC32 crc = new CRC32();
+        crc.update(data.array(), start, 1 + length);
+        if ((int) crc.getValue() != data.getInt(start + 1 + length))
+            return null;
+        data.position(start + 1);
+        TaskSnapshot next = switch (op) {
+            case ADD_POINT -> state.withPoint(new Point(new Vector2d(data.getDouble(), data.getDouble())));
+            case ADD_TOP -> state.tops().size() < 2
+                    ? state.withTop(new Point(new Vector2d(data.getDouble(), data.getDouble()))) : null;
+            case CLEAR -> state.cleared();
+            case REMOVE_POINT -> {
+                int index = data.getInt();
+                yield index >= 0 && index < state.points().size() ? state.withoutPoint(index) : null;
+            }
+            case MOVE_TOP -> {
+                int index = data.get();
+                Point top = new Point(new Vector2d(data.getDouble(), data.getDouble()));
+                yield index >= 0 && index < state.tops().size() ? state.withTopAt(index, top) : null;
+            }
+            case INSERT_POINT -> {
+                int index = data.getInt();
+                Point point = new Point(new Vector2d(data.getDouble(), data.getDouble()));
+                yield index >= 0 && index <= state.points().size() ? state.withPointAt(index, point) : null;
+            }
+            case REMOVE_TOP -> {
+                int index = data.get();
+                yield index >= 0 && index < state.tops().size() ? state.withoutTop(index) : null;
+            }
+            default -> null;
+        };
+        data.position(start + 1 + length + CRC_BYTES);
+        return next;
+    }
+
+    /**
+     * Размер аргументов операции
+     *
+     * @param op операция
+     * @return байт, -1 для неизвестной операции
+     */
+    private static int payloadBytes(byte op) {
+        return switch (op) {
+            case ADD_POINT, ADD_TOP -> 16;
+            case CLEAR -> 0;
+            case REMOVE_POINT -> 4;
+            case MOVE_TOP -> 17;
+            case INSERT_POINT -> 20;
+            case REMOVE_TOP -> 1;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Получить задачу, восстановленную при открытии
+     *
+     * @return задача или null, если снимка не было
+     */
+    public Task getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Получить кол-во записей, применённых к снимку при восстановлении
+     *
+     * @return кол-во записей
+     */
+    public int getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Записать добавление точки
+     *
+     * @param pos положение
+     */
+    public void addPoint(Vector2d pos) {
+        append(record(ADD_POINT).putDouble(pos.x).putDouble(pos.y));
+    }
+
+    /**
+     * Записать добавление вершины прямоугольника
+     *
+     * @param pos положение
+     */
+    public void addTop(Vector2d pos) {
+        append(record(ADD_TOP).putDouble(pos.x).putDouble(pos.y));
+    }
+
+    /**
+     * Записать очистку задачи
+     */
+    public void clear() {
+        append(record(CLEAR));
+    }
+
+    /**
+     * Записать удаление точки
+     *
+     * @param index индекс точки
+     */
+    public void removePoint(int index) {
+        append(record(REMOVE_POINT).putInt(index));
+    }
+
+    /**
+     * Записать вставку точки
+     *
+     * @param index индекс новой точки
+     * @param pos   положение
+     */
+    public void insertPoint(int index, Vector2d pos) {
+        append(record(INSERT_POINT).putInt(index).putDouble(pos.x).putDouble(pos.y));
+    }
+
+    /**
+     * Записать удаление вершины прямоугольника
+     *
+     * @param index индекс вершины
+     */
+    public void removeTop(int index) {
+        append(record(REMOVE_TOP).put((byte) index));
+    }
+
+    /**
+     * Записать перемещение вершины прямоугольника
+     *
+     * @param index индекс вершины
+     * @param pos   новое положение
+     */
+    public void moveTop(int index, Vector2d pos) {
+        append(record(MOVE_TOP).put((byte) index).putDouble(pos.x).putDouble(pos.y));
+    }
+
+    /**
+     * Сложить журнал в новый снимок задачи (в фоне)
+     * <p>
+     * Вызывается в том же потоке, что и запись изменений, поэтому снимок
+     * содержит ровно те изменения, которые были записаны до него
+     *
+     * @param task задача (не меняется после вызова, см. {@link Task#copy()})
+     */
+    public void checkpoint(Task task) {
+        compactionDue = false;
+        if (!stopped)
+            queue.add(new Entry(null, task, null));
+    }
+
+    /**
+     * Пора ли сложить журнал в новый снимок
+     *
+     * @return флаг
+     */
+    public boolean isCompactionDue() {
+        return compactionDue;
+    }
+
+    /**
+     * Дождаться, пока всё записанное ляжет на диск
+     *
+     * @throws InterruptedException если ожидание прервано
+     */
+    public void sync() throws InterruptedException {
+        if (stopped)
+            return;
+        CountDownLatch synced = new CountDownLatch(1);
+        queue.add(new Entry(null, null, synced));
+        synced.await();
+    }
+
+    /**
+     * Получить кол-во записей журнала
+     *
+     * @return кол-во записей
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Получить кол-во сбросов журнала на диск
+     *
+     * @return кол-во fsync
+     */
+    public long getCommits() {
+        return commits;
+    }
+
+    /**
+     * Получить кол-во сложений журнала в снимок
+     *
+     * @return кол-во снимков
+     */
+    public long getCompactions() {
+        return compactions;
+    }
+
+    /**
+     * Дописать всё из очереди и закрыть журнал
+     *
+     * @throws IOException если журнал не удалось закрыть
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        stopped = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null)
+            channel.close();
+    }
+
+    /**
+     * Начать запись журнала
+     *
+     * @param op операция
+     * @return буфер записи, позиция - после байта операции
+     */
+    private static ByteBuffer record(byte op) {
+        return ByteBuffer.allocate(1 + payloadBytes(op) + CRC_BYTES).put(op);
+    }
+
+    /**
+     * Дописать контрольную сумму и поставить запись в очередь
+     *
+     * @param record буфер записи без контрольной суммы
+     */
+    private void append(ByteBuffer record) {
+        if (stopped)
+            return;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.position());
+        record.putInt((int) crc.getValue());
+        queue.add(new Entry(record.array(), null, null));
+    }
+
+    /**
+     * Цикл потока записи: забрать всё накопившееся и зафиксировать одним fsync
+     */
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        // после ошибки поток продолжает разбирать очередь, чтобы никто не ждал sync вечно
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            List<CountDownLatch> synced = new ArrayList<>();
+            for (Entry entry : batch) {
+                if (entry.synced != null)
+                    synced.add(entry.synced);
+            }
+            try {
+                if (!stopped)
+                    write(batch);
+            } catch (IOException | UncheckedIOException e) {
+                stopped = true;
+                PanelLog.error("Журнал изменений отключён\n" + e);
+            } finally {
+                synced.forEach(CountDownLatch::countDown);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Записать пачку из очереди
+     *
+     * @param batch элементы очереди в порядке поступления
+     * @throws IOException если запись не удалась
+     */
+    private void write(List<Entry> batch) throws IOException {
+        ByteBuffer pending = ByteBuffer.allocate(batch.stream()
+                .mapToInt(entry -> entry.record == null ? 0 : entry.record.length).sum());
+        long added = 0;
+        for (Entry entry : batch) {
+            if (entry.record != null) {
+                pending.put(entry.record);
+                added++;
+            } else if (entry.snapshot != null) {
+                // записи до снимка должны лечь в старый журнал
+                commit(pending);
+                compact(entry.snapshot);
+            }
+        }
+        commit(pending);
+        records += added;
+        if (journalBytes > compactBytes)
+            compactionDue = true;
+    }
+
+    /**
+     * Дописать накопленные записи в журнал и сбросить его на диск
+     *
+     * @param pending записи, позиция - их конец
+     * @throws IOException если запись не удалась
+     */
+    private void commit(ByteBuffer pending) throws IOException {
+        if (pending.position() == 0 || channel == null) {
+            pending.clear();
+            return;
+        }
+        pending.flip();
+        journalBytes += writeFully(channel, pending, journalBytes);
+        channel.force(false);
+        commits++;
+        pending.clear();
+    }
+
+    /**
+     * Сложить журнал в новый снимок: сначала атомарно пишется снимок N+1,
+     * затем создаётся пустой журнал N+1, и только потом удаляются файлы N
+     *
+     * @param task задача для снимка
+     * @throws IOException если снимок или журнал не удалось записать
+     */
+    private void compact(Task task) throws IOException {
+        long next = channel == null ? generation : generation + 1;
+        TaskFiles.write(task, snapshotPath(directory, next));
+        FileChannel nextChannel = FileChannel.open(journalPath(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(nextChannel, header(next), 0);
+            nextChannel.force(true);
+        } catch (IOException e) {
+            nextChannel.close();
+            throw e;
+        }
+        TaskFiles.syncDirectory(directory);
+        if (channel != null)
+            channel.close();
+        channel = nextChannel;
+        generation = next;
+        journalBytes = HEADER_BYTES;
+        compactions++;
+        deleteOlder(directory, next);
+    }
+
+    /**
+     * Удалить снимки и журналы поколений младше заданного
+     *
+     * @param directory  папка журнала
+     * @param generation первое поколение, которое нужно оставить
+     * @throws IOException если папку не удалось прочитать
+     */
+    private static void deleteOlder(Path directory, long generation) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                Matcher snapshot = SNAPSHOT_NAME.matcher(name);
+                Matcher journal = JOURNAL_NAME.matcher(name);
+                if ((snapshot.matches() && Long.parseLong(snapshot.group(1)) < generation)
+                        || (journal.matches() && Long.parseLong(journal.group(1)) < generation))
+                    Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Заголовок журнала
+     *
+     * @param generation номер поколения
+     * @return буфер заголовка
+     */
+    private static ByteBuffer header(long generation) {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+    }
+
+    /**
+     * Записать буфер целиком
+     *
+     * @param channel  канал
+     * @param buffer   данные
+     * @param position позиция в файле
+     * @return сколько байт записано
+     * @throws IOException если запись не удалась
+     */
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining())
+            written += channel.write(buffer, position + written);
+        return written;
+    }
+
+    /**
+     * Путь к снимку поколения
+     *
+     * @param directory  папка журнала
+     * @param generation номер поколения
+     * @return путь
+     */
+    private static Path snapshotPath(Path directory, long generation) {
+        return directory.resolve("snapshot-" + generation + TaskBinary.EXTENSION);
+    }
+
+    /**
+     * Путь к журналу поколения
+     *
+     * @param directory  папка журнала
+     * @param generation номер поколения
+     * @return путь
+     */
+    private static Path journalPath(Path directory, long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+}
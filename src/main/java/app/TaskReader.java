@@ -0,0 +1,285 @@
+package app;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import misc.CoordinateSystem2d;
+import misc.Vector2d;
+import solvers.PackedPoints;
+import solvers.SolveMode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение задачи из JSON
+ * <p>
+ * Массив точек разбирается по токенам прямо в {@link PackedPoints}, без
+ * промежуточных {@link Point}, {@link Vector2d} и буферов привязки данных,
+ * а загрузчик и парсеры один на всё приложение. Понимает всё, что пишет
+ * {@link ObjectMapper} для {@link Task}, незнакомые поля (например, setType
+ * и solved в старых файлах) пропускает
+ */
+public class TaskReader {
+    /**
+     * Общая фабрика парсеров: числа разбираются быстрым парсером double
+     * (стандартный Double.parseDouble создаёт сотни байт мусора на число)
+     */
+    private static final JsonFactory FACTORY = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+    /**
+     * Готовый загрузчик СК задачи
+     */
+    private static final ObjectReader CS_READER = new ObjectMapper(FACTORY).readerFor(CoordinateSystem2d.class);
+    /**
+     * После скольких точек впервые сообщать о ходе чтения (дальше - каждый раз,
+     * когда точек стало вдвое больше, так что все промежуточные задачи вместе
+     * стоят не больше одной полной)
+     */
+    static final int PROGRESS_POINTS = 1 << 16;
+
+    /**
+     * Прочитанная задача
+     *
+     * @param ownCS     СК задачи
+     * @param points    координаты точек
+     * @param tops      вершины прямоугольника, null - не заданы
+     * @param solveMode режим решения, null - не задан
+     */
+    public record Parsed(CoordinateSystem2d ownCS, PackedPoints points, PackedPoints tops, SolveMode solveMode) {
+        /**
+         * Собрать задачу
+         *
+         * @return задача
+         */
+        public Task toTask() {
+            Task task = new Task(ownCS, asPoints(points), tops == null ? null : asPoints(tops));
+            if (solveMode != null)
+                task.setSolveMode(solveMode);
+            return task;
+        }
+    }
+
+    /**
+     * Закрытый конструктор
+     */
+    private TaskReader() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Прочитать задачу из файла
+     *
+     * @param path путь к файлу
+     * @return задача
+     * @throws IOException если файл не удалось прочитать или разобрать
+     */
+    public static Task read(Path path) throws IOException {
+        return parse(path).toTask();
+    }
+
+    /**
+     * Разобрать файл задачи
+     *
+     * @param path путь к файлу
+     * @return прочитанная задача
+     * @throws IOException если файл не удалось прочитать или разобрать
+     */
+    public static Parsed parse(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return parse(in);
+        }
+    }
+
+    /**
+     * Разобрать задачу из потока
+     *
+     * @param in поток (закрывается вызывающим)
+     * @return прочитанная задача
+     * @throws IOException если поток не удалось прочитать или разобрать
+     */
+    public static Parsed parse(InputStream in) throws IOException {
+        return parse(in, null);
+    }
+
+    /**
+     * Разобрать задачу из потока, сообщая об уже прочитанных точках
+     *
+     * @param in       поток (закрывается вызывающим)
+     * @param progress получатель прочитанной части задачи, вызывается в потоке чтения;
+     *                 координаты в нём дальше дописываются, поэтому их нужно
+     *                 забрать до возврата; null - не сообщать
+     * @return прочитанная задача
+     * @throws IOException если поток не удалось прочитать или разобрать
+     */
+    public static Parsed parse(InputStream in, Consumer<Parsed> progress) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            return parse(parser, progress);
+        }
+    }
+
+    /**
+     * Разобрать задачу из строки
+     *
+     * @param json текст задачи
+     * @return прочитанная задача
+     * @throws IOException если текст не удалось разобрать
+     */
+    public static Parsed parse(String json) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return parse(parser, null);
+        }
+    }
+
+    /**
+     * Разобрать объект задачи
+     *
+     * @param parser   парсер перед объектом задачи
+     * @param progress получатель прочитанной части задачи, null - не сообщать
+     * @return прочитанная задача
+     * @throws IOException если объект не удалось разобрать
+     */
+    private static Parsed parse(JsonParser parser, Consumer<Parsed> progress) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+        CoordinateSystem2d ownCS = null;
+        PackedPoints points = null;
+        PackedPoints tops = null;
+        SolveMode solveMode = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (name) {
+                case "ownCS" -> ownCS = token == JsonToken.VALUE_NULL ? null : CS_READER.readValue(parser);
+                case "points" -> {
+                    // часть задачи можно показать, только если СК уже прочитана
+                    CoordinateSystem2d cs = ownCS;
+                    PackedPoints rect = tops;
+                    SolveMode mode = solveMode;
+                    points = readPoints(parser, token, progress == null || cs == null ? null
+                            : partial -> progress.accept(new Parsed(cs, partial, rect, mode)));
+                }
+                case "rect" -> tops = readPoints(parser, token, null);
+                case "solveMode" -> solveMode = token == JsonToken.VALUE_NULL ? null : readSolveMode(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        expect(parser, parser.currentToken(), JsonToken.END_OBJECT);
+        return new Parsed(ownCS, points == null ? new PackedPoints(0) : points, tops, solveMode);
+    }
+
+    /**
+     * Прочитать массив точек
+     *
+     * @param parser   парсер на начале массива
+     * @param token    текущий токен
+     * @param progress получатель уже прочитанных точек, null - не сообщать
+     * @return координаты точек, null, если вместо массива null
+     * @throws IOException если массив не удалось разобрать
+     */
+    private static PackedPoints readPoints(JsonParser parser, JsonToken token, Consumer<PackedPoints> progress)
+            throws IOException {
+        if (token == JsonToken.VALUE_NULL)
+            return null;
+        expect(parser, token, JsonToken.START_ARRAY);
+        PackedPoints points = new PackedPoints();
+        int nextProgress = PROGRESS_POINTS;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expect(parser, token, JsonToken.START_OBJECT);
+            boolean found = false;
+            double x = 0;
+            double y = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                token = parser.nextToken();
+                if (!name.equals("pos")) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(parser, token, JsonToken.START_OBJECT);
+                found = true;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String axis = parser.currentName();
+                    parser.nextToken();
+                    if (axis.equals("x"))
+                        x = parser.getValueAsDouble();
+                    else if (axis.equals("y"))
+                        y = parser.getValueAsDouble();
+                    else
+                        parser.skipChildren();
+                }
+            }
+            if (!found)
+                throw new JsonParseException(parser, "у точки нет поля pos");
+            points.add(x, y);
+            if (progress != null && points.size() == nextProgress) {
+                progress.accept(points);
+                nextProgress *= 2;
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Прочитать режим решения
+     *
+     * @param parser парсер на значении режима
+     * @return режим решения
+     * @throws IOException если режим неизвестен
+     */
+    private static SolveMode readSolveMode(JsonParser parser) throws IOException {
+        try {
+            return SolveMode.byName(parser.getText());
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, "неизвестный режим решения " + parser.getText(), e);
+        }
+    }
+
+    /**
+     * Проверить токен
+     *
+     * @param parser   парсер
+     * @param token    текущий токен
+     * @param expected ожидаемый токен
+     * @throws JsonParseException если токен другой
+     */
+    private static void expect(JsonParser parser, JsonToken token, JsonToken expected) throws JsonParseException {
+        if (token != expected)
+            throw new JsonParseException(parser, "ожидалось " + expected + ", получено " + token);
+    }
+
+    /**
+     * Список точек поверх упакованных координат: точки создаются при обращении,
+     * поэтому снимок задачи собирается без промежуточного списка
+     *
+     * @param packed координаты точек
+     * @return список точек
+     */
+    private static List<Point> asPoints(PackedPoints packed) {
+        double[] xs = packed.xs();
+        double[] ys = packed.ys();
+        int size = packed.size();
+        return new AbstractList<>() {
+            @Override
+            public Point get(int index) {
+                Objects.checkIndex(index, size);
+                return new Point(new Vector2d(xs[index], ys[index]));
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package app;
+
+import misc.PersistentList;
+import misc.Vector2d;
+import solvers.Chord;
+import solvers.ChordClipper;
+
+import java.util.List;
+
+/**
+ * Неизменяемый снимок задачи: точки, вершины прямоугольника и решение
+ * <p>
+ * Списки снимка никогда не меняются после создания, каждое изменение задачи
+ * создаёт новый снимок со следующей версией. Поэтому решатели и отрисовка
+ * из любых потоков читают один согласованный снимок без блокировок.
+ * Точки хранятся в {@link PersistentList}: новый снимок копирует O(log n)
+ * узлов, а неизменённые списки переходят в него как есть
+ *
+ * @param version     номер версии, растёт с каждым изменением
+ * @param points      точки, через которые мы проводим прямые
+ * @param tops        вершины прямоугольника
+ * @param solved      решена ли задача
+ * @param chord       последняя найденная хорда
+ * @param sPoints     точки, являющиеся решением
+ * @param crossPoints точки пересечения прямой и прямоугольника
+ */
+public record TaskSnapshot(long version, PersistentList<Point> points, PersistentList<Point> tops, boolean solved,
+                           Chord chord, List<Point> sPoints, List<Vector2d> crossPoints) {
+
+    /**
+     * Первый снимок задачи
+     *
+     * @param points точки, null - нет точек
+     * @param tops   вершины прямоугольника, null - нет вершин
+     * @return снимок версии 0 без решения
+     */
+    public static TaskSnapshot of(List<Point> points, List<Point> tops) {
+        return new TaskSnapshot(0, points == null ? PersistentList.empty() : PersistentList.of(points),
+                tops == null ? PersistentList.empty() : PersistentList.of(tops), false, Chord.NONE,
+                List.of(), List.of());
+    }
+
+    /**
+     * Снимок с добавленной точкой (прошлая прямая остаётся на экране)
+     *
+     * @param point новая точка
+     * @return новый снимок
+     */
+    public TaskSnapshot withPoint(Point point) {
+        return new TaskSnapshot(version + 1, points.plus(point), tops, false, chord, sPoints, crossPoints);
+    }
+
+    /**
+     * Снимок с точкой, вставленной перед заданным индексом
+     *
+     * @param index индекс новой точки
+     * @param point новая точка
+     * @return новый снимок без решения
+     */
+    public TaskSnapshot withPointAt(int index, Point point) {
+        return new TaskSnapshot(version + 1, points.plus(index, point), tops, false, chord, List.of(), List.of());
+    }
+
+    /**
+     * Снимок без точки
+     *
+     * @param index индекс точки
+     * @return новый снимок без решения
+     */
+    public TaskSnapshot withoutPoint(int index) {
+        return new TaskSnapshot(version + 1, points.minus(index), tops, false, chord, List.of(), List.of());
+    }
+
+    /**
+     * Снимок с добавленной вершиной прямоугольника
+     *
+     * @param top новая вершина
+     * @return новый снимок
+     */
+    public TaskSnapshot withTop(Point top) {
+        return new TaskSnapshot(version + 1, points, tops.plus(top), false, chord, sPoints, crossPoints);
+    }
+
+    /**
+     * Снимок с перемещённой вершиной прямоугольника
+     *
+     * @param index индекс вершины
+     * @param top   новое положение вершины
+     * @return новый снимок
+     */
+    public TaskSnapshot withTopAt(int index, Point top) {
+        return new TaskSnapshot(version + 1, points, tops.with(index, top), solved, chord, sPoints, crossPoints);
+    }
+
+    /**
+     * Снимок без вершины прямоугольника
+     *
+     * @param index индекс вершины
+     * @return новый снимок без решения
+     */
+    public TaskSnapshot withoutTop(int index) {
+        return new TaskSnapshot(version + 1, points, tops.minus(index), false, chord, List.of(), List.of());
+    }
+
+    /**
+     * Снимок с решением
+     *
+     * @param best    найденная хорда, её индексы относятся к точкам этого снимка
+     * @param clipper отсечение прямоугольником
+     * @return новый снимок решённой задачи
+     */
+    public TaskSnapshot withSolution(Chord best, ChordClipper clipper) {
+        if (!best.exists())
+            return new TaskSnapshot(version + 1, points, tops, true, best, List.of(), List.of());
+        Point a = points.get(best.i());
+        Point b = points.get(best.j());
+        // точки пересечения строим только для победившей пары
+        Vector2d[] cross = clipper.cross(a.getPos(), b.getPos());
+        // прямая пары может промахнуться мимо угла, хотя решатель считал её хордой
+        if (cross == null)
+            return new TaskSnapshot(version + 1, points, tops, true, best, List.of(a, b), List.of());
+        return new TaskSnapshot(version + 1, points, tops, true, best, List.of(a, b), List.of(cross[0], cross[1]));
+    }
+
+    /**
+     * Снимок без решения и без прямой
+     *
+     * @return новый снимок
+     */
+    public TaskSnapshot withoutSolution() {
+        return new TaskSnapshot(version + 1, points, tops, false, chord, List.of(), List.of());
+    }
+
+    /**
+     * Снимок пустой задачи
+     *
+     * @return новый снимок
+     */
+    public TaskSnapshot cleared() {
+        return new TaskSnapshot(version + 1, PersistentList.empty(), PersistentList.empty(), false, Chord.NONE,
+                List.of(), List.of());
+    }
+
+    /**
+     * Снимок с точками и вершинами другого снимка (для отмены и повтора)
+     *
+     * @param other снимок, к которому нужно вернуться
+     * @return новый снимок без решения
+     */
+    public TaskSnapshot restored(TaskSnapshot other) {
+        return new TaskSnapshot(version + 1, other.points, other.tops, false, Chord.NONE, List.of(), List.of());
+    }
+
+    /**
+     * Отсечение прямоугольником снимка
+     *
+     * @return отсечение или null, если прямоугольник не задан
+     */
+    public ChordClipper clipper() {
+        return tops.size() == 2 ? ChordClipper.of(tops.get(0).getPos(), tops.get(1).getPos()) : null;
+    }
+
+    /**
+     * Те же ли точки и вершины, что в другом снимке
+     * <p>
+     * Неизменённые списки переходят в следующие снимки как есть,
+     * поэтому достаточно сравнить ссылки
+     *
+     * @param other другой снимок
+     * @return true, если индексы точек и прямоугольник совпадают
+     */
+    public boolean sameInput(TaskSnapshot other) {
+        return points == other.points && tops == other.tops;
+    }
+}
@@ -0,0 +1,263 @@
+package dialogs;
+
+import app.Application;
+import controls.Button;
+import controls.Input;
+import controls.Label;
+import controls.MultiLineLabel;
+import io.github.humbleui.jwm.*;
+import io.github.humbleui.skija.Canvas;
+import misc.CoordinateSystem2i;
+import misc.Vector2i;
+import panels.Panel;
+import panels.PanelList;
+import panels.PanelLog;
+import panels.PanelRendering;
+import solvers.Chord;
+import solvers.ChordQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static app.Colors.*;
+
+/**
+ * Панель запроса самых длинных хорд и хорд не короче порога
+ */
+public class PanelChords extends Panel {
+    /**
+     * Отступы в панели
+     */
+    private static final int CONTROL_PADDING = 5;
+    /**
+     * Сколько строк результата выводится в список
+     */
+    private static final int MAX_LIST_LINES = 10000;
+    /**
+     * Кнопка поиска
+     */
+    private final Button find;
+    /**
+     * Кнопка закрытия
+     */
+    private final Button close;
+    /**
+     * заголовок
+     */
+    private final MultiLineLabel infoLabel;
+    /**
+     * Заголовок поля кол-ва хорд
+     */
+    private final Label kLabel;
+    /**
+     * Поле кол-ва хорд
+     */
+    private final Input kInput;
+    /**
+     * Заголовок поля порога
+     */
+    private final Label minLengthLabel;
+    /**
+     * Поле порога длины
+     */
+    private final Input minLengthInput;
+    /**
+     * Панель списка
+     */
+    private final PanelList listPanel;
+    /**
+     * Строки списка
+     */
+    private static final List<String> lines = new ArrayList<>();
+    /**
+     * Хорды, соответствующие строкам списка
+     */
+    private static final List<Chord> chords = new ArrayList<>();
+    /**
+     * Текст заголовка
+     */
+    private static String labelText = "";
+
+    /**
+     * Панель запроса хорд
+     *
+     * @param window  окно
+     * @param drawBG  флаг, нужно ли рисовать подложку
+     * @param color   цвет подложки
+     * @param padding отступы
+     */
+    public PanelChords(Window window, boolean drawBG, int color, int padding) {
+        super(window, drawBG, color, padding);
+
+        infoLabel = new MultiLineLabel(window, false, backgroundColor, CONTROL_PADDING,
+                12, 6, 4, 0, 4, 1, "",
+                true, true);
+
+        // по клику на строку показываем её хорду на панели рисования
+        listPanel = new PanelList(window, false, APP_BACKGROUND_COLOR, CONTROL_PADDING,
+                12, 6, 4, 1, 4, 3, () -> lines,
+                s -> {
+                    int index = lines.indexOf(s);
+                    if (index >= 0)
+                        PanelRendering.task.showChord(chords.get(index));
+                    window.requestFrame();
+                }, 10);
+
+        kLabel = new Label(window, false, backgroundColor, CONTROL_PADDING,
+                12, 6, 4, 4, 1, 1, "Кол-во",
+                true, true);
+        kInput = new Input(window, false, FIELD_BACKGROUND_COLOR, CONTROL_PADDING,
+                12, 6, 5, 4, 1, 1, "100",
+                true, FIELD_TEXT_COLOR);
+        minLengthLabel = new Label(window, false, backgroundColor, CONTROL_PADDING,
+                12, 6, 6, 4, 1, 1, "Порог",
+                true, true);
+        minLengthInput = new Input(window, false, FIELD_BACKGROUND_COLOR, CONTROL_PADDING,
+                12, 6, 7, 4, 1, 1, "",
+                true, FIELD_TEXT_COLOR);
+
+        find = new Button(
+                window, false, BUTTON_COLOR, CONTROL_PADDING,
+                12, 6, 4, 5, 2, 1, "Найти",
+                true, true);
+        find.setOnClick(this::find);
+
+        close = new Button(
+                window, false, BUTTON_COLOR, CONTROL_PADDING,
+                12, 6, 6, 5, 2, 1, "Закрыть",
+                true, true);
+        close.setOnClick(() -> Application.currentMode = Application.Mode.WORK);
+    }
+
+    /**
+     * Показать панель запроса хорд
+     */
+    public static void show() {
+        labelText = "Самые длинные хорды и хорды не короче порога\n(пустое поле - не искать)";
+        Application.currentMode = Application.Mode.CHORDS;
+    }
+
+    /**
+     * Выполнить запрос по введённым полям
+     */
+    private void find() {
+        String kText = kInput.getText().trim();
+        String minLengthText = minLengthInput.getText().trim();
+        if (!kText.isEmpty() && !kInput.hasValidIntValue()) {
+            PanelLog.warning("кол-во хорд указано неверно");
+            return;
+        }
+        if (!minLengthText.isEmpty() && !minLengthInput.hasValidDoubleValue()) {
+            PanelLog.warning("порог длины указан неверно");
+            return;
+        }
+        int k = kText.isEmpty() ? 0 : kInput.intValue();
+        double minLength = minLengthText.isEmpty() ? Double.POSITIVE_INFINITY : minLengthInput.doubleValue();
+        ChordQuery.Result result = PanelRendering.task.queryChords(k, minLength);
+        if (result == null)
+            return;
+
+        lines.clear();
+        chords.clear();
+        for (int i = 0; i < result.top().length && lines.size() < MAX_LIST_LINES; i++)
+            addLine("Топ " + (i + 1), result.top()[i]);
+        for (int i = 0; i < result.over().length && lines.size() < MAX_LIST_LINES; i++)
+            addLine("Порог " + (i + 1), result.over()[i]);
+        labelText = String.format("Найдено: %d самых длинных, %d не короче порога\nза %.1f мс",
+                result.top().length, result.over().length, result.nanos() / 1e6);
+    }
+
+    /**
+     * Добавить строку результата
+     *
+     * @param caption подпись строки, делает её уникальной
+     * @param chord   хорда
+     */
+    private static void addLine(String caption, Chord chord) {
+        lines.add(String.format("%s: точки %d и %d, длина %.4f", caption, chord.i(), chord.j(), chord.length()));
+        chords.add(chord);
+    }
+
+    /**
+     * Обработчик событий
+     *
+     * @param e событие
+     */
+    @Override
+    public void accept(Event e) {
+        // вызываем обработчик предка
+        super.accept(e);
+        // событие движения мыши
+        if (e instanceof EventMouseMove ee) {
+            find.checkOver(lastWindowCS.getRelativePos(new Vector2i(ee)));
+            close.checkOver(lastWindowCS.getRelativePos(new Vector2i(ee)));
+            listPanel.accept(e);
+            // событие нажатия мыши
+        } else if (e instanceof EventMouseButton) {
+            if (!lastInside)
+                return;
+
+            Vector2i relPos = lastWindowCS.getRelativePos(lastMove);
+
+            find.click(relPos);
+            close.click(relPos);
+            listPanel.accept(e);
+            // переводим фокус на поле ввода под курсором
+            if (kInput.contains(relPos))
+                kInput.setFocus();
+            else if (minLengthInput.contains(relPos))
+                minLengthInput.setFocus();
+            // перерисовываем окно
+            window.requestFrame();
+        } else if (e instanceof EventMouseScroll) {
+            listPanel.accept(e);
+        } else if (e instanceof EventKey ee) {
+            if (ee.isPressed()) {
+                // получаем код клавиши
+                Key key = ee.getKey();
+                // перебираем варианты
+                switch (key) {
+                    // если esc
+                    case ESCAPE -> Application.currentMode = Application.Mode.WORK;
+                    // если enter
+                    case ENTER -> find();
+                }
+            }
+            acceptFocused(e);
+        } else if (e instanceof EventTextInput) {
+            acceptFocused(e);
+        }
+    }
+
+    /**
+     * Передать событие полю ввода с фокусом
+     *
+     * @param e событие
+     */
+    private void acceptFocused(Event e) {
+        if (kInput.isFocused())
+            kInput.accept(e);
+        else if (minLengthInput.isFocused())
+            minLengthInput.accept(e);
+        window.requestFrame();
+    }
+
+    /**
+     * Метод под рисование в конкретной реализации
+     *
+     * @param canvas   область рисования
+     * @param windowCS СК окна
+     */
+    @Override
+    public void paintImpl(Canvas canvas, CoordinateSystem2i windowCS) {
+        infoLabel.text = labelText;
+        find.paint(canvas, windowCS);
+        close.paint(canvas, windowCS);
+        infoLabel.paint(canvas, windowCS);
+        kLabel.paint(canvas, windowCS);
+        kInput.paint(canvas, windowCS);
+        minLengthLabel.paint(canvas, windowCS);
+        minLengthInput.paint(canvas, windowCS);
+        listPanel.paint(canvas, windowCS);
+    }
+}
@@ -176,7 +176,7 @@ public class PanelSelectFile extends Panel {
         ArrayList<String> lst = new ArrayList<>();
         lst.add(PARENT_FOLDER_STR);
         for (File file : Objects.requireNonNull(new File(folderPath).listFiles())) {
-            if (file.isDirectory() || file.getName().matches("[a-zA-Z-_0-9]*.json"))
+            if (file.isDirectory() || file.getName().matches("[a-zA-Z-_0-9]*\\.(json|tbin)"))
                 lst.add(file.getName());
         }
 
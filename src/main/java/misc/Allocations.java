@@ -0,0 +1,62 @@
+package misc;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Счётчик памяти, выделенной потоками JVM
+ */
+public class Allocations {
+    /**
+     * Расширенный бин потоков HotSpot, null, если JVM его не предоставляет
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = getThreadBean();
+
+    /**
+     * Закрытый конструктор
+     */
+    private Allocations() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Получить бин потоков с подсчётом выделенной памяти
+     *
+     * @return бин или null
+     */
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemorySupported()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+            return sunBean;
+        }
+        return null;
+    }
+
+    /**
+     * Поддерживается ли подсчёт
+     *
+     * @return флаг
+     */
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    /**
+     * Сколько байт выделили все живые потоки с момента их запуска
+     * (разность двух замеров даёт расход памяти между ними, включая потоки пула)
+     *
+     * @return кол-во байт или -1, если подсчёт не поддерживается
+     */
+    public static long allocatedBytes() {
+        if (THREADS == null)
+            return -1;
+        long sum = 0;
+        for (long allocated : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            // у завершившихся потоков значение -1
+            if (allocated > 0)
+                sum += allocated;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,46 @@
+package misc;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Счётчик страничных прерываний процесса (Linux, /proc/self/stat)
+ */
+public class PageFaults {
+    /**
+     * Файл статистики процесса
+     */
+    private static final Path STAT = Path.of("/proc/self/stat");
+    /**
+     * Номер поля minflt после имени процесса
+     */
+    private static final int MINOR_FIELD = 7;
+    /**
+     * Номер поля majflt после имени процесса
+     */
+    private static final int MAJOR_FIELD = 9;
+
+    /**
+     * Закрытый конструктор
+     */
+    private PageFaults() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Снять показания счётчиков
+     *
+     * @return {малые, большие} прерывания с запуска процесса или null, если счётчики недоступны
+     */
+    public static long[] sample() {
+        try {
+            String stat = Files.readString(STAT);
+            // имя процесса в скобках может содержать пробелы, поля считаем после него
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            return new long[]{Long.parseLong(fields[MINOR_FIELD]), Long.parseLong(fields[MAJOR_FIELD])};
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package misc;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Неизменяемый список с общей структурой версий
+ * <p>
+ * Элементы хранятся в сбалансированном (АВЛ) дереве, упорядоченном по индексу.
+ * Добавление, удаление и замена элемента копируют только путь от корня
+ * до изменённого узла, т.е. O(log n) узлов, а остальное дерево остаётся
+ * общим со старой версией. Поэтому хранить много версий дёшево
+ *
+ * @param <T> тип элементов
+ */
+public final class PersistentList<T> extends AbstractList<T> {
+    /**
+     * Пустой список
+     */
+    private static final PersistentList<?> EMPTY = new PersistentList<>(null);
+    /**
+     * Корень дерева, null у пустого списка
+     */
+    private final Node<T> root;
+
+    /**
+     * Узел дерева
+     *
+     * @param <T> тип элементов
+     */
+    private static final class Node<T> {
+        /**
+         * Элемент
+         */
+        final T value;
+        /**
+         * Левое поддерево (элементы с меньшими индексами)
+         */
+        final Node<T> left;
+        /**
+         * Правое поддерево (элементы с большими индексами)
+         */
+        final Node<T> right;
+        /**
+         * Кол-во элементов в поддереве
+         */
+        final int size;
+        /**
+         * Высота поддерева
+         */
+        final int height;
+
+        /**
+         * Узел дерева
+         *
+         * @param value элемент
+         * @param left  левое поддерево
+         * @param right правое поддерево
+         */
+        Node(T value, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
+            this.height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    /**
+     * Список с заданным деревом
+     *
+     * @param root корень дерева
+     */
+    private PersistentList(Node<T> root) {
+        this.root = root;
+    }
+
+    /**
+     * Пустой список
+     *
+     * @param <T> тип элементов
+     * @return пустой список
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> empty() {
+        return (PersistentList<T>) EMPTY;
+    }
+
+    /**
+     * Список из элементов другого списка (за O(n))
+     *
+     * @param values элементы
+     * @param <T>    тип элементов
+     * @return новый список
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentList<T> of(List<? extends T> values) {
+        if (values instanceof PersistentList<?> list)
+            return (PersistentList<T>) list;
+        Object[] array = values.toArray();
+        return array.length == 0 ? empty() : new PersistentList<>(build(array, 0, array.length));
+    }
+
+    /**
+     * Построить идеально сбалансированное дерево
+     *
+     * @param values элементы
+     * @param from   первый индекс (включительно)
+     * @param to     последний индекс (не включительно)
+     * @param <T>    тип элементов
+     * @return корень дерева
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T> build(Object[] values, int from, int to) {
+        if (from >= to)
+            return null;
+        int mid = (from + to) >>> 1;
+        return new Node<>((T) values[mid], build(values, from, mid), build(values, mid + 1, to));
+    }
+
+    /**
+     * Получить элемент
+     *
+     * @param index индекс
+     * @return элемент
+     */
+    @Override
+    public T get(int index) {
+        checkIndex(index, size());
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Получить кол-во элементов
+     *
+     * @return кол-во элементов
+     */
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Список с элементом, добавленным в конец
+     *
+     * @param value элемент
+     * @return новый список
+     */
+    public PersistentList<T> plus(T value) {
+        return new PersistentList<>(insert(root, size(), value));
+    }
+
+    /**
+     * Список с элементом, вставленным перед заданным индексом
+     *
+     * @param index индекс нового элемента (size() - добавить в конец)
+     * @param value элемент
+     * @return новый список
+     */
+    public PersistentList<T> plus(int index, T value) {
+        checkIndex(index, size() + 1);
+        return new PersistentList<>(insert(root, index, value));
+    }
+
+    /**
+     * Список без элемента
+     *
+     * @param index индекс удаляемого элемента
+     * @return новый список
+     */
+    public PersistentList<T> minus(int index) {
+        checkIndex(index, size());
+        return new PersistentList<>(remove(root, index));
+    }
+
+    /**
+     * Список с заменённым элементом
+     *
+     * @param index индекс
+     * @param value новый элемент
+     * @return новый список
+     */
+    public PersistentList<T> with(int index, T value) {
+        checkIndex(index, size());
+        return new PersistentList<>(replace(root, index, value));
+    }
+
+    /**
+     * Обход элементов по порядку за O(n)
+     *
+     * @return итератор
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            /**
+             * Узлы, левые поддеревья которых уже обойдены
+             */
+            private final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            /**
+             * Спуститься по левым потомкам, запоминая путь
+             *
+             * @param node узел
+             */
+            private void pushLeft(Node<T> node) {
+                for (; node != null; node = node.left)
+                    stack.push(node);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty())
+                    throw new NoSuchElementException();
+                Node<T> node = stack.pop();
+                pushLeft(node.right);
+                return node.value;
+            }
+        };
+    }
+
+    /**
+     * Вставить элемент в поддерево
+     *
+     * @param node  корень поддерева
+     * @param index индекс в поддереве
+     * @param value элемент
+     * @param <T>   тип элементов
+     * @return новый корень поддерева
+     */
+    private static <T> Node<T> insert(Node<T> node, int index, T value) {
+        if (node == null)
+            return new Node<>(value, null, null);
+        int leftSize = size(node.left);
+        if (index <= leftSize)
+            return balance(node.value, insert(node.left, index, value), node.right);
+        return balance(node.value, node.left, insert(node.right, index - leftSize - 1, value));
+    }
+
+    /**
+     * Удалить элемент из поддерева
+     *
+     * @param node  корень поддерева
+     * @param index индекс в поддереве
+     * @param <T>   тип элементов
+     * @return новый корень поддерева
+     */
+    private static <T> Node<T> remove(Node<T> node, int index) {
+        int leftSize = size(node.left);
+        if (index < leftSize)
+            return balance(node.value, remove(node.left, index), node.right);
+        if (index > leftSize)
+            return balance(node.value, node.left, remove(node.right, index - leftSize - 1));
+        if (node.left == null)
+            return node.right;
+        if (node.right == null)
+            return node.left;
+        // место удалённого узла занимает следующий по порядку элемент
+        Node<T> next = node.right;
+        while (next.left != null)
+            next = next.left;
+        return balance(next.value, node.left, remove(node.right, 0));
+    }
+
+    /**
+     * Заменить элемент в поддереве
+     *
+     * @param node  корень поддерева
+     * @param index индекс в поддереве
+     * @param value новый элемент
+     * @param <T>   тип элементов
+     * @return новый корень поддерева
+     */
+    private static <T> Node<T> replace(Node<T> node, int index, T value) {
+        int leftSize = size(node.left);
+        if (index < leftSize)
+            return new Node<>(node.value, replace(node.left, index, value), node.right);
+        if (index > leftSize)
+            return new Node<>(node.value, node.left, replace(node.right, index - leftSize - 1, value));
+        return new Node<>(value, node.left, node.right);
+    }
+
+    /**
+     * Собрать узел, восстановив балансировку поворотами
+     * (высоты поддеревьев отличаются не больше чем на 2)
+     *
+     * @param value элемент
+     * @param left  левое поддерево
+     * @param right правое поддерево
+     * @param <T>   тип элементов
+     * @return сбалансированный узел
+     */
+    private static <T> Node<T> balance(T value, Node<T> left, Node<T> right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            if (height(left.left) >= height(left.right))
+                return new Node<>(left.value, left.left, new Node<>(value, left.right, right));
+            Node<T> mid = left.right;
+            return new Node<>(mid.value, new Node<>(left.value, left.left, mid.left),
+                    new Node<>(value, mid.right, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            if (height(right.right) >= height(right.left))
+                return new Node<>(right.value, new Node<>(value, left, right.left), right.right);
+            Node<T> mid = right.left;
+            return new Node<>(mid.value, new Node<>(value, left, mid.left),
+                    new Node<>(right.value, mid.right, right.right));
+        }
+        return new Node<>(value, left, right);
+    }
+
+    /**
+     * Кол-во элементов поддерева
+     *
+     * @param node корень поддерева
+     * @return кол-во элементов, 0 у пустого
+     */
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * Высота поддерева
+     *
+     * @param node корень поддерева
+     * @return высота, 0 у пустого
+     */
+    private static int height(Node<?> node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Проверить индекс
+     *
+     * @param index индекс
+     * @param size  кол-во элементов
+     * @throws IndexOutOfBoundsException если индекс вне списка
+     */
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("индекс " + index + " вне списка из " + size + " элементов");
+    }
+}
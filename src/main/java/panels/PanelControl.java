@@ -10,9 +10,12 @@ import controls.MultiLineLabel;
 import dialogs.PanelInfo;
 import io.github.humbleui.jwm.*;
 import io.github.humbleui.skija.Canvas;
+import io.github.humbleui.skija.Paint;
+import io.github.humbleui.skija.Rect;
 import misc.CoordinateSystem2i;
 import misc.Vector2d;
 import misc.Vector2i;
+import solvers.SolveProgress;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -44,6 +47,10 @@ public class PanelControl extends GridPanel {
      * кнопка решения
      */
     private final Button solve;
+    /**
+     * Высота полосы хода решения
+     */
+    private static final int PROGRESS_HEIGHT = 4;
 
     /**
      * Панель управления
@@ -97,6 +104,8 @@ public class PanelControl extends GridPanel {
                 6, 7, 0, 3, 3, 1, "Добавить точку",
                 true, true);
         addToSet.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
             // если числа введены верно
             if (!xField.hasValidDoubleValue()) {
                 PanelLog.warning("X координата введена неверно");
@@ -114,6 +123,8 @@ public class PanelControl extends GridPanel {
                 6, 7, 3, 3, 3, 1, "Указать координаты\n вершины прямоугольника",
                 true, true);
         addRectangleTop.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
             // если числа введены верно
             if (!xField.hasValidDoubleValue()) {
                 PanelLog.warning("X координата введена неверно");
@@ -141,6 +152,8 @@ public class PanelControl extends GridPanel {
                 6, 7, 3, 4, 3, 1, "Добавить\nслучайные точки",
                 true, true);
         addPoints.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
             // если числа введены верно
             if (!cntField.hasValidIntValue()) {
                 PanelLog.warning("кол-во точек указано неверно");
@@ -169,34 +182,35 @@ public class PanelControl extends GridPanel {
 
         Button clear = new Button(
                 window, false, backgroundColor, PANEL_PADDING,
-                6, 7, 0, 6, 3, 1, "Очистить",
+                6, 21, 0, 18, 3, 1, "Очистить",
                 true, true);
         clear.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
             PanelRendering.task.clear();
         });
         buttons.add(clear);
 
         solve = new Button(
                 window, false, backgroundColor, PANEL_PADDING,
-                6, 7, 3, 6, 3, 1, "Решить",
+                6, 21, 3, 18, 3, 1, "Решить",
                 true, true);
         solve.setOnClick(() -> {
-            if (!PanelRendering.task.isSolved()) {
-                if(PanelRendering.task.isLineAble()) {
-                    PanelRendering.task.solve();
-                    if(PanelRendering.task.isRectanglePaint()) {
-                        if(!PanelRendering.task.isParallelLineCross()) {
-                            String s = "Задача решена\n";
-                            PanelInfo.show(s + "\n\nНажмите Esc, чтобы вернуться");
-                            PanelLog.success(s);
-                            solve.text = "Сбросить";
-                        }else{
-                            String s = "Ни одна прямая не пересекает прямоугольник \n";
-                            PanelInfo.show(s + "\n\nНажмите Esc, чтобы вернуться");
-                            solve.text = "Сбросить";
-                        }
-                    }
-                }else{
+            if (!PanelRendering.isEditable())
+                return;
+            Task current = PanelRendering.task;
+            if (current.isSolving()) {
+                // рабочие потоки остановятся на ближайшей отметке хода решения
+                current.cancelBackgroundSolve();
+            } else if (!current.isSolved()) {
+                if (current.isLineAble()) {
+                    // решаем в фоне, ответ применяем в потоке интерфейса
+                    if (current.solveInBackground(() -> App.runOnUIThread(() -> {
+                        finishSolve(current);
+                        window.requestFrame();
+                    })))
+                        solve.text = "Отменить";
+                } else {
                     PanelLog.error("Задача не может быть решена, т.к. задано недостаточное количество точек");
                 }
             } else {
@@ -205,6 +219,109 @@ public class PanelControl extends GridPanel {
             window.requestFrame();
         });
         buttons.add(solve);
+
+        Button mode = new Button(
+                window, false, backgroundColor, PANEL_PADDING,
+                6, 21, 0, 19, 3, 1, getModeText(),
+                true, true);
+        mode.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
+            // переключаем режим решения по кругу
+            PanelRendering.task.setSolveMode(PanelRendering.task.getSolveMode().next());
+            mode.text = getModeText();
+            PanelLog.info("Режим решения: " + PanelRendering.task.getSolveMode().getTitle());
+            // старое решение могло быть получено другим решателем
+            cancelTask();
+        });
+        buttons.add(mode);
+
+        Button live = new Button(
+                window, false, backgroundColor, PANEL_PADDING,
+                6, 21, 3, 19, 3, 1, getLiveText(),
+                true, true);
+        live.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
+            // в живом режиме ответ пересчитывается при каждой добавленной или удалённой точке
+            PanelRendering.task.setLiveSolve(!PanelRendering.task.isLiveSolve());
+            live.text = getLiveText();
+            window.requestFrame();
+        });
+        buttons.add(live);
+
+        // приближённое решение
+        Label epsLabel = new Label(window, false, backgroundColor, PANEL_PADDING,
+                6, 21, 0, 20, 1, 1, "eps", true, true);
+        labels.add(epsLabel);
+        Input epsField = InputFactory.getInput(window, false, FIELD_BACKGROUND_COLOR, PANEL_PADDING,
+                6, 21, 1, 20, 2, 1, "0.05", true,
+                FIELD_TEXT_COLOR, true);
+        inputs.add(epsField);
+
+        Button approx = new Button(
+                window, false, backgroundColor, PANEL_PADDING,
+                6, 21, 3, 20, 3, 1, "Приближённо",
+                true, true);
+        approx.setOnClick(() -> {
+            if (!PanelRendering.isEditable())
+                return;
+            Task current = PanelRendering.task;
+            // если число введено верно
+            if (!epsField.hasValidDoubleValue() || epsField.doubleValue() <= 0 || epsField.doubleValue() >= 1) {
+                PanelLog.warning("eps должно быть числом от 0 до 1");
+            } else if (!current.isLineAble()) {
+                PanelLog.error("Задача не может быть решена, т.к. задано недостаточное количество точек");
+            } else if (current.solveApproxInBackground(epsField.doubleValue(), () -> App.runOnUIThread(() -> {
+                finishSolve(current);
+                window.requestFrame();
+            }))) {
+                // как и обычное решение, приближённое отменяется кнопкой решения
+                solve.text = "Отменить";
+            }
+            window.requestFrame();
+        });
+        buttons.add(approx);
+    }
+
+    /**
+     * Применить результат фонового решения
+     *
+     * @param solving задача, которая решалась
+     */
+    private void finishSolve(Task solving) {
+        boolean solved = solving.finishBackgroundSolve();
+        // пока шло решение, могли загрузить другую задачу
+        if (solving != PanelRendering.task)
+            return;
+        if (!solved) {
+            solve.text = "Решить";
+        } else if (solving.isRectanglePaint()) {
+            String s = solving.isParallelLineCross() ?
+                    "Ни одна прямая не пересекает прямоугольник \n" : "Задача решена\n";
+            PanelInfo.show(s + "\n\nНажмите Esc, чтобы вернуться");
+            if (!solving.isParallelLineCross())
+                PanelLog.success(s);
+            solve.text = "Сбросить";
+        }
+    }
+
+    /**
+     * Текст кнопки живого решения
+     *
+     * @return текст кнопки
+     */
+    private static String getLiveText() {
+        return PanelRendering.task.isLiveSolve() ? "Живое: вкл" : "Живое: выкл";
+    }
+
+    /**
+     * Текст кнопки режима решения
+     *
+     * @return текст кнопки
+     */
+    private static String getModeText() {
+        return "Режим: " + PanelRendering.task.getSolveMode().getTitle();
     }
 
     /**
@@ -291,12 +408,21 @@ public class PanelControl extends GridPanel {
         for (Label label : labels) {
             label.paint(canvas, windowCS);
         }
+        // полоса хода фонового решения по нижнему краю панели
+        SolveProgress progress = PanelRendering.task.getSolveProgress();
+        if (progress != null) {
+            try (var paint = new Paint().setColor(STATS_COLOR)) {
+                canvas.drawRect(Rect.makeXYWH(0, windowCS.getSize().y - PROGRESS_HEIGHT,
+                        (float) (windowCS.getSize().x * progress.fraction()), PROGRESS_HEIGHT), paint);
+            }
+        }
     }
 
     /**
      * Сброс решения задачи
      */
     private void cancelTask() {
+        PanelRendering.task.cancelBackgroundSolve();
         PanelRendering.task.cancel();
         // Задаём новый текст кнопке решения
         solve.text = "Решить";
@@ -52,6 +52,9 @@ public class PanelHelp extends GridPanel {
         super(window, drawBG, color, padding, gridWidth, gridHeight, gridX, gridY, colspan, rowspan);
         shortcuts.add(new Shortcut("O", true, "Открыть"));
         shortcuts.add(new Shortcut("S", true, "Сохранить"));
+        shortcuts.add(new Shortcut("L", true, "Самые длинные хорды"));
+        shortcuts.add(new Shortcut("Z", true, "Отменить"));
+        shortcuts.add(new Shortcut("Y", true, "Повторить"));
         shortcuts.add(new Shortcut("H", true, "Свернуть"));
         shortcuts.add(new Shortcut("1", true, "Во весь экран/Обычный размер"));
         shortcuts.add(new Shortcut("2", true, "Полупрозрачное окно/обычное"));
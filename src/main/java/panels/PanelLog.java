@@ -32,7 +32,8 @@ public class PanelLog extends GridPanel {
      */
     private static final int MAX_LOG_LINE_LENGTH = 80;
     /**
-     * Список записей лога
+     * Список записей лога; записи добавляют и фоновые потоки (решение,
+     * загрузка файлов), поэтому все обращения идут под его блокировкой
      */
     private static final List<Record> logs = new ArrayList<>();
 
@@ -113,17 +114,20 @@ public class PanelLog extends GridPanel {
 
 
     /**
-     * Добавить в лога
+     * Добавить в лога (можно вызывать из любого потока)
      *
      * @param recordType тип записи
      * @param text       текст записи
      */
     public static void addToLog(RecordType recordType, String text) {
-        for (String line : text.split("\n")) {
-            for (String limitedLine : Misc.limit(line, MAX_LOG_LINE_LENGTH)) {
-                while (logs.size() > LOG_LINES_CNT)
-                    logs.remove(0);
-                logs.add(new Record(recordType, limitedLine, Calendar.getInstance().getTime()));
+        Date date = Calendar.getInstance().getTime();
+        synchronized (logs) {
+            for (String line : text.split("\n")) {
+                for (String limitedLine : Misc.limit(line, MAX_LOG_LINE_LENGTH)) {
+                    while (logs.size() > LOG_LINES_CNT)
+                        logs.remove(0);
+                    logs.add(new Record(recordType, limitedLine, date));
+                }
             }
         }
     }
@@ -180,10 +184,15 @@ public class PanelLog extends GridPanel {
             canvas.save();
             // смещаем область рисования
             canvas.translate(padding, windowCS.getSize().y - padding - metrics.getDescent());
+            // копируем записи, чтобы не держать блокировку во время рисования
+            List<Record> records;
+            synchronized (logs) {
+                records = List.copyOf(logs);
+            }
             // перебираем записи лога
-            for (int i = logs.size() - 1; i >= 0; --i) {
+            for (int i = records.size() - 1; i >= 0; --i) {
                 // получаем запись лога
-                Record log = logs.get(i);
+                Record log = records.get(i);
                 // задаём цвет лога
                 paint.setColor(getColor(log.recordType));
                 // выводим строку на экран
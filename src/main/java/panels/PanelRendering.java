@@ -1,20 +1,25 @@
 package panels;
 
 import app.Task;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import app.TaskFiles;
+import app.TaskJournal;
 import dialogs.PanelSelectFile;
+import io.github.humbleui.jwm.App;
 import io.github.humbleui.jwm.Event;
 import io.github.humbleui.jwm.EventMouseButton;
+import io.github.humbleui.jwm.EventMouseMove;
 import io.github.humbleui.jwm.EventMouseScroll;
+import io.github.humbleui.jwm.MouseButton;
 import io.github.humbleui.jwm.Window;
 import io.github.humbleui.skija.Canvas;
 import misc.CoordinateSystem2d;
 import misc.CoordinateSystem2i;
 import misc.Stats;
 import misc.Vector2d;
+import misc.Vector2i;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 
 import static app.Fonts.FONT12;
@@ -28,6 +33,18 @@ public class PanelRendering extends GridPanel {
      * Представление проблемы
      */
     public static Task task;
+    /**
+     * Окно панели: фоновые загрузка и сохранение просят у него новый кадр
+     */
+    private static Window frameWindow;
+    /**
+     * Журнал изменений текущей задачи, null, если журнал отключён
+     */
+    private static TaskJournal journal;
+    /**
+     * Метка текущей загрузки файла, null, если файл не загружается
+     */
+    private static Object loadToken;
     /**
      * Статистика fps
      */
@@ -52,16 +69,45 @@ public class PanelRendering extends GridPanel {
             int gridX, int gridY, int colspan, int rowspan
     ) {
         super(window, drawBG, color, padding, gridWidth, gridHeight, gridX, gridY, colspan, rowspan);
+        frameWindow = window;
 
         // ОСК от [-10.0,-10.0] до [10.0,10.0]
         CoordinateSystem2d cs = new CoordinateSystem2d(
                 new Vector2d(-10.0, -10.0), new Vector2d(10.0, 10.0)
         );
 
-        // создаём задачу без точек
-        task = new Task(cs, new ArrayList<>(), new ArrayList<>());
-        // добавляем в нее 2 случайных
-        task.addRandomPoints(2);
+        // восстанавливаем задачу, с которой работали в прошлый раз
+        journal = openJournal();
+        task = journal == null ? null : journal.getRecovered();
+        if (task != null) {
+            PanelLog.info(String.format("Задача восстановлена из журнала: точек %d, изменений после снимка %d",
+                    task.getPoints().size(), journal.getReplayed()));
+        } else {
+            // создаём задачу без точек
+            task = new Task(cs, new ArrayList<>(), new ArrayList<>());
+            // добавляем в нее 2 случайных
+            task.addRandomPoints(2);
+        }
+        task.setJournal(journal);
+    }
+
+    /**
+     * Открыть журнал изменений; папку задаёт свойство chords.journalDir
+     * (по умолчанию ~/.chords/journal), пустое значение отключает журнал
+     *
+     * @return журнал или null
+     */
+    private static TaskJournal openJournal() {
+        String directory = System.getProperty("chords.journalDir",
+                Path.of(System.getProperty("user.home"), ".chords", "journal").toString());
+        if (directory.isEmpty())
+            return null;
+        try {
+            return TaskJournal.open(Path.of(directory), TaskJournal.COMPACT_BYTES);
+        } catch (IOException | RuntimeException e) {
+            PanelLog.warning("Журнал изменений не открылся, правки не будут сохраняться\n" + e);
+            return null;
+        }
     }
 
     /**
@@ -78,8 +124,24 @@ public class PanelRendering extends GridPanel {
                 task.scale(ee.getDeltaY(), lastWindowCS.getRelativePos(lastMove));
             window.requestFrame();
         } else if (e instanceof EventMouseButton ee) {
-            if (lastMove != null && lastInside)
-                task.click(lastWindowCS.getRelativePos(lastMove), ee.getButton());
+            // пока файл загружается, на экране промежуточная задача: правки в ней потерялись бы
+            if (isLoading())
+                return;
+            if (task.isDragging()) {
+                // отпускание кнопки заканчивает перетаскивание вершины
+                if (!ee.isPressed()) {
+                    task.releaseTop();
+                    window.requestFrame();
+                }
+            } else if (lastMove != null && lastInside) {
+                Vector2i pos = lastWindowCS.getRelativePos(lastMove);
+                // нажатие на вершину прямоугольника начинает её перетаскивание
+                if (!(ee.isPressed() && ee.getButton().equals(MouseButton.PRIMARY) && task.grabTop(pos)))
+                    task.click(pos, ee.getButton());
+            }
+        } else if (e instanceof EventMouseMove && task.isDragging() && lastMove != null) {
+            task.dragTop(lastWindowCS.getRelativePos(lastMove));
+            window.requestFrame();
         }
     }
 
@@ -101,35 +163,81 @@ public class PanelRendering extends GridPanel {
     }
 
     /**
-     * Загружаем из файла
+     * Загружаем из файла в фоне: прочитанные точки показываются по мере
+     * загрузки, а готовая задача заменяет текущую (вызывается в потоке интерфейса)
      *
      * @param path путь к файлу
      */
     public static void loadFromFile(String path) {
-        // создаём загрузчик JSON
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            // считываем систему координат
-            task = objectMapper.readValue(new File(path), Task.class);
-            PanelLog.success("Файл " + path + " успешно загружен");
-        } catch (IOException e) {
-            PanelLog.error("Не получилось прочитать файл " + path + "\n" + e);
-        }
+        // новая загрузка заменяет незаконченную: промежуточные задачи старой больше не показываем
+        Object token = new Object();
+        loadToken = token;
+        Task before = task;
+        TaskFiles.load(Path.of(path), partial -> App.runOnUIThread(() -> {
+            if (loadToken == token) {
+                task = partial;
+                requestFrame();
+            }
+        })).whenComplete((loaded, e) -> App.runOnUIThread(() -> {
+            if (loadToken != token)
+                return;
+            loadToken = null;
+            // при ошибке возвращаем задачу, которая была до загрузки
+            if (loaded != null) {
+                // журнал переходит к загруженной задаче, она становится его снимком
+                before.setJournal(null);
+                loaded.setJournal(journal);
+                task = loaded;
+            } else {
+                task = before;
+            }
+            requestFrame();
+        }));
+    }
+
+    /**
+     * Идёт ли загрузка файла
+     *
+     * @return флаг
+     */
+    public static boolean isLoading() {
+        return loadToken != null;
+    }
+
+    /**
+     * Можно ли менять задачу: пока файл загружается, на экране промежуточная задача
+     * без журнала, и правки в ней пропали бы, когда её заменит загруженная
+     *
+     * @return false, если идёт загрузка (тогда в лог пишется предупреждение)
+     */
+    public static boolean isEditable() {
+        if (!isLoading())
+            return true;
+        PanelLog.warning("Дождитесь окончания загрузки файла");
+        return false;
     }
 
     /**
-     * Сохранить файл
+     * Попросить новый кадр после фоновой загрузки или сохранения
+     */
+    private static void requestFrame() {
+        if (frameWindow != null)
+            frameWindow.requestFrame();
+    }
+
+    /**
+     * Сохранить файл в фоне
      */
     public static void save() {
+        // недогруженная задача сохранилась бы не целиком
+        if (!isEditable())
+            return;
         PanelSelectFile.show("Выберите файл", path -> {
             if (!path.isEmpty()) {
-                try {
-                    ObjectMapper objectMapper = new ObjectMapper();
-                    objectMapper.writeValue(new File(path), task);
-                    PanelLog.success("Файл " + path + " успешно сохранён");
-                } catch (IOException e) {
-                    PanelLog.error("не получилось записать файл \n" + e);
-                }
+                PanelLog.info("save to " + path);
+                // итог сохранения появится в логе, кадр нужен, чтобы его показать
+                TaskFiles.save(task, Path.of(path))
+                        .whenComplete((v, e) -> App.runOnUIThread(PanelRendering::requestFrame));
             }
         });
     }
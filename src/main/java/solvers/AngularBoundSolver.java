@@ -0,0 +1,166 @@
+package solvers;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Перебор пар "от лучшего к худшему" по угловым оценкам
+ * <p>
+ * Хорда прямоугольника w x h в направлении θ не длиннее min(w/|cos θ|, h/|sin θ|)
+ * (см. {@link ChordBounds}). Пары раскладываются по корзинам направлений, корзины обходятся по убыванию
+ * оценки, и обход прекращается, как только оценка оставшихся корзин меньше
+ * лучшей найденной хорды. Чтобы память не росла как n², пары обрабатываются
+ * порциями по {@link #BLOCK_PAIRS}, а лучшая хорда переходит из порции в порцию
+ * и отсекает корзины ещё при раскладке
+ */
+public class AngularBoundSolver implements Solver {
+    /**
+     * Кол-во корзин направлений
+     */
+    static final int BUCKETS = 1024;
+    /**
+     * Сколько пар раскладывается за одну порцию
+     */
+    private static final int BLOCK_PAIRS = 1 << 20;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая разложенные пары построчно
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double[] bounds = bucketBounds(clipper.right - clipper.left, clipper.top - clipper.bottom);
+        // порядок обхода корзин: по убыванию оценки
+        int[] order = IntStream.range(0, BUCKETS).boxed()
+                .sorted(Comparator.comparingDouble(b -> -bounds[b]))
+                .mapToInt(Integer::intValue).toArray();
+
+        int capacity = (int) Math.min(BLOCK_PAIRS, Math.max(ParallelSolver.pairsBefore(n, n), 1));
+        capacity = Math.max(capacity, n - 1);
+        int[] pairI = new int[capacity];
+        int[] pairJ = new int[capacity];
+        short[] pairBucket = new short[capacity];
+        int[] sortedI = new int[capacity];
+        int[] sortedJ = new int[capacity];
+        int[] start = new int[BUCKETS + 1];
+
+        Chord best = Chord.NONE;
+        int from = 0;
+        while (from < n - 1) {
+            // набираем строки порции, пока пары помещаются в буфер
+            int to = from + 1;
+            long pairs = n - 1 - from;
+            while (to < n - 1 && pairs + (n - 1 - to) <= capacity) {
+                pairs += n - 1 - to;
+                to++;
+            }
+            double lengthMax = best.length();
+            // раскладка: считаем корзину каждой пары, пары из безнадёжных корзин сразу отбрасываем
+            Arrays.fill(start, 0);
+            int cnt = 0;
+            for (int i = from; i < to; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int b = bucket(xs[j] - xs[i], ys[j] - ys[i]);
+                    if (b < 0 || bounds[b] < lengthMax)
+                        continue;
+                    pairI[cnt] = i;
+                    pairJ[cnt] = j;
+                    pairBucket[cnt] = (short) b;
+                    start[b + 1]++;
+                    cnt++;
+                }
+                if (progress != null)
+                    progress.advance(n - 1 - i);
+            }
+            for (int b = 0; b < BUCKETS; b++)
+                start[b + 1] += start[b];
+            int[] cursor = Arrays.copyOf(start, BUCKETS);
+            for (int p = 0; p < cnt; p++) {
+                int pos = cursor[pairBucket[p]]++;
+                sortedI[pos] = pairI[p];
+                sortedJ[pos] = pairJ[p];
+            }
+            // обходим корзины от лучшей оценки к худшей
+            for (int b : order) {
+                if (bounds[b] < best.length())
+                    break;
+                // пары порции уже отмечены при раскладке, здесь только отмена
+                if (progress != null)
+                    progress.check();
+                for (int p = start[b]; p < start[b + 1]; p++) {
+                    int i = sortedI[p];
+                    int j = sortedJ[p];
+                    double length = clipper.length(xs[i], ys[i], xs[j], ys[j]);
+                    if (length >= 0) {
+                        Chord chord = new Chord(i, j, length);
+                        if (chord.isBetter(best))
+                            best = chord;
+                    }
+                }
+            }
+            from = to;
+        }
+        return best;
+    }
+
+    /**
+     * Корзина направления вектора (dx, dy)
+     * <p>
+     * Направление приводится к полуплоскости dy > 0 (или dy = 0, dx > 0), а вместо угла
+     * берётся псевдоугол t = dx / (|dx| + dy), монотонно убывающий от 1 до -1
+     *
+     * @param dx проекция на X
+     * @param dy проекция на Y
+     * @return номер корзины или -1 для нулевого вектора
+     */
+    static int bucket(double dx, double dy) {
+        if (dy < 0 || (dy == 0 && dx < 0)) {
+            dx = -dx;
+            dy = -dy;
+        }
+        double sum = Math.abs(dx) + dy;
+        if (sum == 0)
+            return -1;
+        double t = dx / sum;
+        int b = (int) ((1 - t) * 0.5 * BUCKETS);
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    /**
+     * Оценки длины хорды для каждой корзины
+     *
+     * @param w ширина прямоугольника
+     * @param h высота прямоугольника
+     * @return массив оценок
+     */
+    static double[] bucketBounds(double w, double h) {
+        double[] bounds = new double[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            // края корзины в псевдоуглах: направления (t, 1 - |t|)
+            double t0 = 1 - 2.0 * b / BUCKETS;
+            double t1 = 1 - 2.0 * (b + 1) / BUCKETS;
+            bounds[b] = ChordBounds.cone(Math.atan2(1 - Math.abs(t0), t0), Math.atan2(1 - Math.abs(t1), t1), w, h);
+        }
+        return bounds;
+    }
+}
@@ -0,0 +1,163 @@
+package solvers;
+
+/**
+ * Решение с бюджетом времени: лучший найденный ответ доступен в любой момент
+ * <p>
+ * Пары ячеек квадродерева обходятся по убыванию оценки, как в {@link QuadTreeSolver},
+ * поэтому первыми считаются самые многообещающие пары точек. Каждая улучшенная
+ * хорда кладётся в {@link ChordMailbox}, и интерфейс рисует её, не дожидаясь конца.
+ * Перебор заканчивается, когда оценка лучшей из оставшихся пар ячеек меньше найденной
+ * хорды (оптимум доказан) или когда истёк бюджет времени
+ */
+public class AnytimeSolver implements Solver {
+    /**
+     * Бюджет времени по умолчанию в нс
+     */
+    public static final long DEFAULT_BUDGET_NANOS = 500_000_000L;
+    /**
+     * Бюджет времени в нс
+     */
+    private final long budgetNanos;
+    /**
+     * Ящик для улучшенных хорд, null - не публиковать
+     */
+    private ChordMailbox mailbox;
+    /**
+     * Был ли доказан оптимум в последнем решении
+     */
+    private boolean lastProven;
+
+    /**
+     * Решатель с бюджетом по умолчанию
+     */
+    public AnytimeSolver() {
+        this(DEFAULT_BUDGET_NANOS);
+    }
+
+    /**
+     * Решатель с заданным бюджетом
+     *
+     * @param budgetNanos бюджет времени в нс
+     */
+    public AnytimeSolver(long budgetNanos) {
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Задать ящик для улучшенных хорд
+     *
+     * @param mailbox ящик, null - не публиковать
+     */
+    public void setMailbox(ChordMailbox mailbox) {
+        this.mailbox = mailbox;
+    }
+
+    /**
+     * Был ли доказан оптимум в последнем решении
+     *
+     * @return true, если ответ точный, false, если истёк бюджет
+     */
+    public boolean isLastProven() {
+        return lastProven;
+    }
+
+    /**
+     * Найти лучшую хорду за отведённое время
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая найденная хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти лучшую хорду за отведённое время, отмечая перебранные пары
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая найденная хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        lastProven = true;
+        if (n < 2)
+            return Chord.NONE;
+        Budget budget = new Budget(System.nanoTime() + budgetNanos, mailbox, progress);
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++)
+            index[i] = i;
+        QuadTreeSolver.Node root = QuadTreeSolver.build(xs, ys, index, 0, n, 0);
+        Chord best = QuadTreeSolver.search(root, index, xs, ys, clipper, budget);
+        lastProven = !budget.expired;
+        if (progress != null)
+            progress.complete();
+        return best;
+    }
+
+    /**
+     * Ограничение обхода по времени и публикация улучшений
+     */
+    static class Budget {
+        /**
+         * Момент окончания бюджета по {@link System#nanoTime()}
+         */
+        private final long deadline;
+        /**
+         * Ящик для улучшенных хорд, может быть null
+         */
+        private final ChordMailbox mailbox;
+        /**
+         * Ход решения, может быть null
+         */
+        private final SolveProgress progress;
+        /**
+         * Истёк ли бюджет
+         */
+        private boolean expired;
+
+        /**
+         * Конструктор ограничения
+         *
+         * @param deadline момент окончания бюджета
+         * @param mailbox  ящик для улучшенных хорд, может быть null
+         * @param progress ход решения, может быть null
+         */
+        Budget(long deadline, ChordMailbox mailbox, SolveProgress progress) {
+            this.deadline = deadline;
+            this.mailbox = mailbox;
+            this.progress = progress;
+        }
+
+        /**
+         * Проверить, можно ли продолжать обход
+         *
+         * @param pairs сколько пар точек перебрано с прошлой проверки
+         * @return false, если бюджет истёк
+         * @throws java.util.concurrent.CancellationException если решение отменено
+         */
+        boolean proceed(long pairs) {
+            if (progress != null)
+                progress.advance(pairs);
+            if (System.nanoTime() - deadline >= 0)
+                expired = true;
+            return !expired;
+        }
+
+        /**
+         * Опубликовать улучшенную хорду
+         *
+         * @param chord хорда
+         */
+        void improved(Chord chord) {
+            if (mailbox != null)
+                mailbox.publish(chord);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package solvers;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Приближённое решение по сетке направлений с гарантией (1 - eps)
+ * <p>
+ * Направления прямых [0, pi) делятся на m корзин. Верхняя оценка для корзины
+ * считается за один проход по точкам, без сортировки. Любая прямая корзины
+ * отличается от центральной прямой, проведённой через ближайшую к центру
+ * прямоугольника точку прямой, не больше чем на h * sin(s) внутри прямоугольника
+ * (h - половина диагонали, s - полуширина корзины), поэтому её хорда не длиннее
+ * хорды центральной прямой в прямоугольнике, расширенном на h * sin(s), делённой
+ * на cos(s). Сдвиг этой центральной прямой от центра известен с точностью до
+ * r(p) * sin(s) для каждой точки p прямой (r(p) - расстояние до центра), а длина
+ * хорды убывает с удалением от центра, так что корзине хватает ближайшего к центру
+ * из этих отрезков. Нижнюю оценку дают соседние по проекции на нормаль пары:
+ * сортируются только корзины с наибольшей верхней оценкой и только пока ответ
+ * не доказан. Запас оценки не зависит от того, как далеко лежат точки, поэтому
+ * корзин нужно порядка 1 / eps; если и {@link #MAX_PER_EPS} / eps корзин не
+ * дают гарантии, задача решается точно
+ */
+public class ApproxSolver implements Solver {
+    /**
+     * Наибольшее число корзин направлений
+     */
+    public static final int MAX_DIRECTIONS = 1 << 13;
+    /**
+     * Число корзин первого прохода, умноженное на eps
+     */
+    static final double START_PER_EPS = 2;
+    /**
+     * Наибольшее число корзин, умноженное на eps
+     */
+    static final double MAX_PER_EPS = 16;
+    /**
+     * Сколько следующих по проекции точек проверяется для каждой точки
+     */
+    private static final int NEIGHBOURS = 2;
+    /**
+     * Сколько кусков корзин приходится на один поток пула
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /**
+     * Запас при пересчёте числа корзин по достигнутому недобору
+     */
+    private static final double GROWTH_MARGIN = 1.25;
+    /**
+     * Допустимая доля недобора длины
+     */
+    private final double eps;
+    /**
+     * Результат последнего решения
+     */
+    private Result lastResult;
+
+    /**
+     * Конструктор решателя
+     *
+     * @param eps допустимая доля недобора длины, от 0 до 1
+     */
+    public ApproxSolver(double eps) {
+        if (!(eps > 0 && eps < 1))
+            throw new IllegalArgumentException("eps должно лежать в (0, 1): " + eps);
+        this.eps = eps;
+    }
+
+    /**
+     * Результат приближённого решения
+     *
+     * @param chord       найденная хорда
+     * @param upperBound  доказанная оценка сверху на длину лучшей хорды
+     * @param achievedEps достигнутая доля недобора: 1 - длина / оценка
+     * @param directions  число корзин направлений в последнем проходе
+     * @param exact       пришлось ли решать точно
+     * @param nanos       время решения в нс
+     */
+    public record Result(Chord chord, double upperBound, double achievedEps, int directions,
+                         boolean exact, long nanos) {
+    }
+
+    /**
+     * Найти хорду не короче (1 - eps) от самой длинной
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return найденная хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return approximate(points, clipper, null).chord();
+    }
+
+    /**
+     * Найти хорду не короче (1 - eps) от самой длинной, проверяя отмену перед каждой корзиной
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения
+     * @return найденная хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        Chord chord = approximate(points, clipper, progress).chord();
+        progress.complete();
+        return chord;
+    }
+
+    /**
+     * Получить результат последнего решения
+     *
+     * @return результат или null, если решения ещё не было
+     */
+    public Result getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Найти хорду не короче (1 - eps) от самой длинной вместе с оценкой сверху
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не проверять отмену
+     * @return результат решения
+     * @throws java.util.concurrent.CancellationException если решение отменено
+     */
+    public Result approximate(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        long startTime = System.nanoTime();
+        int n = points.size();
+        if (n < 2)
+            return lastResult = new Result(Chord.NONE, 0, 0, 0, true, System.nanoTime() - startTime);
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double cx = (clipper.left + clipper.right) / 2;
+        double cy = (clipper.bottom + clipper.top) / 2;
+        double halfDiagonal = Math.hypot(clipper.right - clipper.left, clipper.top - clipper.bottom) / 2;
+        // расстояние от каждой точки до центра прямоугольника
+        double[] reach = new double[n];
+        for (int i = 0; i < n; i++)
+            reach[i] = Math.hypot(xs[i] - cx, ys[i] - cy);
+        int limit = (int) Math.min(MAX_DIRECTIONS, Math.ceil(MAX_PER_EPS / eps));
+        int m = (int) Math.min(limit, Math.ceil(START_PER_EPS / eps));
+        long[] keys = new long[n];
+
+        Chord best = Chord.NONE;
+        while (true) {
+            double[] uppers = upperBounds(xs, ys, reach, clipper, cx, cy, halfDiagonal, m);
+            double upper = 0;
+            for (double u : uppers)
+                upper = Math.max(upper, u);
+            // нижнюю оценку ищем в корзинах по убыванию их верхней оценки
+            Integer[] order = new Integer[m];
+            for (int k = 0; k < m; k++)
+                order[k] = k;
+            Arrays.sort(order, Comparator.comparingDouble(k -> -uppers[k]));
+            for (int k : order) {
+                // ответ доказан или остальные корзины лучшей хорды не дадут
+                if (best.length() >= (1 - eps) * upper || uppers[k] <= best.length())
+                    break;
+                if (progress != null)
+                    progress.check();
+                best = Chord.best(best, neighbourChord(xs, ys, clipper, k, m, keys));
+            }
+            double achieved = upper > 0 ? Math.max(0, 1 - Math.max(best.length(), 0) / upper) : 0;
+            if (achieved <= eps)
+                return lastResult = new Result(best, upper, achieved, m, false, System.nanoTime() - startTime);
+            if (m >= limit) {
+                // сетка направлений не даёт гарантии: точки слишком редки
+                Chord exact = new QuadTreeSolver().solve(points, clipper);
+                return lastResult = new Result(exact, Math.max(exact.length(), 0), 0, m, true,
+                        System.nanoTime() - startTime);
+            }
+            m = (int) Math.min(limit, Math.max(m + 1, Math.ceil(m * GROWTH_MARGIN * achieved / eps)));
+        }
+    }
+
+    /**
+     * Верхние оценки длины хорды для всех корзин направлений
+     *
+     * @param xs           координаты X точек
+     * @param ys           координаты Y точек
+     * @param reach        расстояния от точек до центра прямоугольника
+     * @param clipper      прямоугольник
+     * @param cx           координата X центра прямоугольника
+     * @param cy           координата Y центра прямоугольника
+     * @param halfDiagonal половина диагонали прямоугольника
+     * @param m            число корзин
+     * @return оценки по корзинам
+     */
+    private static double[] upperBounds(double[] xs, double[] ys, double[] reach, ChordClipper clipper,
+                                        double cx, double cy, double halfDiagonal, int m) {
+        double[] uppers = new double[m];
+        double spread = Math.PI / (2 * m);
+        double sinSpread = Math.sin(spread);
+        double cosSpread = Math.cos(spread);
+        // корзины независимы, поэтому разбираются кусками параллельно
+        int chunks = Math.min(m, ForkJoinPool.commonPool().getParallelism() * CHUNKS_PER_THREAD);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int k = c; k < m; k += chunks) {
+                double angle = (k + 0.5) * Math.PI / m;
+                double cos = Math.cos(angle);
+                double sin = Math.sin(angle);
+                // наименьшее удаление от центра, на котором может пройти центральная прямая
+                double gap = Double.POSITIVE_INFINITY;
+                for (int i = 0; i < reach.length && gap > 0; i++)
+                    gap = Math.min(gap, Math.abs((ys[i] - cy) * cos - (xs[i] - cx) * sin) - reach[i] * sinSpread);
+                gap = Math.max(gap, 0);
+                uppers[k] = expandedLength(clipper, halfDiagonal * sinSpread,
+                        cx - gap * sin, cy + gap * cos, cos, sin) / cosSpread;
+            }
+        });
+        return uppers;
+    }
+
+    /**
+     * Лучшая хорда среди соседних по проекции пар одной корзины
+     *
+     * @param xs      координаты X точек
+     * @param ys      координаты Y точек
+     * @param clipper отсечение прямоугольником
+     * @param k       номер корзины
+     * @param m       число корзин
+     * @param keys    рабочий массив ключей на все точки
+     * @return лучшая хорда корзины или {@link Chord#NONE}
+     */
+    private static Chord neighbourChord(double[] xs, double[] ys, ChordClipper clipper, int k, int m, long[] keys) {
+        int n = keys.length;
+        double angle = (k + 0.5) * Math.PI / m;
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for (int i = 0; i < n; i++)
+            keys[i] = key((float) (ys[i] * cos - xs[i] * sin), i);
+        Arrays.sort(keys);
+        Chord best = Chord.NONE;
+        for (int p = 0; p < n; p++) {
+            int a = (int) keys[p];
+            for (int q = p + 1; q < Math.min(n, p + 1 + NEIGHBOURS); q++) {
+                int b = (int) keys[q];
+                int i = Math.min(a, b);
+                int j = Math.max(a, b);
+                Chord chord = new Chord(i, j, clipper.length(xs[i], ys[i], xs[j], ys[j]));
+                if (chord.isBetter(best))
+                    best = chord;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Ключ сортировки: проекция в старших 32 битах (float с сохранением порядка),
+     * номер точки - в младших
+     *
+     * @param projection проекция точки
+     * @param index      номер точки
+     * @return ключ
+     */
+    private static long key(float projection, int index) {
+        int bits = Float.floatToRawIntBits(projection);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | index;
+    }
+
+    /**
+     * Длина хорды прямой через точку с единичным направлением
+     * в прямоугольнике, расширенном на заданный отступ
+     *
+     * @param clipper прямоугольник
+     * @param margin  отступ
+     * @param px      координата X точки
+     * @param py      координата Y точки
+     * @param cos     X-компонента направления
+     * @param sin     Y-компонента направления
+     * @return длина хорды, 0, если прямая не пересекает прямоугольник
+     */
+    static double expandedLength(ChordClipper clipper, double margin, double px, double py,
+                                 double cos, double sin) {
+        double tMin = Double.NEGATIVE_INFINITY;
+        double tMax = Double.POSITIVE_INFINITY;
+        if (cos != 0) {
+            double t1 = (clipper.left - margin - px) / cos;
+            double t2 = (clipper.right + margin - px) / cos;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        } else if (px < clipper.left - margin || px > clipper.right + margin) {
+            return 0;
+        }
+        if (sin != 0) {
+            double t1 = (clipper.bottom - margin - py) / sin;
+            double t2 = (clipper.top + margin - py) / sin;
+            tMin = Math.max(tMin, Math.min(t1, t2));
+            tMax = Math.min(tMax, Math.max(t1, t2));
+        } else if (py < clipper.bottom - margin || py > clipper.top + margin) {
+            return 0;
+        }
+        return Math.max(0, tMax - tMin);
+    }
+}
@@ -0,0 +1,111 @@
+package solvers;
+
+import misc.Vector2d;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Пакетные запросы: одно облако точек и много прямоугольников
+ * <p>
+ * Индекс прямых ({@link LineIndex}) строится один раз, а прямоугольники
+ * пакета разбираются параллельно на пуле потоков. Ответ каждого
+ * прямоугольника не зависит от того, каким потоком он был посчитан
+ */
+public class BatchQueryEngine {
+    /**
+     * Индекс прямых
+     */
+    private final LineIndex index;
+    /**
+     * Пул потоков
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Движок на общем пуле
+     *
+     * @param points упакованные координаты точек
+     */
+    public BatchQueryEngine(PackedPoints points) {
+        this(new LineIndex(points), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Движок на готовом индексе и заданном пуле
+     *
+     * @param index индекс прямых
+     * @param pool  пул потоков
+     */
+    public BatchQueryEngine(LineIndex index, ForkJoinPool pool) {
+        this.index = index;
+        this.pool = pool;
+    }
+
+    /**
+     * Решить задачу для пакета прямоугольников
+     *
+     * @param rectangles прямоугольники, каждый задан двумя противоположными вершинами
+     * @return ответы в порядке прямоугольников и время решения
+     */
+    public BatchResult solveAll(List<Vector2d[]> rectangles) {
+        int count = rectangles.size();
+        Answer[] answers = new Answer[count];
+        long startTime = System.nanoTime();
+        pool.submit(() -> IntStream.range(0, count).parallel().forEach(r -> {
+            Vector2d[] tops = rectangles.get(r);
+            answers[r] = answer(ChordClipper.of(tops[0], tops[1]));
+        })).join();
+        return new BatchResult(Arrays.asList(answers), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Ответ для одного прямоугольника
+     *
+     * @param clipper отсечение прямоугольником
+     * @return ответ
+     */
+    public Answer answer(ChordClipper clipper) {
+        Chord chord = index.query(clipper);
+        if (!chord.exists())
+            return new Answer(chord, null);
+        return new Answer(chord, clipper.cross(index.get(chord.i()), index.get(chord.j())));
+    }
+
+    /**
+     * Индекс прямых
+     *
+     * @return индекс
+     */
+    public LineIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Ответ для прямоугольника
+     *
+     * @param chord лучшая хорда или {@link Chord#NONE}
+     * @param cross точки пересечения прямой со сторонами, null, если хорды нет
+     */
+    public record Answer(Chord chord, Vector2d[] cross) {
+    }
+
+    /**
+     * Результат пакета
+     *
+     * @param answers ответы в порядке прямоугольников
+     * @param nanos   время решения пакета в нс
+     */
+    public record BatchResult(List<Answer> answers, long nanos) {
+        /**
+         * Пропускная способность
+         *
+         * @return прямоугольников в секунду
+         */
+        public double rectanglesPerSecond() {
+            return nanos == 0 ? 0 : answers.size() * 1e9 / nanos;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package solvers;
+
+/**
+ * Полный перебор пар точек в одном потоке
+ */
+public class BruteForceSolver implements Solver {
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solveRows(points, clipper, 0, points.size(), null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая перебранные пары после каждой строки
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        return solveRows(points, clipper, 0, points.size(), progress);
+    }
+
+    /**
+     * Перебрать пары (i, j), i < j, у которых i лежит в диапазоне строк [from, to)
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param from     первая строка
+     * @param to       строка за последней
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда диапазона или {@link Chord#NONE}
+     */
+    static Chord solveRows(PackedPoints points, ChordClipper clipper, int from, int to, SolveProgress progress) {
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        for (int i = from; i < to; i++) {
+            double ax = xs[i];
+            double ay = ys[i];
+            for (int j = i + 1; j < n; j++) {
+                double length = clipper.length(ax, ay, xs[j], ys[j]);
+                // строгое сравнение оставляет первую из равных пар
+                if (length > lengthMax) {
+                    lengthMax = length;
+                    iMax = i;
+                    jMax = j;
+                }
+            }
+            if (progress != null)
+                progress.advance(n - 1 - i);
+        }
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+}
@@ -0,0 +1,51 @@
+package solvers;
+
+/**
+ * Хорда: пара точек, задающих прямую, и длина её отрезка внутри прямоугольника
+ *
+ * @param i      индекс первой точки
+ * @param j      индекс второй точки (всегда больше i)
+ * @param length длина отрезка внутри прямоугольника, -1, если хорды нет
+ */
+public record Chord(int i, int j, double length) {
+    /**
+     * Пустой результат: ни одна прямая не пересекает прямоугольник
+     */
+    public static final Chord NONE = new Chord(-1, -1, -1);
+
+    /**
+     * Найдена ли хорда
+     *
+     * @return флаг
+     */
+    public boolean exists() {
+        return length >= 0;
+    }
+
+    /**
+     * Лучше ли эта хорда другой. Длинная хорда лучше короткой, а при равной длине
+     * лучше та, что раньше встречается в переборе пар (i, j), поэтому ответ
+     * не зависит от того, в каком порядке пары были просмотрены
+     *
+     * @param other другая хорда
+     * @return флаг
+     */
+    public boolean isBetter(Chord other) {
+        if (length != other.length)
+            return length > other.length;
+        if (i != other.i)
+            return i < other.i;
+        return j < other.j;
+    }
+
+    /**
+     * Выбрать лучшую из двух хорд
+     *
+     * @param a первая хорда
+     * @param b вторая хорда
+     * @return лучшая хорда
+     */
+    public static Chord best(Chord a, Chord b) {
+        return a.isBetter(b) ? a : b;
+    }
+}
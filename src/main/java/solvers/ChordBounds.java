@@ -0,0 +1,174 @@
+package solvers;
+
+/**
+ * Верхние оценки длины хорды по направлению прямой
+ * <p>
+ * Хорда прямоугольника w x h в направлении θ не длиннее min(w/|cos θ|, h/|sin θ|),
+ * максимум (диагональ) достигается на направлениях диагоналей
+ */
+class ChordBounds {
+    /**
+     * Относительный запас оценки на ошибки округления
+     */
+    private static final double EPS = 1e-9;
+    /**
+     * Насколько близко к оси направление считается параллельным ей
+     */
+    private static final double AXIS_EPS = 1e-12;
+
+    /**
+     * Закрытый конструктор
+     */
+    private ChordBounds() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Оценка для направления, заданного вектором
+     *
+     * @param ux проекция направления на X
+     * @param uy проекция направления на Y
+     * @param w  ширина прямоугольника
+     * @param h  высота прямоугольника
+     * @return оценка длины хорды
+     */
+    static double direction(double ux, double uy, double w, double h) {
+        ux = Math.abs(ux);
+        uy = Math.abs(uy);
+        double len = Math.sqrt(ux * ux + uy * uy);
+        double byWidth = ux == 0 ? Double.POSITIVE_INFINITY : w / ux;
+        double byHeight = uy == 0 ? Double.POSITIVE_INFINITY : h / uy;
+        return len * Math.min(byWidth, byHeight);
+    }
+
+    /**
+     * Оценка для всех направлений из сектора углов [a0, a1] (с запасом на округление)
+     *
+     * @param a0 начальный угол, рад
+     * @param a1 конечный угол, рад, не меньше a0
+     * @param w  ширина прямоугольника
+     * @param h  высота прямоугольника
+     * @return оценка длины хорды
+     */
+    static double cone(double a0, double a1, double w, double h) {
+        double diagonal = Math.sqrt(w * w + h * h);
+        double peak = Math.atan2(h, w);
+        double bound;
+        // между диагоналями оценка монотонна, поэтому максимум либо на диагонали, либо на краю сектора
+        if (containsAngle(a0, a1, peak) || containsAngle(a0, a1, Math.PI - peak))
+            bound = diagonal;
+        else
+            bound = Math.max(direction(Math.cos(a0), Math.sin(a0), w, h),
+                    direction(Math.cos(a1), Math.sin(a1), w, h));
+        if (Double.isNaN(bound) || bound > diagonal)
+            bound = diagonal;
+        return withMargin(bound, diagonal);
+    }
+
+    /**
+     * Оценка для прямых с направлением из сектора [a0, a1], проходящих через габарит
+     * (minX, minY) - (maxX, maxY). Сектор должен лежать внутри одной четверти.
+     * <p>
+     * Прямая x + t * u пересекает полосу left..right при t из [tx0, tx1], полосу
+     * bottom..top при t из [ty0, ty1], и хорда не длиннее ty1 - tx0 и tx1 - ty0.
+     * Обе разности имеют вид α/|sin θ| + β/|cos θ|, после подстановки худшей точки
+     * габарита такая функция внутри четверти либо выпукла, либо монотонна, либо
+     * отрицательна, поэтому её верхняя грань достигается на краях сектора.
+     * Прямая, параллельная оси, пересекает полосу целиком или не пересекает вовсе,
+     * и для неё оценка разрывна, поэтому край сектора на оси добавляет
+     * к оценке сторону прямоугольника
+     *
+     * @param a0      начальный угол, рад
+     * @param a1      конечный угол, рад
+     * @param clipper прямоугольник
+     * @param minX    габарит
+     * @param minY    габарит
+     * @param maxX    габарит
+     * @param maxY    габарит
+     * @return оценка длины хорды без запаса на округление
+     */
+    static double throughBox(double a0, double a1, ChordClipper clipper,
+                             double minX, double minY, double maxX, double maxY) {
+        double mid = (a0 + a1) / 2;
+        boolean right = Math.cos(mid) > 0;
+        boolean up = Math.sin(mid) > 0;
+        // ty1 - tx0
+        double alpha1 = up ? clipper.top - minY : maxY - clipper.bottom;
+        double beta1 = right ? maxX - clipper.left : clipper.right - minX;
+        // tx1 - ty0
+        double alpha2 = up ? maxY - clipper.bottom : clipper.top - minY;
+        double beta2 = right ? clipper.right - minX : maxX - clipper.left;
+        double bound = Math.min(slabMax(a0, a1, alpha1, beta1), slabMax(a0, a1, alpha2, beta2));
+        // края сектора на осях
+        for (double a : new double[]{a0, a1}) {
+            if (Math.abs(Math.cos(a)) < AXIS_EPS)
+                bound = Math.max(bound, clipper.top - clipper.bottom);
+            if (Math.abs(Math.sin(a)) < AXIS_EPS)
+                bound = Math.max(bound, clipper.right - clipper.left);
+        }
+        return bound;
+    }
+
+    /**
+     * Верхняя грань α/|sin θ| + β/|cos θ| внутри четверти на секторе [a0, a1]
+     * (на оси деление на почти ноль даёт предел изнутри четверти)
+     *
+     * @param a0    начальный угол
+     * @param a1    конечный угол
+     * @param alpha коэффициент при 1/|sin θ|
+     * @param beta  коэффициент при 1/|cos θ|
+     * @return верхняя грань
+     */
+    private static double slabMax(double a0, double a1, double alpha, double beta) {
+        if (alpha <= 0 && beta <= 0)
+            return 0;
+        return Math.max(term(alpha, Math.sin(a0)) + term(beta, Math.cos(a0)),
+                term(alpha, Math.sin(a1)) + term(beta, Math.cos(a1)));
+    }
+
+    /**
+     * Слагаемое k / |d|, при нулевом k равное нулю и на оси
+     *
+     * @param k числитель
+     * @param d знаменатель
+     * @return значение
+     */
+    private static double term(double k, double d) {
+        return k == 0 ? 0 : k / Math.abs(d);
+    }
+
+    /**
+     * Оценка по всем направлениям сразу
+     *
+     * @param w ширина прямоугольника
+     * @param h высота прямоугольника
+     * @return диагональ прямоугольника с запасом
+     */
+    static double any(double w, double h) {
+        double diagonal = Math.sqrt(w * w + h * h);
+        return withMargin(diagonal, diagonal);
+    }
+
+    /**
+     * Лежит ли угол a + kπ (для какого-либо целого k) в секторе [a0, a1]
+     *
+     * @param a0 начальный угол
+     * @param a1 конечный угол
+     * @param a  угол
+     * @return флаг
+     */
+    private static boolean containsAngle(double a0, double a1, double a) {
+        return Math.ceil((a0 - a) / Math.PI) <= Math.floor((a1 - a) / Math.PI);
+    }
+
+    /**
+     * Добавить запас на ошибки округления
+     *
+     * @param bound    оценка
+     * @param diagonal диагональ прямоугольника (масштаб задачи)
+     * @return оценка с запасом
+     */
+    static double withMargin(double bound, double diagonal) {
+        return bound + EPS * (Math.abs(bound) + diagonal + 1);
+    }
+}
@@ -0,0 +1,162 @@
+package solvers;
+
+import misc.Vector2d;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Отсечение прямых "параллельным" прямоугольником
+ */
+public class ChordClipper {
+    /**
+     * Левая граница прямоугольника
+     */
+    public final double left;
+    /**
+     * Нижняя граница прямоугольника
+     */
+    public final double bottom;
+    /**
+     * Правая граница прямоугольника
+     */
+    public final double right;
+    /**
+     * Верхняя граница прямоугольника
+     */
+    public final double top;
+
+    /**
+     * Конструктор отсечения
+     *
+     * @param left   левая граница
+     * @param bottom нижняя граница
+     * @param right  правая граница
+     * @param top    верхняя граница
+     */
+    public ChordClipper(double left, double bottom, double right, double top) {
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+        this.top = top;
+    }
+
+    /**
+     * Построить отсечение по двум противоположным вершинам прямоугольника
+     *
+     * @param a первая вершина
+     * @param c противоположная ей вершина
+     * @return отсечение
+     */
+    public static ChordClipper of(Vector2d a, Vector2d c) {
+        return new ChordClipper(min(a.x, c.x), min(a.y, c.y), max(a.x, c.x), max(a.y, c.y));
+    }
+
+    /**
+     * Длина отрезка прямой AB, лежащего внутри прямоугольника
+     *
+     * @param ax координата X точки A
+     * @param ay координата Y точки A
+     * @param bx координата X точки B
+     * @param by координата Y точки B
+     * @return длина отрезка или -1, если прямая не пересекает прямоугольник
+     */
+    public double length(double ax, double ay, double bx, double by) {
+        return clip(ax, ay, bx, by, null);
+    }
+
+    /**
+     * Точки пересечения прямой AB с прямоугольником
+     *
+     * @param a точка A
+     * @param b точка B
+     * @return массив из двух точек пересечения или null, если прямая не пересекает прямоугольник
+     */
+    public Vector2d[] cross(Vector2d a, Vector2d b) {
+        double[] out = new double[4];
+        if (clip(a.x, a.y, b.x, b.y, out) < 0)
+            return null;
+        return new Vector2d[]{new Vector2d(out[0], out[1]), new Vector2d(out[2], out[3])};
+    }
+
+    /**
+     * Отсечь прямую AB прямоугольником
+     * (одна и та же арифметика и для поиска длины, и для точек пересечения,
+     * чтобы все решатели получали побитово одинаковые длины)
+     *
+     * @param ax  координата X точки A
+     * @param ay  координата Y точки A
+     * @param bx  координата X точки B
+     * @param by  координата Y точки B
+     * @param out массив для координат точек пересечения {x1, y1, x2, y2}, может быть null
+     * @return длина отрезка или -1, если прямая не пересекает прямоугольник
+     */
+    private double clip(double ax, double ay, double bx, double by, double[] out) {
+        // совпадающие точки прямую не задают
+        if (ax == bx && ay == by)
+            return -1;
+        // случай, когда прямая параллельна ординате
+        if (ax == bx) {
+            if (ax < left || ax > right)
+                return -1;
+            return put(out, ax, bottom, ax, top);
+        }
+        // коэффициент наклона прямой и свободный член
+        double k = (ay - by) / (ax - bx);
+        double c = ay - ax * k;
+        // случай, когда прямая параллельна абсциссе
+        if (k == 0) {
+            if (ay < bottom || ay > top)
+                return -1;
+            return put(out, left, ay, right, ay);
+        }
+        double yLeft = k * left + c;
+        double yRight = k * right + c;
+        double xTop = (top - c) / k;
+        double xBottom = (bottom - c) / k;
+
+        boolean leftIn = yLeft <= top && yLeft >= bottom;
+        boolean rightIn = yRight <= top && yRight >= bottom;
+        boolean bottomIn = xBottom >= left && xBottom <= right;
+        boolean topIn = xTop >= left && xTop <= right;
+
+        if (leftIn) {
+            if (rightIn)
+                return put(out, left, yLeft, right, yRight);
+            if (bottomIn)
+                return put(out, left, yLeft, xBottom, bottom);
+            if (topIn)
+                return put(out, left, yLeft, xTop, top);
+        } else if (rightIn) {
+            if (bottomIn)
+                return put(out, right, yRight, xBottom, bottom);
+            if (topIn)
+                return put(out, right, yRight, xTop, top);
+        } else if (bottomIn && topIn) {
+            // без проверки верхней стороны прямая, задевшая угол, из-за округления
+            // получала хорду длиннее диагонали прямоугольника
+            return put(out, xBottom, bottom, xTop, top);
+        }
+        return -1;
+    }
+
+    /**
+     * Записать точки пересечения и вернуть длину отрезка между ними
+     *
+     * @param out массив для координат, может быть null
+     * @param x1  координата X первой точки
+     * @param y1  координата Y первой точки
+     * @param x2  координата X второй точки
+     * @param y2  координата Y второй точки
+     * @return длина отрезка
+     */
+    private static double put(double[] out, double x1, double y1, double x2, double y2) {
+        if (out != null) {
+            out[0] = x1;
+            out[1] = y1;
+            out[2] = x2;
+            out[3] = y2;
+        }
+        return Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+    }
+}
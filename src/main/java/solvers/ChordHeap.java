@@ -0,0 +1,174 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Ограниченная куча лучших хорд на примитивных массивах
+ * <p>
+ * Хранит не больше capacity хорд; в корне лежит худшая из них
+ * в смысле {@link Chord#isBetter(Chord)}, поэтому новая хорда
+ * сравнивается только с корнем и вытесняет его. Объекты хорд
+ * создаются только при выдаче результата
+ */
+public class ChordHeap {
+    /**
+     * Максимальное кол-во хорд
+     */
+    private final int capacity;
+    /**
+     * Длины хорд
+     */
+    private final double[] lengths;
+    /**
+     * Индексы первых точек
+     */
+    private final int[] is;
+    /**
+     * Индексы вторых точек
+     */
+    private final int[] js;
+    /**
+     * Кол-во хорд в куче
+     */
+    private int size;
+
+    /**
+     * Конструктор
+     *
+     * @param capacity максимальное кол-во хорд
+     */
+    public ChordHeap(int capacity) {
+        this.capacity = capacity;
+        lengths = new double[capacity];
+        is = new int[capacity];
+        js = new int[capacity];
+    }
+
+    /**
+     * Предложить хорду
+     *
+     * @param i      индекс первой точки
+     * @param j      индекс второй точки
+     * @param length длина хорды, -1, если хорды нет
+     */
+    public void offer(int i, int j, double length) {
+        if (length < 0 || capacity == 0)
+            return;
+        if (size < capacity) {
+            lengths[size] = length;
+            is[size] = i;
+            js[size] = j;
+            siftUp(size++);
+        } else if (isBetter(length, i, j, 0)) {
+            lengths[0] = length;
+            is[0] = i;
+            js[0] = j;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Длина, короче которой хорда в кучу уже не попадёт
+     *
+     * @return длина худшей хорды полной кучи, -1, пока куча не заполнена
+     */
+    public double floor() {
+        if (capacity == 0)
+            return Double.POSITIVE_INFINITY;
+        return size < capacity ? -1 : lengths[0];
+    }
+
+    /**
+     * Кол-во хорд в куче
+     *
+     * @return кол-во хорд
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Хорды кучи от лучшей к худшей
+     *
+     * @return массив хорд
+     */
+    public Chord[] toChords() {
+        Chord[] chords = new Chord[size];
+        for (int k = 0; k < size; k++)
+            chords[k] = new Chord(is[k], js[k], lengths[k]);
+        Arrays.sort(chords, (a, b) -> a.isBetter(b) ? -1 : b.isBetter(a) ? 1 : 0);
+        return chords;
+    }
+
+    /**
+     * Лучше ли хорда (length, i, j) хорды кучи в ячейке k
+     *
+     * @param length длина хорды
+     * @param i      индекс первой точки
+     * @param j      индекс второй точки
+     * @param k      ячейка кучи
+     * @return флаг
+     */
+    private boolean isBetter(double length, int i, int j, int k) {
+        if (length != lengths[k])
+            return length > lengths[k];
+        if (i != is[k])
+            return i < is[k];
+        return j < js[k];
+    }
+
+    /**
+     * Поднять хорду к корню, пока она хуже родителя
+     *
+     * @param k ячейка кучи
+     */
+    private void siftUp(int k) {
+        while (k > 0) {
+            int parent = (k - 1) / 2;
+            // в корне худшая хорда: родитель не должен быть лучше ребёнка
+            if (!isBetter(lengths[parent], is[parent], js[parent], k))
+                break;
+            swap(k, parent);
+            k = parent;
+        }
+    }
+
+    /**
+     * Опустить хорду от корня, пока она лучше кого-то из детей
+     *
+     * @param k ячейка кучи
+     */
+    private void siftDown(int k) {
+        while (true) {
+            int worst = k;
+            int left = 2 * k + 1;
+            int right = left + 1;
+            if (left < size && isBetter(lengths[worst], is[worst], js[worst], left))
+                worst = left;
+            if (right < size && isBetter(lengths[worst], is[worst], js[worst], right))
+                worst = right;
+            if (worst == k)
+                break;
+            swap(k, worst);
+            k = worst;
+        }
+    }
+
+    /**
+     * Поменять местами две ячейки кучи
+     *
+     * @param a первая ячейка
+     * @param b вторая ячейка
+     */
+    private void swap(int a, int b) {
+        double length = lengths[a];
+        lengths[a] = lengths[b];
+        lengths[b] = length;
+        int i = is[a];
+        is[a] = is[b];
+        is[b] = i;
+        int j = js[a];
+        js[a] = js[b];
+        js[b] = j;
+    }
+}
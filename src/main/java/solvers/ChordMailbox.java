@@ -0,0 +1,35 @@
+package solvers;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Почтовый ящик на одну хорду без блокировок
+ * <p>
+ * Решатель кладёт в ящик каждую улучшенную хорду, интерфейс забирает её
+ * при отрисовке кадра. Непрочитанная хорда просто заменяется новой: хорды
+ * только улучшаются, поэтому интерфейсу нужна лишь последняя
+ */
+public class ChordMailbox {
+    /**
+     * Ячейка ящика, null - пусто
+     */
+    private final AtomicReference<Chord> slot = new AtomicReference<>();
+
+    /**
+     * Положить хорду, заменив непрочитанную
+     *
+     * @param chord хорда
+     */
+    public void publish(Chord chord) {
+        slot.set(chord);
+    }
+
+    /**
+     * Забрать хорду
+     *
+     * @return последняя положенная хорда или null, если ящик пуст
+     */
+    public Chord take() {
+        return slot.getAndSet(null);
+    }
+}
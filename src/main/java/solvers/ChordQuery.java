@@ -0,0 +1,142 @@
+package solvers;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Запрос многих хорд за один проход: k самых длинных и все не короче порога
+ * <p>
+ * Пары ячеек квадродерева обходятся так же, как в {@link QuadTreeSolver},
+ * только отсекаются пары, оценка которых меньше и порога, и худшей хорды
+ * заполненной кучи ({@link ChordHeap}). Поэтому при небольших k и высоком
+ * пороге запрос стоит примерно как одно решение
+ */
+public class ChordQuery {
+    /**
+     * Сколько самых длинных хорд нужно, 0 - не нужны
+     */
+    private final int k;
+    /**
+     * Порог длины хорды, {@link Double#POSITIVE_INFINITY} - хорды по порогу не нужны
+     */
+    private final double minLength;
+
+    /**
+     * Конструктор запроса
+     *
+     * @param k         сколько самых длинных хорд нужно, 0 - не нужны
+     * @param minLength порог длины, {@link Double#POSITIVE_INFINITY} - хорды по порогу не нужны
+     */
+    public ChordQuery(int k, double minLength) {
+        this.k = Math.max(k, 0);
+        this.minLength = minLength;
+    }
+
+    /**
+     * Выполнить запрос
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return результат запроса
+     */
+    public Result run(PackedPoints points, ChordClipper clipper) {
+        long startTime = System.nanoTime();
+        ChordHeap heap = new ChordHeap(k);
+        // хорды не короче порога копим в примитивных массивах
+        int[] overI = new int[16];
+        int[] overJ = new int[16];
+        double[] overLength = new double[16];
+        int overCnt = 0;
+
+        int n = points.size();
+        if (n >= 2) {
+            double[] xs = points.xs();
+            double[] ys = points.ys();
+            int[] index = new int[n];
+            for (int i = 0; i < n; i++)
+                index[i] = i;
+            QuadTreeSolver.Node root = QuadTreeSolver.build(xs, ys, index, 0, n, 0);
+            double w = clipper.right - clipper.left;
+            double h = clipper.top - clipper.bottom;
+
+            PriorityQueue<QuadTreeSolver.CellPair> queue = new PriorityQueue<>();
+            queue.add(new QuadTreeSolver.CellPair(root, root, ChordBounds.any(w, h)));
+            while (!queue.isEmpty()) {
+                QuadTreeSolver.CellPair pair = queue.poll();
+                double floor = Math.min(heap.floor(), minLength);
+                // у всех оставшихся пар ячеек оценка не больше этой
+                if (pair.bound() < floor)
+                    break;
+                QuadTreeSolver.Node a = pair.a();
+                QuadTreeSolver.Node b = pair.b();
+                if (a.isLeaf() && b.isLeaf()) {
+                    for (int p = a.start; p < a.end; p++) {
+                        for (int q = a == b ? p + 1 : b.start; q < b.end; q++) {
+                            int i = Math.min(index[p], index[q]);
+                            int j = Math.max(index[p], index[q]);
+                            double length = clipper.length(xs[i], ys[i], xs[j], ys[j]);
+                            if (length < 0)
+                                continue;
+                            heap.offer(i, j, length);
+                            if (length >= minLength) {
+                                if (overCnt == overI.length) {
+                                    overI = Arrays.copyOf(overI, overCnt * 2);
+                                    overJ = Arrays.copyOf(overJ, overCnt * 2);
+                                    overLength = Arrays.copyOf(overLength, overCnt * 2);
+                                }
+                                overI[overCnt] = i;
+                                overJ[overCnt] = j;
+                                overLength[overCnt++] = length;
+                            }
+                        }
+                    }
+                } else if (a == b) {
+                    for (int c = 0; c < a.children.size(); c++)
+                        for (int d = c; d < a.children.size(); d++)
+                            offer(queue, a.children.get(c), a.children.get(d), clipper, floor);
+                } else {
+                    boolean splitA = !a.isLeaf() && (b.isLeaf() || a.extent() >= b.extent());
+                    if (splitA) {
+                        for (QuadTreeSolver.Node child : a.children)
+                            offer(queue, child, b, clipper, floor);
+                    } else {
+                        for (QuadTreeSolver.Node child : b.children)
+                            offer(queue, a, child, clipper, floor);
+                    }
+                }
+            }
+        }
+
+        Chord[] over = new Chord[overCnt];
+        for (int c = 0; c < overCnt; c++)
+            over[c] = new Chord(overI[c], overJ[c], overLength[c]);
+        Arrays.sort(over, (x, y) -> x.isBetter(y) ? -1 : y.isBetter(x) ? 1 : 0);
+        return new Result(heap.toChords(), over, System.nanoTime() - startTime);
+    }
+
+    /**
+     * Поставить пару ячеек в очередь, если её оценка не меньше нижней границы
+     *
+     * @param queue   очередь
+     * @param a       первая ячейка
+     * @param b       вторая ячейка
+     * @param clipper прямоугольник
+     * @param floor   нижняя граница нужных хорд
+     */
+    private static void offer(PriorityQueue<QuadTreeSolver.CellPair> queue, QuadTreeSolver.Node a,
+                              QuadTreeSolver.Node b, ChordClipper clipper, double floor) {
+        double bound = QuadTreeSolver.bound(a, b, clipper);
+        if (bound >= floor)
+            queue.add(new QuadTreeSolver.CellPair(a, b, bound));
+    }
+
+    /**
+     * Результат запроса
+     *
+     * @param top   самые длинные хорды от лучшей к худшей
+     * @param over  все хорды не короче порога от лучшей к худшей
+     * @param nanos время запроса в нс
+     */
+    public record Result(Chord[] top, Chord[] over, long nanos) {
+    }
+}
@@ -0,0 +1,123 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Точки, лежащие на сетке: координаты хранятся целыми номерами узлов
+ * <p>
+ * Для каждой оси ищутся начало и шаг, с которыми все координаты - целые
+ * кратные шага. Прямые, направления и принадлежность точки прямой не меняются
+ * при растяжении осей, поэтому на номерах узлов их можно проверять точно
+ * в целых числах
+ */
+public class GridPoints {
+    /**
+     * Допустимое отклонение номера узла от целого
+     */
+    static final double SNAP_EPS = 1e-6;
+    /**
+     * Максимальный по модулю номер узла: разности номеров умещаются в 31 бит,
+     * а их попарные произведения - в long
+     */
+    static final long MAX_INDEX = 1L << 30;
+    /**
+     * На сколько частей ещё пробовать делить наименьший зазор между координатами
+     */
+    private static final int MAX_DIVISOR = 12;
+    /**
+     * Номера узлов по X
+     */
+    private final long[] xs;
+    /**
+     * Номера узлов по Y
+     */
+    private final long[] ys;
+
+    /**
+     * Конструктор
+     *
+     * @param xs номера узлов по X
+     * @param ys номера узлов по Y
+     */
+    private GridPoints(long[] xs, long[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Разложить точки по сетке
+     *
+     * @param points упакованные координаты точек
+     * @return точки сетки или null, если точки на сетку не ложатся
+     */
+    public static GridPoints of(PackedPoints points) {
+        int n = points.size();
+        long[] xs = snap(Arrays.copyOf(points.xs(), n));
+        if (xs == null)
+            return null;
+        long[] ys = snap(Arrays.copyOf(points.ys(), n));
+        if (ys == null)
+            return null;
+        return new GridPoints(xs, ys);
+    }
+
+    /**
+     * Перевести координаты одной оси в номера узлов
+     *
+     * @param coords координаты
+     * @return номера узлов или null, если подходящего шага нет
+     */
+    private static long[] snap(double[] coords) {
+        long[] result = new long[coords.length];
+        if (coords.length == 0)
+            return result;
+        double[] sorted = coords.clone();
+        Arrays.sort(sorted);
+        double origin = sorted[0];
+        // наименьший ненулевой зазор между соседними координатами
+        double gap = Double.POSITIVE_INFINITY;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] > sorted[i - 1])
+                gap = Math.min(gap, sorted[i] - sorted[i - 1]);
+        }
+        // все координаты равны
+        if (gap == Double.POSITIVE_INFINITY)
+            return result;
+        double span = sorted[sorted.length - 1] - origin;
+        divisors:
+        for (int divisor = 1; divisor <= MAX_DIVISOR; divisor++) {
+            // шаг уточняем по всему размаху, а не по одному зазору
+            long steps = Math.round(span / (gap / divisor));
+            if (steps > MAX_INDEX)
+                return null;
+            double step = span / steps;
+            for (int i = 0; i < coords.length; i++) {
+                double t = (coords[i] - origin) / step;
+                long index = Math.round(t);
+                if (Math.abs(t - index) > SNAP_EPS)
+                    continue divisors;
+                result[i] = index;
+            }
+            return result;
+        }
+        return null;
+    }
+
+    /**
+     * Номера узлов по X
+     *
+     * @return массив номеров
+     */
+    public long[] xs() {
+        return xs;
+    }
+
+    /**
+     * Номера узлов по Y
+     *
+     * @return массив номеров
+     */
+    public long[] ys() {
+        return ys;
+    }
+}
@@ -0,0 +1,198 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Точный перебор прямых для точек на сетке
+ * <p>
+ * Точки переводятся в целые номера узлов ({@link GridPoints}), и дальше
+ * направления сравниваются только в целых числах: два направления (dx, dy)
+ * совпадают, если совпадают их сокращённые пары, то есть dx1 * dy2 == dx2 * dy1.
+ * Прямые перебираются без повторов так же, как в {@link LineDedupSolver},
+ * но без погрешности, а в double считается только длина хорды - один раз
+ * на прямую, по исходным координатам пары. Если точки на сетку не ложатся,
+ * решение передаётся {@link LineDedupSolver}
+ */
+public class GridSolver implements Solver {
+    /**
+     * Статистика последнего решения
+     */
+    private LineDedupSolver.LineStats lastStats;
+    /**
+     * Сокращённая пара направления прямой ответа в шагах сетки
+     */
+    private long[] lastDirection;
+    /**
+     * Лежали ли точки последнего решения на сетке
+     */
+    private boolean lastOnGrid;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая каждую опорную точку
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        GridPoints grid = GridPoints.of(points);
+        lastOnGrid = grid != null;
+        lastDirection = null;
+        if (grid == null) {
+            LineDedupSolver fallback = new LineDedupSolver();
+            Chord chord = fallback.solve(points, clipper, progress);
+            lastStats = fallback.getLastStats();
+            return chord;
+        }
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        long[] gx = grid.xs();
+        long[] gy = grid.ys();
+        // таблица открытой адресации, ячейки текущей точки помечены её номером + 1
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(2 * n, 2) - 1);
+        int mask = (1 << bits) - 1;
+        long[] slotKeys = new long[mask + 1];
+        int[] slotPoints = new int[mask + 1];
+        int[] slotStamps = new int[mask + 1];
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        long lines = 0;
+        long coincident = 0;
+
+        anchors:
+        for (int i = 0; i < n; i++) {
+            if (progress != null)
+                progress.advanceRow(i, n);
+            long ax = gx[i];
+            long ay = gy[i];
+            int stamp = i + 1;
+            for (int j = 0; j < n; j++) {
+                if (j == i)
+                    continue;
+                long dx = gx[j] - ax;
+                long dy = gy[j] - ay;
+                if (dx == 0 && dy == 0) {
+                    // все прямые через i уже перебраны из совпадающей с ней точки
+                    if (j < i)
+                        continue anchors;
+                    coincident++;
+                    continue;
+                }
+                // направление без учёта знака
+                if (dy < 0 || (dy == 0 && dx < 0)) {
+                    dx = -dx;
+                    dy = -dy;
+                }
+                // у пропорциональных пар частное одно и то же рациональное число, а деление
+                // в double округляет его одинаково, поэтому ключ у них совпадает
+                long key = Double.doubleToRawLongBits((double) dy / (Math.abs(dx) + dy)) ^ (dx < 0 ? Long.MIN_VALUE : 0);
+                int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - bits)) & mask;
+                boolean seen = false;
+                while (slotStamps[slot] == stamp) {
+                    int other = slotPoints[slot];
+                    // разные направления могут округлиться в один ключ, проверяем точно
+                    if (slotKeys[slot] == key && (gx[other] - ax) * dy == (gy[other] - ay) * dx) {
+                        seen = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (seen)
+                    continue;
+                slotStamps[slot] = stamp;
+                slotKeys[slot] = key;
+                slotPoints[slot] = j;
+                // прямая через меньшую точку уже перебрана
+                if (j < i)
+                    continue;
+                lines++;
+                // длина считается по самой паре, как в остальных решателях: по ней строятся
+                // точки пересечения и проверяется кэш
+                double length = clipper.length(xs[i], ys[i], xs[j], ys[j]);
+                // равные хорды разбираем как в Chord.isBetter
+                if (length > lengthMax || (length == lengthMax && length >= 0
+                        && (i < iMax || (i == iMax && j < jMax)))) {
+                    lengthMax = length;
+                    iMax = i;
+                    jMax = j;
+                }
+            }
+        }
+
+        int[] winningLine = new int[0];
+        if (iMax >= 0) {
+            long dx = gx[jMax] - gx[iMax];
+            long dy = gy[jMax] - gy[iMax];
+            int[] onLine = new int[n];
+            int cnt = 0;
+            for (int k = 0; k < n; k++) {
+                if ((gx[k] - gx[iMax]) * dy == (gy[k] - gy[iMax]) * dx)
+                    onLine[cnt++] = k;
+            }
+            winningLine = Arrays.copyOf(onLine, cnt);
+            long g = gcd(Math.abs(dx), Math.abs(dy));
+            lastDirection = new long[]{dx / g, dy / g};
+        }
+        lastStats = new LineDedupSolver.LineStats((long) n * (n - 1) / 2, lines, coincident, winningLine);
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+
+    /**
+     * Наибольший общий делитель
+     *
+     * @param a первое число, не меньше нуля
+     * @param b второе число, не меньше нуля
+     * @return НОД
+     */
+    static long gcd(long a, long b) {
+        while (b != 0) {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+        return a;
+    }
+
+    /**
+     * Статистика последнего решения
+     *
+     * @return статистика или null, если решения ещё не было
+     */
+    public LineDedupSolver.LineStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Сокращённая пара (dx, dy) направления прямой ответа в шагах сетки
+     *
+     * @return пара или null, если точки не лежали на сетке или хорды нет
+     */
+    public long[] getLastDirection() {
+        return lastDirection;
+    }
+
+    /**
+     * Лежали ли точки последнего решения на сетке
+     *
+     * @return флаг
+     */
+    public boolean isLastOnGrid() {
+        return lastOnGrid;
+    }
+}
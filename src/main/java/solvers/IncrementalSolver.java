@@ -0,0 +1,214 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Поддержка лучшей хорды при добавлении и удалении точек
+ * <p>
+ * Для каждой точки хранится её лучший партнёр: пара с ней, высекающая самую
+ * длинную хорду (равные разбираются как в {@link Chord#isBetter}). Добавление
+ * точки считает только n новых пар, удаление пересчитывает лишь те точки,
+ * чьим лучшим партнёром была удалённая. Индексы совпадают с позициями
+ * в списке точек задачи и сдвигаются при удалении так же, как в нём
+ */
+public class IncrementalSolver {
+    /**
+     * Отсечение прямоугольником
+     */
+    private final ChordClipper clipper;
+    /**
+     * Координаты точек
+     */
+    private double[] xs = new double[16];
+    /**
+     * Координаты точек
+     */
+    private double[] ys = new double[16];
+    /**
+     * Лучший партнёр каждой точки, -1, если его нет
+     */
+    private int[] partner = new int[16];
+    /**
+     * Длина хорды с лучшим партнёром
+     */
+    private double[] partnerLength = new double[16];
+    /**
+     * Кол-во точек
+     */
+    private int size;
+
+    /**
+     * Конструктор
+     *
+     * @param clipper отсечение прямоугольником
+     */
+    public IncrementalSolver(ChordClipper clipper) {
+        this.clipper = clipper;
+    }
+
+    /**
+     * Заполнить набор точек заново (полный перебор пар)
+     *
+     * @param points упакованные координаты точек
+     */
+    public void reset(PackedPoints points) {
+        size = 0;
+        ensureCapacity(points.size());
+        System.arraycopy(points.xs(), 0, xs, 0, points.size());
+        System.arraycopy(points.ys(), 0, ys, 0, points.size());
+        size = points.size();
+        Arrays.fill(partner, 0, size, -1);
+        Arrays.fill(partnerLength, 0, size, -1);
+        for (int i = 0; i < size; i++)
+            for (int j = i + 1; j < size; j++)
+                offer(i, j, clipper.length(xs[i], ys[i], xs[j], ys[j]));
+    }
+
+    /**
+     * Добавить точку в конец: считаются только пары с ней
+     *
+     * @param x координата X
+     * @param y координата Y
+     */
+    public void add(double x, double y) {
+        ensureCapacity(size + 1);
+        int n = size++;
+        xs[n] = x;
+        ys[n] = y;
+        partner[n] = -1;
+        partnerLength[n] = -1;
+        for (int i = 0; i < n; i++)
+            offer(i, n, clipper.length(xs[i], ys[i], x, y));
+    }
+
+    /**
+     * Удалить точку: пересчитываются только точки, для которых она была лучшим партнёром
+     *
+     * @param index индекс точки
+     */
+    public void remove(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        int tail = size - index - 1;
+        System.arraycopy(xs, index + 1, xs, index, tail);
+        System.arraycopy(ys, index + 1, ys, index, tail);
+        System.arraycopy(partner, index + 1, partner, index, tail);
+        System.arraycopy(partnerLength, index + 1, partnerLength, index, tail);
+        size--;
+        // индексы после удалённой сдвигаются на 1, относительный порядок пар не меняется
+        boolean[] lost = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            if (partner[i] == index)
+                lost[i] = true;
+            else if (partner[i] > index)
+                partner[i]--;
+        }
+        for (int i = 0; i < size; i++) {
+            if (!lost[i])
+                continue;
+            partner[i] = -1;
+            partnerLength[i] = -1;
+            for (int j = 0; j < size; j++) {
+                if (j == i)
+                    continue;
+                double length = clipper.length(xs[Math.min(i, j)], ys[Math.min(i, j)], xs[Math.max(i, j)], ys[Math.max(i, j)]);
+                if (isBetter(length, i, j, partnerLength[i], i, partner[i])) {
+                    partnerLength[i] = length;
+                    partner[i] = j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Лучшая хорда среди всех пар
+     *
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    public Chord best() {
+        Chord best = Chord.NONE;
+        for (int i = 0; i < size; i++) {
+            if (partner[i] < 0)
+                continue;
+            Chord chord = new Chord(Math.min(i, partner[i]), Math.max(i, partner[i]), partnerLength[i]);
+            if (chord.isBetter(best))
+                best = chord;
+        }
+        return best;
+    }
+
+    /**
+     * Получить отсечение прямоугольником
+     *
+     * @return отсечение
+     */
+    public ChordClipper getClipper() {
+        return clipper;
+    }
+
+    /**
+     * Кол-во точек
+     *
+     * @return кол-во точек
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Учесть пару (i, j), i < j, для обеих её точек
+     *
+     * @param i      первая точка
+     * @param j      вторая точка
+     * @param length длина хорды
+     */
+    private void offer(int i, int j, double length) {
+        if (isBetter(length, i, j, partnerLength[i], i, partner[i])) {
+            partnerLength[i] = length;
+            partner[i] = j;
+        }
+        if (isBetter(length, j, i, partnerLength[j], j, partner[j])) {
+            partnerLength[j] = length;
+            partner[j] = i;
+        }
+    }
+
+    /**
+     * Лучше ли хорда (a, b) длины length хорды (c, d) длины other
+     * (порядок точек в паре не важен, сравнение как в {@link Chord#isBetter})
+     *
+     * @param length длина первой хорды
+     * @param a      точка первой хорды
+     * @param b      точка первой хорды
+     * @param other  длина второй хорды
+     * @param c      точка второй хорды
+     * @param d      точка второй хорды, -1, если второй хорды нет
+     * @return флаг
+     */
+    private static boolean isBetter(double length, int a, int b, double other, int c, int d) {
+        if (length < 0)
+            return false;
+        if (d < 0)
+            return true;
+        if (length != other)
+            return length > other;
+        if (Math.min(a, b) != Math.min(c, d))
+            return Math.min(a, b) < Math.min(c, d);
+        return Math.max(a, b) < Math.max(c, d);
+    }
+
+    /**
+     * Обеспечить ёмкость массивов
+     *
+     * @param capacity нужная ёмкость
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= xs.length)
+            return;
+        int newCapacity = Math.max(capacity, xs.length * 2);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        partner = Arrays.copyOf(partner, newCapacity);
+        partnerLength = Arrays.copyOf(partnerLength, newCapacity);
+    }
+}
@@ -0,0 +1,198 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Перебор прямых без повторов
+ * <p>
+ * Если на одной прямой лежат m точек, полный перебор отсекает её
+ * прямоугольником m(m-1)/2 раз. Здесь каноническим ключом прямой служат
+ * её точка с наименьшим индексом и направление из неё. Для каждой точки i
+ * остальные точки раскладываются в хэш-таблицу по направлению из i,
+ * и точки одного направления задают одну прямую. Прямая отсекается один раз,
+ * по своей наименьшей по индексам паре, и только если все её точки не меньше i
+ * (иначе она уже перебрана из меньшей точки)
+ * <p>
+ * Точки считаются лежащими на одной прямой с относительной погрешностью
+ * {@link #COLLINEAR_EPS}: координаты сетки {@code addRandomPoints} не представимы
+ * в double точно, и после округления точки одной прямой сетки в точности
+ * на одной прямой уже не лежат
+ */
+public class LineDedupSolver implements Solver {
+    /**
+     * Относительная погрешность проверки, что три точки лежат на одной прямой
+     */
+    static final double COLLINEAR_EPS = 1e-12;
+    /**
+     * Масштаб, с которым направление округляется до ключа хэш-таблицы
+     */
+    private static final double KEY_SCALE = 0x1p40;
+    /**
+     * Статистика последнего решения
+     */
+    private LineStats lastStats;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая каждую опорную точку
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        // таблица открытой адресации, ячейки текущей точки помечены её номером + 1,
+        // поэтому между точками таблицу не нужно очищать
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(2 * n, 2) - 1);
+        int mask = (1 << bits) - 1;
+        long[] slotKeys = new long[mask + 1];
+        int[] slotPoints = new int[mask + 1];
+        int[] slotStamps = new int[mask + 1];
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        long lines = 0;
+        long coincident = 0;
+
+        anchors:
+        for (int i = 0; i < n; i++) {
+            if (progress != null)
+                progress.advanceRow(i, n);
+            double ax = xs[i];
+            double ay = ys[i];
+            int stamp = i + 1;
+            // точки j < i идут первыми, поэтому первая точка j > i
+            // нового направления - наименьшая пара прямой
+            for (int j = 0; j < n; j++) {
+                if (j == i)
+                    continue;
+                double dx = xs[j] - ax;
+                double dy = ys[j] - ay;
+                if (dx == 0 && dy == 0) {
+                    // все прямые через i уже перебраны из совпадающей с ней точки
+                    if (j < i)
+                        continue anchors;
+                    coincident++;
+                    continue;
+                }
+                // направление без учёта знака
+                if (dy < 0 || (dy == 0 && dx < 0)) {
+                    dx = -dx;
+                    dy = -dy;
+                }
+                long key = (long) ((dx >= 0 ? dy / (dx + dy) : 2 - dy / (dy - dx)) * KEY_SCALE);
+                int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - bits)) & mask;
+                boolean seen = false;
+                while (slotStamps[slot] == stamp) {
+                    int other = slotPoints[slot];
+                    if (slotKeys[slot] == key && isCollinear(ax, ay, xs[other], ys[other], xs[j], ys[j])) {
+                        seen = true;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (seen)
+                    continue;
+                slotStamps[slot] = stamp;
+                slotKeys[slot] = key;
+                slotPoints[slot] = j;
+                // прямая через меньшую точку уже перебрана
+                if (j < i)
+                    continue;
+                lines++;
+                double length = clipper.length(ax, ay, xs[j], ys[j]);
+                // равные хорды разбираем как в Chord.isBetter
+                if (length > lengthMax || (length == lengthMax && length >= 0
+                        && (i < iMax || (i == iMax && j < jMax)))) {
+                    lengthMax = length;
+                    iMax = i;
+                    jMax = j;
+                }
+            }
+        }
+
+        long pairs = (long) n * (n - 1) / 2;
+        int[] winningLine = new int[0];
+        if (iMax >= 0) {
+            int[] onLine = new int[n];
+            int cnt = 0;
+            for (int k = 0; k < n; k++) {
+                if (isCollinear(xs[iMax], ys[iMax], xs[jMax], ys[jMax], xs[k], ys[k]))
+                    onLine[cnt++] = k;
+            }
+            winningLine = Arrays.copyOf(onLine, cnt);
+        }
+        lastStats = new LineStats(pairs, lines, coincident, winningLine);
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+
+    /**
+     * Лежат ли три точки на одной прямой с относительной погрешностью {@link #COLLINEAR_EPS}
+     *
+     * @param ax координата X точки a
+     * @param ay координата Y точки a
+     * @param bx координата X точки b
+     * @param by координата Y точки b
+     * @param cx координата X точки c
+     * @param cy координата Y точки c
+     * @return флаг
+     */
+    static boolean isCollinear(double ax, double ay, double bx, double by, double cx, double cy) {
+        double left = (bx - ax) * (cy - ay);
+        double right = (by - ay) * (cx - ax);
+        return Math.abs(left - right) <= COLLINEAR_EPS * (Math.abs(left) + Math.abs(right));
+    }
+
+    /**
+     * Статистика последнего решения
+     *
+     * @return статистика или null, если решения ещё не было
+     */
+    public LineStats getLastStats() {
+        return lastStats;
+    }
+
+    /**
+     * Статистика перебора прямых
+     *
+     * @param pairs       кол-во пар точек
+     * @param lines       кол-во различных прямых, отсечённых прямоугольником
+     * @param coincident  кол-во пар совпадающих точек, прямых не задающих
+     * @param winningLine индексы всех точек, лежащих на прямой ответа
+     */
+    public record LineStats(long pairs, long lines, long coincident, int[] winningLine) {
+        /**
+         * Сколько пар задавали уже перебранную прямую
+         *
+         * @return кол-во пропущенных повторов
+         */
+        public long skipped() {
+            return pairs - lines - coincident;
+        }
+
+        /**
+         * Сколько пар точек лежит на прямой ответа
+         *
+         * @return кол-во пар
+         */
+        public long winningPairs() {
+            return (long) winningLine.length * (winningLine.length - 1) / 2;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package solvers;
+
+import misc.Vector2d;
+
+import java.util.Arrays;
+
+/**
+ * Индекс прямых, заданных парами точек, для многих прямоугольников
+ * <p>
+ * Квадродерево над точками строится один раз и дальше только читается,
+ * поэтому запросы с разными прямоугольниками можно выполнять одновременно
+ * из разных потоков. Каждый запрос обходит пары ячеек по убыванию оценки
+ * хорды, как {@link QuadTreeSolver}
+ */
+public class LineIndex {
+    /**
+     * Координаты X
+     */
+    private final double[] xs;
+    /**
+     * Координаты Y
+     */
+    private final double[] ys;
+    /**
+     * Кол-во точек
+     */
+    private final int size;
+    /**
+     * Индексы точек в порядке ячеек дерева
+     */
+    private final int[] index;
+    /**
+     * Корень дерева, null, если точек меньше двух
+     */
+    private final QuadTreeSolver.Node root;
+
+    /**
+     * Построить индекс
+     *
+     * @param points упакованные координаты точек, после построения
+     *               индекс не зависит от их дальнейших изменений
+     */
+    public LineIndex(PackedPoints points) {
+        size = points.size();
+        xs = Arrays.copyOf(points.xs(), size);
+        ys = Arrays.copyOf(points.ys(), size);
+        index = new int[size];
+        for (int i = 0; i < size; i++)
+            index[i] = i;
+        root = size < 2 ? null : QuadTreeSolver.build(xs, ys, index, 0, size, 0);
+    }
+
+    /**
+     * Найти самую длинную хорду для прямоугольника
+     *
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    public Chord query(ChordClipper clipper) {
+        if (root == null)
+            return Chord.NONE;
+        return QuadTreeSolver.search(root, index, xs, ys, clipper, null);
+    }
+
+    /**
+     * Получить точку
+     *
+     * @param i индекс точки
+     * @return координаты
+     */
+    public Vector2d get(int i) {
+        return new Vector2d(xs[i], ys[i]);
+    }
+
+    /**
+     * Координаты X
+     *
+     * @return массив координат, не меняется
+     */
+    double[] xs() {
+        return xs;
+    }
+
+    /**
+     * Координаты Y
+     *
+     * @return массив координат, не меняется
+     */
+    double[] ys() {
+        return ys;
+    }
+
+    /**
+     * Кол-во точек
+     *
+     * @return кол-во точек
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,197 @@
+package solvers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Точки в двоичном файле, отображённом в память
+ * <p>
+ * Формат файла: заголовок из {@link #HEADER_BYTES} байт (сигнатура, версия,
+ * кол-во точек), затем пары координат x, y в double, little-endian.
+ * Файл отображается кусками по {@link #SEGMENT_POINTS} точек (размер одного
+ * отображения ограничен 2 ГБ), координаты остаются вне кучи и читаются
+ * блоками в массивы вызывающего
+ */
+public class MappedPoints implements AutoCloseable {
+    /**
+     * Сигнатура файла ("CHPT")
+     */
+    static final int MAGIC = 0x43485054;
+    /**
+     * Версия формата
+     */
+    static final int VERSION = 1;
+    /**
+     * Размер заголовка в байтах
+     */
+    static final int HEADER_BYTES = 16;
+    /**
+     * Байт на точку
+     */
+    static final int POINT_BYTES = 16;
+    /**
+     * Точек в одном отображении (1 ГБ)
+     */
+    static final int SEGMENT_POINTS = 1 << 26;
+    /**
+     * Сколько байт записывать за раз при создании файла
+     */
+    private static final int WRITE_CHUNK = 1 << 16;
+    /**
+     * Сколько точек копировать из отображения за раз
+     */
+    private static final int READ_CHUNK = 2048;
+    /**
+     * Буфер чтения потока: координаты в файле идут парами x, y
+     */
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[2 * READ_CHUNK]);
+    /**
+     * Канал файла
+     */
+    private final FileChannel channel;
+    /**
+     * Отображения кусков файла
+     */
+    private final DoubleBuffer[] segments;
+    /**
+     * Кол-во точек
+     */
+    private final int size;
+
+    /**
+     * Точки отображённого файла
+     *
+     * @param channel  канал файла
+     * @param segments отображения кусков файла
+     * @param size     кол-во точек
+     */
+    private MappedPoints(FileChannel channel, DoubleBuffer[] segments, int size) {
+        this.channel = channel;
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Открыть файл точек
+     *
+     * @param path путь к файлу
+     * @return отображённые точки
+     * @throws IOException если файл не удалось прочитать или он другого формата
+     */
+    public static MappedPoints open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    break;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException("файл " + path + " не является файлом точек");
+            long count = header.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE || HEADER_BYTES + count * POINT_BYTES > channel.size())
+                throw new IOException("файл " + path + " повреждён: точек " + count);
+            int n = (int) count;
+            DoubleBuffer[] segments = new DoubleBuffer[(n + SEGMENT_POINTS - 1) / SEGMENT_POINTS];
+            for (int s = 0; s < segments.length; s++) {
+                long from = (long) s * SEGMENT_POINTS;
+                long points = Math.min(SEGMENT_POINTS, n - from);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + from * POINT_BYTES, points * POINT_BYTES);
+                segments[s] = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+            return new MappedPoints(channel, segments, n);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Записать точки в файл
+     *
+     * @param path   путь к файлу
+     * @param points точки
+     * @throws IOException если файл не удалось записать
+     */
+    public static void write(Path path, PackedPoints points) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(points.size());
+            double[] xs = points.xs();
+            double[] ys = points.ys();
+            for (int i = 0; i < points.size(); i++) {
+                if (buffer.remaining() < POINT_BYTES)
+                    drain(channel, buffer);
+                buffer.putDouble(xs[i]).putDouble(ys[i]);
+            }
+            drain(channel, buffer);
+        }
+    }
+
+    /**
+     * Записать накопленные байты в канал
+     *
+     * @param channel канал
+     * @param buffer  буфер с данными
+     * @throws IOException если запись не удалась
+     */
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Прочитать блок точек
+     *
+     * @param from  индекс первой точки
+     * @param count кол-во точек
+     * @param xs    массив для координат X (не короче count)
+     * @param ys    массив для координат Y (не короче count)
+     */
+    public void read(int from, int count, double[] xs, double[] ys) {
+        double[] scratch = SCRATCH.get();
+        for (int k = 0; k < count; ) {
+            int index = from + k;
+            DoubleBuffer segment = segments[index / SEGMENT_POINTS];
+            int offset = (index % SEGMENT_POINTS) * 2;
+            int chunk = Math.min(Math.min(count - k, READ_CHUNK), SEGMENT_POINTS - index % SEGMENT_POINTS);
+            // копируем подряд по возрастанию адресов: ядро успевает подкачивать страницы заранее
+            segment.get(offset, scratch, 0, 2 * chunk);
+            for (int c = 0; c < chunk; c++) {
+                xs[k + c] = scratch[2 * c];
+                ys[k + c] = scratch[2 * c + 1];
+            }
+            k += chunk;
+        }
+    }
+
+    /**
+     * Получить кол-во точек
+     *
+     * @return кол-во точек
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Закрыть файл
+     *
+     * @throws IOException если канал не удалось закрыть
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
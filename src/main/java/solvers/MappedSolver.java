@@ -0,0 +1,155 @@
+package solvers;
+
+import misc.PageFaults;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Перебор пар точек файла, отображённого в память, без загрузки всех точек в кучу
+ * <p>
+ * Точки читаются блоками по {@link #TILE} штук: для каждой строки блоков
+ * поток держит в куче ровно два блока и по очереди подкачивает все следующие
+ * блоки файла, читая их по возрастанию адресов. Поэтому расход кучи
+ * не зависит от размера файла, а строки блоков разбираются параллельно
+ */
+public class MappedSolver {
+    /**
+     * Кол-во точек в блоке (два блока по 2 * 8 * TILE байт помещаются в L2)
+     */
+    static final int TILE = 4096;
+
+    /**
+     * Результат решения
+     *
+     * @param chord       лучшая хорда или {@link Chord#NONE}
+     * @param bytesRead   сколько байт координат прочитано из отображения
+     * @param readNanos   суммарное время чтения блоков во всех потоках в нс
+     * @param nanos       время решения в нс
+     * @param minorFaults малые страничные прерывания за решение, -1, если неизвестно
+     * @param majorFaults большие страничные прерывания (чтение с диска) за решение, -1, если неизвестно
+     */
+    public record Result(Chord chord, long bytesRead, long readNanos, long nanos, long minorFaults,
+                         long majorFaults) {
+        /**
+         * Скорость последовательного чтения (без времени перебора пар)
+         *
+         * @return МБ в секунду на поток
+         */
+        public double readMegabytesPerSecond() {
+            return readNanos == 0 ? 0 : bytesRead * 1e9 / readNanos / (1 << 20);
+        }
+
+        /**
+         * Частота страничных прерываний
+         *
+         * @return прерываний в секунду, -1, если неизвестно
+         */
+        public double faultsPerSecond() {
+            if (minorFaults < 0 || nanos == 0)
+                return -1;
+            return (minorFaults + majorFaults) * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  точки файла
+     * @param clipper отсечение прямоугольником
+     * @return результат решения
+     */
+    public Result solve(MappedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая перебранные пары после каждой пары блоков
+     *
+     * @param points   точки файла
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return результат решения
+     */
+    public Result solve(MappedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        int tiles = (n + TILE - 1) / TILE;
+        LongAdder bytesRead = new LongAdder();
+        LongAdder readNanos = new LongAdder();
+        long[] faultsBefore = PageFaults.sample();
+        long startTime = System.nanoTime();
+        Chord best = IntStream.range(0, tiles).parallel()
+                .mapToObj(tile -> solveRow(points, clipper, tile, bytesRead, readNanos, progress))
+                .reduce(Chord.NONE, Chord::best);
+        long nanos = System.nanoTime() - startTime;
+        long[] faultsAfter = PageFaults.sample();
+        boolean counted = faultsBefore != null && faultsAfter != null;
+        return new Result(best, bytesRead.sum(), readNanos.sum(), nanos,
+                counted ? faultsAfter[0] - faultsBefore[0] : -1,
+                counted ? faultsAfter[1] - faultsBefore[1] : -1);
+    }
+
+    /**
+     * Перебрать пары строки блоков: блок ti против себя и всех следующих блоков
+     *
+     * @param points    точки файла
+     * @param clipper   отсечение прямоугольником
+     * @param ti        номер блока строки
+     * @param bytesRead счётчик прочитанных байт
+     * @param readNanos счётчик времени чтения
+     * @param progress  ход решения, null - не отмечать
+     * @return лучшая хорда строки или {@link Chord#NONE}
+     */
+    private static Chord solveRow(MappedPoints points, ChordClipper clipper, int ti,
+                                  LongAdder bytesRead, LongAdder readNanos, SolveProgress progress) {
+        int n = points.size();
+        int iFrom = ti * TILE;
+        int iCount = Math.min(TILE, n - iFrom);
+        double[] ax = new double[TILE];
+        double[] ay = new double[TILE];
+        double[] bx = new double[TILE];
+        double[] by = new double[TILE];
+        long startTime = System.nanoTime();
+        points.read(iFrom, iCount, ax, ay);
+        long readTime = System.nanoTime() - startTime;
+        long readBytes = (long) iCount * MappedPoints.POINT_BYTES;
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        for (int jFrom = iFrom; jFrom < n; jFrom += TILE) {
+            int jCount = Math.min(TILE, n - jFrom);
+            boolean diagonal = jFrom == iFrom;
+            if (!diagonal) {
+                startTime = System.nanoTime();
+                points.read(jFrom, jCount, bx, by);
+                readTime += System.nanoTime() - startTime;
+                readBytes += (long) jCount * MappedPoints.POINT_BYTES;
+            }
+            double[] xs = diagonal ? ax : bx;
+            double[] ys = diagonal ? ay : by;
+            long pairs = 0;
+            for (int a = 0; a < iCount; a++) {
+                double x = ax[a];
+                double y = ay[a];
+                int bStart = diagonal ? a + 1 : 0;
+                pairs += jCount - bStart;
+                for (int b = bStart; b < jCount; b++) {
+                    double length = clipper.length(x, y, xs[b], ys[b]);
+                    // внутри строки пары идут по возрастанию i, но не j,
+                    // поэтому равные хорды разбираем явно, как в Chord.isBetter
+                    if (length > lengthMax || (length == lengthMax && length >= 0
+                            && (iFrom + a < iMax || (iFrom + a == iMax && jFrom + b < jMax)))) {
+                        lengthMax = length;
+                        iMax = iFrom + a;
+                        jMax = jFrom + b;
+                    }
+                }
+            }
+            if (progress != null)
+                progress.advance(pairs);
+        }
+        bytesRead.add(readBytes);
+        readNanos.add(readTime);
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+}
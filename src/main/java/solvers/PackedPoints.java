@@ -0,0 +1,115 @@
+package solvers;
+
+import app.Point;
+import misc.Vector2d;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Координаты точек, упакованные в два плотных массива (structure of arrays)
+ * <p>
+ * Решатели перебирают пары по индексам в этих массивах, не трогая
+ * объекты {@link Point} и {@link Vector2d}
+ */
+public class PackedPoints {
+    /**
+     * Начальная ёмкость
+     */
+    private static final int INIT_CAPACITY = 16;
+    /**
+     * Координаты X
+     */
+    private double[] xs;
+    /**
+     * Координаты Y
+     */
+    private double[] ys;
+    /**
+     * Кол-во точек
+     */
+    private int size;
+
+    /**
+     * Пустой набор точек
+     */
+    public PackedPoints() {
+        this(INIT_CAPACITY);
+    }
+
+    /**
+     * Пустой набор точек заданной ёмкости
+     *
+     * @param capacity ёмкость
+     */
+    public PackedPoints(int capacity) {
+        xs = new double[Math.max(capacity, 1)];
+        ys = new double[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Упаковать список точек (копирование выполняется один раз)
+     *
+     * @param points точки
+     * @return упакованные координаты
+     */
+    public static PackedPoints of(List<Point> points) {
+        PackedPoints packed = new PackedPoints(points.size());
+        for (Point p : points)
+            packed.add(p.getPos().x, p.getPos().y);
+        return packed;
+    }
+
+    /**
+     * Добавить точку
+     *
+     * @param x координата X
+     * @param y координата Y
+     */
+    public void add(double x, double y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+
+    /**
+     * Получить кол-во точек
+     *
+     * @return кол-во точек
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Получить массив координат X (длина массива может быть больше {@link #size()})
+     *
+     * @return массив координат X
+     */
+    public double[] xs() {
+        return xs;
+    }
+
+    /**
+     * Получить массив координат Y (длина массива может быть больше {@link #size()})
+     *
+     * @return массив координат Y
+     */
+    public double[] ys() {
+        return ys;
+    }
+
+    /**
+     * Получить точку по индексу
+     *
+     * @param i индекс
+     * @return вектор положения
+     */
+    public Vector2d get(int i) {
+        return new Vector2d(xs[i], ys[i]);
+    }
+}
@@ -0,0 +1,154 @@
+package solvers;
+
+import java.io.Serial;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Параллельный перебор пар точек на ForkJoinPool
+ * <p>
+ * Треугольное пространство пар (i, j), i < j, режется на блоки строк
+ * с примерно равным числом пар, лучшие хорды блоков сливаются через
+ * {@link Chord#best(Chord, Chord)}, поэтому ответ не зависит от числа потоков
+ */
+public class ParallelSolver implements Solver {
+    /**
+     * Сколько пар блок перебирает сам, не деля работу дальше
+     */
+    private static final long BLOCK_PAIRS = 1 << 16;
+    /**
+     * Пул потоков
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Решатель на общем пуле
+     */
+    public ParallelSolver() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Решатель на заданном пуле
+     *
+     * @param pool пул потоков
+     */
+    public ParallelSolver(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return pool.invoke(new RowsTask(points, clipper, 0, points.size(), null));
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая перебранные пары после каждой строки
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        return pool.invoke(new RowsTask(points, clipper, 0, points.size(), progress));
+    }
+
+    /**
+     * Кол-во пар (i, j), i < j, у которых i < rows
+     *
+     * @param n    кол-во точек
+     * @param rows кол-во строк
+     * @return кол-во пар
+     */
+    static long pairsBefore(int n, int rows) {
+        return (long) rows * (n - 1) - (long) rows * (rows - 1) / 2;
+    }
+
+    /**
+     * Задача перебора диапазона строк [from, to)
+     */
+    private static class RowsTask extends RecursiveTask<Chord> {
+        /**
+         * Версия сериализации (задачи ForkJoin наследуют Serializable, но не сериализуются)
+         */
+        @Serial
+        private static final long serialVersionUID = 1L;
+        /**
+         * Точки
+         */
+        private final PackedPoints points;
+        /**
+         * Отсечение прямоугольником
+         */
+        private final ChordClipper clipper;
+        /**
+         * Первая строка
+         */
+        private final int from;
+        /**
+         * Строка за последней
+         */
+        private final int to;
+        /**
+         * Ход решения, null - не отмечать
+         */
+        private final SolveProgress progress;
+
+        /**
+         * Конструктор задачи
+         *
+         * @param points   упакованные координаты точек
+         * @param clipper  отсечение прямоугольником
+         * @param from     первая строка
+         * @param to       строка за последней
+         * @param progress ход решения, null - не отмечать
+         */
+        RowsTask(PackedPoints points, ChordClipper clipper, int from, int to, SolveProgress progress) {
+            this.points = points;
+            this.clipper = clipper;
+            this.from = from;
+            this.to = to;
+            this.progress = progress;
+        }
+
+        /**
+         * Перебор диапазона
+         *
+         * @return лучшая хорда диапазона
+         */
+        @Override
+        protected Chord compute() {
+            int n = points.size();
+            long before = pairsBefore(n, from);
+            long pairs = pairsBefore(n, to) - before;
+            if (pairs <= BLOCK_PAIRS || to - from < 2)
+                return BruteForceSolver.solveRows(points, clipper, from, to, progress);
+            // ищем строку, которая делит пары диапазона пополам:
+            // верхние строки длиннее, поэтому середина смещена к началу
+            long half = before + pairs / 2;
+            int lo = from + 1;
+            int hi = to - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (pairsBefore(n, mid) < half)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            RowsTask head = new RowsTask(points, clipper, from, lo, progress);
+            RowsTask tail = new RowsTask(points, clipper, lo, to, progress);
+            head.fork();
+            Chord tailBest = tail.compute();
+            return Chord.best(head.join(), tailBest);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package solvers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Метод ветвей и границ по парам ячеек квадродерева
+ * <p>
+ * Точки раскладываются в квадродерево. Для пары ячеек все прямые, проходящие
+ * через точку одной и точку другой, имеют направления из сектора, натянутого
+ * на разность их габаритов, и хорда оценивается сверху по этому сектору
+ * ({@link ChordBounds#cone}). Пары ячеек обходятся по убыванию оценки,
+ * делятся до листьев, и только в листьях пары точек считаются точно.
+ * Как только оценка лучшей из оставшихся пар ячеек меньше найденной хорды,
+ * перебор заканчивается
+ */
+public class QuadTreeSolver implements Solver {
+    /**
+     * Максимальное кол-во точек в листе
+     */
+    static final int LEAF_SIZE = 32;
+    /**
+     * Максимальная глубина дерева (защита от множества совпадающих точек)
+     */
+    private static final int MAX_DEPTH = 40;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая пары точек каждой пары листьев
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        if (n < 2)
+            return Chord.NONE;
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        int[] index = new int[n];
+        for (int i = 0; i < n; i++)
+            index[i] = i;
+        if (progress != null)
+            progress.check();
+        Node root = build(xs, ys, index, 0, n, 0);
+        // бюджет без срока только отмечает ход решения и проверяет отмену
+        Chord best = search(root, index, xs, ys, clipper,
+                progress == null ? null : new AnytimeSolver.Budget(System.nanoTime() + Long.MAX_VALUE, null, progress));
+        // отброшенные по оценке пары тоже решены
+        if (progress != null)
+            progress.complete();
+        return best;
+    }
+
+    /**
+     * Обход пар ячеек готового дерева по убыванию оценки
+     * <p>
+     * Дерево только читается, поэтому один и тот же корень можно
+     * обходить для разных прямоугольников одновременно
+     *
+     * @param root    корень дерева
+     * @param index   индексы точек в порядке ячеек
+     * @param xs      координаты X
+     * @param ys      координаты Y
+     * @param clipper отсечение прямоугольником
+     * @param budget  ограничение по времени и публикация улучшений, null - искать до конца
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    static Chord search(Node root, int[] index, double[] xs, double[] ys, ChordClipper clipper,
+                        AnytimeSolver.Budget budget) {
+        double w = clipper.right - clipper.left;
+        double h = clipper.top - clipper.bottom;
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        PriorityQueue<CellPair> queue = new PriorityQueue<>();
+        queue.add(new CellPair(root, root, ChordBounds.any(w, h)));
+        while (!queue.isEmpty()) {
+            CellPair pair = queue.poll();
+            // у всех оставшихся пар ячеек оценка не больше этой
+            if (pair.bound < lengthMax)
+                break;
+            Node a = pair.a;
+            Node b = pair.b;
+            if (a.isLeaf() && b.isLeaf()) {
+                int iBefore = iMax;
+                int jBefore = jMax;
+                // точный перебор пар точек двух листьев
+                for (int p = a.start; p < a.end; p++) {
+                    for (int q = a == b ? p + 1 : b.start; q < b.end; q++) {
+                        int i = Math.min(index[p], index[q]);
+                        int j = Math.max(index[p], index[q]);
+                        double length = clipper.length(xs[i], ys[i], xs[j], ys[j]);
+                        // равные хорды разбираем как в Chord.isBetter
+                        if (length > lengthMax || (length == lengthMax && length >= 0
+                                && (i < iMax || (i == iMax && j < jMax)))) {
+                            lengthMax = length;
+                            iMax = i;
+                            jMax = j;
+                        }
+                    }
+                }
+                if (budget != null) {
+                    if (iMax != iBefore || jMax != jBefore)
+                        budget.improved(new Chord(iMax, jMax, lengthMax));
+                    long sizeA = a.end - a.start;
+                    long pairs = a == b ? sizeA * (sizeA - 1) / 2 : sizeA * (b.end - b.start);
+                    if (!budget.proceed(pairs))
+                        break;
+                }
+            } else if (a == b) {
+                // пара ячейки с самой собой: все пары её детей, включая пары ребёнка с собой
+                for (int c = 0; c < a.children.size(); c++)
+                    for (int d = c; d < a.children.size(); d++)
+                        offer(queue, a.children.get(c), a.children.get(d), clipper, lengthMax);
+            } else {
+                // делим ячейку побольше
+                boolean splitA = !a.isLeaf() && (b.isLeaf() || a.extent() >= b.extent());
+                if (splitA) {
+                    for (Node child : a.children)
+                        offer(queue, child, b, clipper, lengthMax);
+                } else {
+                    for (Node child : b.children)
+                        offer(queue, a, child, clipper, lengthMax);
+                }
+            }
+        }
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+
+    /**
+     * Поставить пару ячеек в очередь, если её оценка не хуже найденной хорды
+     *
+     * @param queue     очередь
+     * @param a         первая ячейка
+     * @param b         вторая ячейка
+     * @param clipper   прямоугольник
+     * @param lengthMax длина лучшей найденной хорды
+     */
+    private static void offer(PriorityQueue<CellPair> queue, Node a, Node b, ChordClipper clipper, double lengthMax) {
+        double bound = bound(a, b, clipper);
+        if (bound >= lengthMax)
+            queue.add(new CellPair(a, b, bound));
+    }
+
+    /**
+     * Оценка хорды для всех прямых, проходящих через точку ячейки a и точку ячейки b
+     * <p>
+     * Направления таких прямых лежат в секторе, натянутом на габарит разностей b - a
+     * (для пересекающихся ячеек - в любом направлении).
+     * Сектор режется по четвертям, и на каждой части оценка по направлению
+     * ({@link ChordBounds#cone}) уточняется тем, что прямая проходит через оба габарита
+     * ({@link ChordBounds#throughBox}): прямая диагонального направления, идущая
+     * в стороне от углов прямоугольника, высекает короткую хорду
+     *
+     * @param a       первая ячейка
+     * @param b       вторая ячейка
+     * @param clipper прямоугольник
+     * @return оценка длины хорды
+     */
+    static double bound(Node a, Node b, ChordClipper clipper) {
+        double w = clipper.right - clipper.left;
+        double h = clipper.top - clipper.bottom;
+        // габарит разностей b - a
+        double dxMin = b.minX - a.maxX;
+        double dxMax = b.maxX - a.minX;
+        double dyMin = b.minY - a.maxY;
+        double dyMax = b.maxY - a.minY;
+        double a0 = 0;
+        double a1 = Math.PI;
+        // если разности содержат ноль, направление может быть любым, иначе
+        // сектор направлений выпуклого габарита, не содержащего ноль, уже π:
+        // углы углов габарита отсчитываем от направления на его центр
+        if (dxMin > 0 || dxMax < 0 || dyMin > 0 || dyMax < 0) {
+            double center = Math.atan2((dyMin + dyMax) / 2, (dxMin + dxMax) / 2);
+            double lo = 0;
+            double hi = 0;
+            double[] cornersX = {dxMin, dxMax, dxMin, dxMax};
+            double[] cornersY = {dyMin, dyMin, dyMax, dyMax};
+            for (int c = 0; c < 4; c++) {
+                double delta = Math.atan2(cornersY[c], cornersX[c]) - center;
+                if (delta > Math.PI)
+                    delta -= 2 * Math.PI;
+                else if (delta < -Math.PI)
+                    delta += 2 * Math.PI;
+                lo = Math.min(lo, delta);
+                hi = Math.max(hi, delta);
+            }
+            a0 = center + lo;
+            a1 = center + hi;
+        }
+        double diagonal = Math.sqrt(w * w + h * h);
+        double bound = Double.NEGATIVE_INFINITY;
+        // режем сектор по четвертям
+        double quarter = Math.PI / 2;
+        double s0 = a0;
+        while (true) {
+            double s1 = Math.min(a1, (Math.floor(s0 / quarter) + 1) * quarter);
+            double part = Math.min(ChordBounds.cone(s0, s1, w, h),
+                    ChordBounds.withMargin(Math.min(
+                            ChordBounds.throughBox(s0, s1, clipper, a.minX, a.minY, a.maxX, a.maxY),
+                            ChordBounds.throughBox(s0, s1, clipper, b.minX, b.minY, b.maxX, b.maxY)), diagonal));
+            bound = Math.max(bound, part);
+            if (s1 >= a1)
+                break;
+            s0 = s1;
+        }
+        return bound;
+    }
+
+    /**
+     * Построить квадродерево над диапазоном [start, end) массива индексов
+     *
+     * @param xs    координаты X
+     * @param ys    координаты Y
+     * @param index индексы точек, переставляются по ячейкам
+     * @param start начало диапазона
+     * @param end   конец диапазона
+     * @param depth глубина
+     * @return узел дерева
+     */
+    static Node build(double[] xs, double[] ys, int[] index, int start, int end, int depth) {
+        Node node = new Node(start, end);
+        for (int p = start; p < end; p++) {
+            double x = xs[index[p]];
+            double y = ys[index[p]];
+            node.minX = Math.min(node.minX, x);
+            node.maxX = Math.max(node.maxX, x);
+            node.minY = Math.min(node.minY, y);
+            node.maxY = Math.max(node.maxY, y);
+        }
+        if (end - start <= LEAF_SIZE || depth >= MAX_DEPTH || node.extent() == 0)
+            return node;
+        double midX = (node.minX + node.maxX) / 2;
+        double midY = (node.minY + node.maxY) / 2;
+        // раскладываем сначала по X, потом каждую половину по Y
+        int splitX = partition(index, start, end, xs, midX);
+        int splitLow = partition(index, start, splitX, ys, midY);
+        int splitHigh = partition(index, splitX, end, ys, midY);
+        int[] bounds = {start, splitLow, splitX, splitHigh, end};
+        for (int c = 0; c < 4; c++) {
+            if (bounds[c] < bounds[c + 1])
+                node.children.add(build(xs, ys, index, bounds[c], bounds[c + 1], depth + 1));
+        }
+        return node;
+    }
+
+    /**
+     * Переставить индексы так, чтобы сначала шли точки с координатой не больше mid
+     *
+     * @param index  индексы точек
+     * @param start  начало диапазона
+     * @param end    конец диапазона
+     * @param coords координаты
+     * @param mid    граница
+     * @return начало второй части
+     */
+    private static int partition(int[] index, int start, int end, double[] coords, double mid) {
+        int lo = start;
+        int hi = end - 1;
+        while (lo <= hi) {
+            if (coords[index[lo]] <= mid) {
+                lo++;
+            } else {
+                int tmp = index[lo];
+                index[lo] = index[hi];
+                index[hi] = tmp;
+                hi--;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Узел квадродерева
+     */
+    static class Node {
+        /**
+         * Начало диапазона индексов
+         */
+        final int start;
+        /**
+         * Конец диапазона индексов
+         */
+        final int end;
+        /**
+         * Габарит точек узла
+         */
+        double minX = Double.POSITIVE_INFINITY;
+        /**
+         * Габарит точек узла
+         */
+        double minY = Double.POSITIVE_INFINITY;
+        /**
+         * Габарит точек узла
+         */
+        double maxX = Double.NEGATIVE_INFINITY;
+        /**
+         * Габарит точек узла
+         */
+        double maxY = Double.NEGATIVE_INFINITY;
+        /**
+         * Непустые дети
+         */
+        final List<Node> children = new ArrayList<>(4);
+
+        /**
+         * Конструктор узла
+         *
+         * @param start начало диапазона индексов
+         * @param end   конец диапазона индексов
+         */
+        Node(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Является ли узел листом
+         *
+         * @return флаг
+         */
+        boolean isLeaf() {
+            return children.isEmpty();
+        }
+
+        /**
+         * Размер габарита (больший из двух)
+         *
+         * @return размер
+         */
+        double extent() {
+            return Math.max(maxX - minX, maxY - minY);
+        }
+    }
+
+    /**
+     * Пара ячеек с оценкой хорды, в очереди сначала идут пары с большей оценкой
+     *
+     * @param a     первая ячейка
+     * @param b     вторая ячейка
+     * @param bound оценка длины хорды
+     */
+    record CellPair(Node a, Node b, double bound) implements Comparable<CellPair> {
+        /**
+         * Сравнение по убыванию оценки
+         *
+         * @param o другая пара
+         * @return результат сравнения
+         */
+        @Override
+        public int compareTo(CellPair o) {
+            return Double.compare(o.bound, bound);
+        }
+    }
+}
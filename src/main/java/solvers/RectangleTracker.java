@@ -0,0 +1,242 @@
+package solvers;
+
+import java.util.Arrays;
+
+/**
+ * Пересчёт ответа при небольших изменениях прямоугольника
+ * <p>
+ * Хорда прошлого ответа, пересчитанная для нового прямоугольника, даёт
+ * нижнюю оценку L. Концы любой хорды длиной не меньше L лежат на сторонах
+ * не дальше delta от вершин, поэтому её прямая проходит рядом с двумя
+ * вершинами, а обе задающие её точки лежат в узких "песочных часах" вокруг
+ * прямой через эти вершины. Точки отбираются за один линейный проход по
+ * индексу, и точно перебираются только пары отобранных точек. Когда
+ * прямоугольник меняется понемногу, прошлый ответ остаётся почти лучшим,
+ * и отобранных точек немного
+ */
+public class RectangleTracker {
+    /**
+     * До скольких отобранных точек хватает полного перебора
+     */
+    static final int BRUTE_FORCE_LIMIT = 2048;
+    /**
+     * Во сколько раз первый порог ближе к диагонали, чем прошлая хорда
+     */
+    private static final double FIRST_GAP_DIVISOR = 16;
+    /**
+     * Во сколько раз первый порог без прошлой хорды ближе к диагонали, чем ноль
+     */
+    private static final double NO_HINT_GAP_DIVISOR = 4096;
+    /**
+     * Во сколько раз отступ порога от диагонали растёт после неудачи
+     */
+    private static final double GAP_GROWTH = 4;
+    /**
+     * Пары вершин прямоугольника (левая нижняя, правая нижняя, правая верхняя, левая верхняя)
+     */
+    private static final int[][] CORNER_PAIRS = {{0, 2}, {1, 3}, {0, 1}, {3, 2}, {0, 3}, {1, 2}};
+    /**
+     * Индекс прямых
+     */
+    private final LineIndex index;
+    /**
+     * Прошлый ответ
+     */
+    private Chord last = Chord.NONE;
+    /**
+     * Сколько точек перебиралось при последнем пересчёте
+     */
+    private int lastCandidates;
+
+    /**
+     * Конструктор
+     *
+     * @param index индекс прямых
+     */
+    public RectangleTracker(LineIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Задать известный ответ, с которого начнутся пересчёты
+     *
+     * @param hint хорда или {@link Chord#NONE}
+     */
+    public void setHint(Chord hint) {
+        last = hint;
+    }
+
+    /**
+     * Пересчитать ответ для нового прямоугольника
+     *
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    public Chord update(ChordClipper clipper) {
+        last = solve(clipper);
+        return last;
+    }
+
+    /**
+     * Сколько точек перебиралось при последнем пересчёте
+     *
+     * @return кол-во точек
+     */
+    public int getLastCandidates() {
+        return lastCandidates;
+    }
+
+    /**
+     * Найти самую длинную хорду, отталкиваясь от прошлого ответа
+     * <p>
+     * Порог длины сначала берётся близким к диагонали и, пока среди отобранных
+     * точек не найдётся хорда не короче порога, опускается к длине прошлой хорды.
+     * Найденная хорда не короче порога - точный ответ: обе точки любой более
+     * длинной хорды тоже прошли бы отбор
+     *
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    private Chord solve(ChordClipper clipper) {
+        double[] xs = index.xs();
+        double[] ys = index.ys();
+        double w = clipper.right - clipper.left;
+        double h = clipper.top - clipper.bottom;
+        double diagonal = Math.sqrt(w * w + h * h);
+        // прошлая хорда в новом прямоугольнике - нижняя оценка ответа
+        Chord best = Chord.NONE;
+        if (last.exists()) {
+            double length = clipper.length(xs[last.i()], ys[last.i()], xs[last.j()], ys[last.j()]);
+            if (length >= 0)
+                best = new Chord(last.i(), last.j(), length);
+        }
+        // без прошлой хорды начинаем вплотную к диагонали
+        double gap = best.exists() ? (diagonal - best.length()) / FIRST_GAP_DIVISOR : diagonal / NO_HINT_GAP_DIVISOR;
+        while (true) {
+            double threshold = Math.max(diagonal - gap, best.length());
+            double delta = cornerRadius(threshold, w, h);
+            if (delta < 0) {
+                // порог ничего не отсекает, решаем заново
+                lastCandidates = index.size();
+                return index.query(clipper);
+            }
+            Chord found = solveNear(clipper, threshold, delta);
+            if (found.exists() && found.length() >= threshold)
+                return found;
+            best = Chord.best(found, best);
+            if (threshold <= best.length())
+                return best;
+            gap *= GAP_GROWTH;
+        }
+    }
+
+    /**
+     * Найти самую длинную хорду среди точек, прошедших отбор по порогу
+     *
+     * @param clipper   отсечение прямоугольником
+     * @param threshold порог длины хорды
+     * @param delta     расстояние от концов хорды до вершин для этого порога
+     * @return лучшая хорда среди отобранных точек или {@link Chord#NONE}
+     */
+    private Chord solveNear(ChordClipper clipper, double threshold, double delta) {
+        int n = index.size();
+        double[] xs = index.xs();
+        double[] ys = index.ys();
+        double[] cornersX = {clipper.left, clipper.right, clipper.right, clipper.left};
+        double[] cornersY = {clipper.bottom, clipper.bottom, clipper.top, clipper.top};
+        // пары вершин, между которыми может лежать хорда не короче порога
+        boolean[] usable = new boolean[CORNER_PAIRS.length];
+        for (int k = 0; k < CORNER_PAIRS.length; k++) {
+            int c1 = CORNER_PAIRS[k][0];
+            int c2 = CORNER_PAIRS[k][1];
+            double span = Math.hypot(cornersX[c2] - cornersX[c1], cornersY[c2] - cornersY[c1]);
+            usable[k] = span + 2 * delta >= threshold;
+        }
+
+        // индексы отбираются по возрастанию, поэтому порядок пар сохраняется
+        PackedPoints candidates = new PackedPoints();
+        int[] original = new int[16];
+        for (int p = 0; p < n; p++) {
+            for (int k = 0; k < CORNER_PAIRS.length; k++) {
+                if (!usable[k])
+                    continue;
+                int c1 = CORNER_PAIRS[k][0];
+                int c2 = CORNER_PAIRS[k][1];
+                if (nearLine(xs[p], ys[p], cornersX[c1], cornersY[c1], cornersX[c2], cornersY[c2], delta)) {
+                    if (candidates.size() == original.length)
+                        original = Arrays.copyOf(original, original.length * 2);
+                    original[candidates.size()] = p;
+                    candidates.add(xs[p], ys[p]);
+                    break;
+                }
+            }
+        }
+        lastCandidates = candidates.size();
+        Solver solver = candidates.size() <= BRUTE_FORCE_LIMIT ? new BruteForceSolver() : new QuadTreeSolver();
+        Chord best = solver.solve(candidates, clipper);
+        if (!best.exists())
+            return Chord.NONE;
+        return new Chord(original[best.i()], original[best.j()], best.length());
+    }
+
+    /**
+     * На каком расстоянии от вершины должны лежать концы хорды длиной не меньше length
+     * <p>
+     * Для конца на нижней стороне в точке x самая дальняя точка границы - верхняя
+     * вершина на расстоянии sqrt(max(x, w - x)^2 + h^2), отсюда конец не дальше
+     * w - sqrt(length^2 - h^2) от нижней вершины, для боковых сторон аналогично
+     *
+     * @param length нижняя оценка длины хорды
+     * @param w      ширина прямоугольника
+     * @param h      высота прямоугольника
+     * @return радиус или -1, если оценка слишком слабая, чтобы что-то отсечь
+     */
+    static double cornerRadius(double length, double w, double h) {
+        // немного занижаем оценку, чтобы погрешность длины не отсекла лучшую хорду
+        double safe = length - 1e-9 * (length + Math.hypot(w, h) + 1);
+        if (safe <= Math.max(w, h))
+            return -1;
+        double delta = Math.max(w - Math.sqrt(safe * safe - h * h), h - Math.sqrt(safe * safe - w * w));
+        // обе точки у одной вершины
+        if (2 * delta >= safe)
+            return -1;
+        return delta * (1 + 1e-9) + 1e-12;
+    }
+
+    /**
+     * Проходит ли через точку прямая, лежащая не дальше delta от обеих вершин
+     * <p>
+     * Из точки p прямые, проходящие рядом с вершиной на расстоянии r, отклоняются
+     * от направления на вершину не больше чем на asin(delta / r); такая прямая
+     * есть, если угол между направлениями на вершины (без учёта знака)
+     * не больше суммы двух отклонений
+     *
+     * @param px    координата X точки
+     * @param py    координата Y точки
+     * @param k1x   координата X первой вершины
+     * @param k1y   координата Y первой вершины
+     * @param k2x   координата X второй вершины
+     * @param k2y   координата Y второй вершины
+     * @param delta расстояние до вершин
+     * @return флаг
+     */
+    static boolean nearLine(double px, double py, double k1x, double k1y, double k2x, double k2y, double delta) {
+        double ax = k1x - px;
+        double ay = k1y - py;
+        double bx = k2x - px;
+        double by = k2y - py;
+        double r1 = Math.sqrt(ax * ax + ay * ay);
+        double r2 = Math.sqrt(bx * bx + by * by);
+        if (r1 <= delta || r2 <= delta)
+            return true;
+        double s1 = delta / r1;
+        double s2 = delta / r2;
+        double c1 = Math.sqrt(1 - s1 * s1);
+        double c2 = Math.sqrt(1 - s2 * s2);
+        // сумма отклонений не меньше прямого угла
+        if (c1 * c2 - s1 * s2 <= 0)
+            return true;
+        double sinAngle = Math.abs(ax * by - ay * bx) / (r1 * r2);
+        return sinAngle <= (s1 * c2 + c1 * s2) * (1 + 1e-9) + 1e-12;
+    }
+}
@@ -0,0 +1,282 @@
+package solvers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Кэш ответов, адресуемый содержимым задачи
+ * <p>
+ * Ключ - 128-битный хэш координат точек (в их порядке), границ прямоугольника
+ * и режима решения, поэтому любое изменение точек или вершин даёт другой ключ,
+ * и устаревший ответ просто не находится. Хэш не криптографический: совпадение
+ * ключей у разных задач или подменённый файл на диске возможны, поэтому каждое
+ * попадание проверяется - номера пары должны быть точками задачи, а длина её
+ * хорды побитово совпадать с сохранённой, иначе это промах. Ответ без хорды так
+ * не проверить, поэтому он не кэшируется. Первый уровень - LRU в памяти
+ * ограниченного размера, второй (необязательный) - по файлу на ключ в папке
+ */
+public class ResultCache {
+    /**
+     * Множители перемешивания хэша
+     */
+    private static final long MIX_A = 0x9E3779B97F4A7C15L;
+    /**
+     * Второй множитель перемешивания хэша
+     */
+    private static final long MIX_B = 0xC2B2AE3D27D4EB4FL;
+    /**
+     * Ёмкость уровня в памяти
+     */
+    private final int capacity;
+    /**
+     * Уровень в памяти: порядок доступа, старейший вытесняется
+     */
+    private final LinkedHashMap<Key, Chord> memory;
+    /**
+     * Папка уровня на диске, null - только память
+     */
+    private final Path directory;
+    /**
+     * Попадания в память
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Попадания на диск
+     */
+    private final AtomicLong diskHits = new AtomicLong();
+    /**
+     * Промахи
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Ключ кэша
+     *
+     * @param high старшие 64 бита хэша
+     * @param low  младшие 64 бита хэша
+     */
+    public record Key(long high, long low) {
+        /**
+         * Имя файла ключа на диске
+         *
+         * @return 32 шестнадцатеричные цифры
+         */
+        public String hex() {
+            return String.format("%016x%016x", high, low);
+        }
+    }
+
+    /**
+     * Кэш заданной ёмкости
+     *
+     * @param capacity  сколько ответов держать в памяти
+     * @param directory папка для ответов на диске, null - только память
+     */
+    public ResultCache(int capacity, Path directory) {
+        this.capacity = Math.max(capacity, 1);
+        this.directory = directory;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Chord> eldest) {
+                return size() > ResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Посчитать ключ задачи
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @param mode    режим решения (от него зависит выбор между равными хордами)
+     * @return ключ
+     */
+    public static Key key(PackedPoints points, ChordClipper clipper, SolveMode mode) {
+        long high = MIX_A ^ points.size();
+        // имя, а не номер режима: ключи на диске не съезжают, когда список режимов меняется
+        long low = MIX_B ^ mode.name().hashCode();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        for (int i = 0; i < points.size(); i++) {
+            long x = Double.doubleToLongBits(xs[i]);
+            long y = Double.doubleToLongBits(ys[i]);
+            high = Long.rotateLeft(high ^ mix(x), 31) * MIX_A + y;
+            low = Long.rotateLeft(low ^ mix(y), 29) * MIX_B + x;
+        }
+        for (double bound : new double[]{clipper.left, clipper.bottom, clipper.right, clipper.top}) {
+            long bits = Double.doubleToLongBits(bound);
+            high = Long.rotateLeft(high ^ mix(bits), 31) * MIX_A;
+            low = Long.rotateLeft(low ^ mix(~bits), 29) * MIX_B;
+        }
+        return new Key(mix(high ^ low >>> 1), mix(low ^ high >>> 1));
+    }
+
+    /**
+     * Перемешивание 64 бит (финализатор MurmurHash3)
+     *
+     * @param v значение
+     * @return перемешанное значение
+     */
+    private static long mix(long v) {
+        v ^= v >>> 33;
+        v *= 0xFF51AFD7ED558CCDL;
+        v ^= v >>> 33;
+        v *= 0xC4CEB9FE1A85EC53L;
+        v ^= v >>> 33;
+        return v;
+    }
+
+    /**
+     * Найти ответ по ключу
+     *
+     * @param key     ключ
+     * @param points  упакованные координаты точек задачи, по которой считался ключ
+     * @param clipper отсечение прямоугольником задачи
+     * @return ответ или null, если его нет ни в памяти, ни на диске или он не подходит к задаче
+     */
+    public Chord get(Key key, PackedPoints points, ChordClipper clipper) {
+        Chord chord;
+        synchronized (memory) {
+            chord = memory.get(key);
+        }
+        if (chord != null) {
+            if (matches(chord, points, clipper)) {
+                hits.incrementAndGet();
+                return chord;
+            }
+            synchronized (memory) {
+                memory.remove(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        chord = readDisk(key);
+        if (chord == null || !matches(chord, points, clipper)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+        synchronized (memory) {
+            memory.put(key, chord);
+        }
+        return chord;
+    }
+
+    /**
+     * Подходит ли сохранённый ответ к задаче: пара - точки задачи,
+     * и её хорда побитово той же длины
+     *
+     * @param chord   сохранённый ответ
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return true, если ответ можно вернуть
+     */
+    static boolean matches(Chord chord, PackedPoints points, ChordClipper clipper) {
+        int i = chord.i();
+        int j = chord.j();
+        if (i < 0 || i >= j || j >= points.size())
+            return false;
+        double length = clipper.length(points.xs()[i], points.ys()[i], points.xs()[j], points.ys()[j]);
+        return Double.doubleToLongBits(length) == Double.doubleToLongBits(chord.length());
+    }
+
+    /**
+     * Запомнить ответ
+     *
+     * @param key   ключ
+     * @param chord ответ; {@link Chord#NONE} не запоминается - его не проверить при чтении
+     */
+    public void put(Key key, Chord chord) {
+        if (!chord.exists())
+            return;
+        synchronized (memory) {
+            memory.put(key, chord);
+        }
+        writeDisk(key, chord);
+    }
+
+    /**
+     * Прочитать ответ с диска
+     *
+     * @param key ключ
+     * @return ответ или null, если файла нет или он испорчен
+     */
+    private Chord readDisk(Key key) {
+        if (directory == null)
+            return null;
+        Path file = directory.resolve(key.hex());
+        if (!Files.exists(file))
+            return null;
+        try {
+            String[] parts = Files.readString(file, StandardCharsets.UTF_8).trim().split(" ");
+            return new Chord(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                    Double.longBitsToDouble(Long.parseUnsignedLong(parts[2], 16)));
+        } catch (IOException | RuntimeException e) {
+            // испорченный файл считаем промахом, он будет перезаписан
+            return null;
+        }
+    }
+
+    /**
+     * Записать ответ на диск (через временный файл, чтобы читатели не видели половину)
+     *
+     * @param key   ключ
+     * @param chord ответ
+     */
+    private void writeDisk(Key key, Chord chord) {
+        if (directory == null)
+            return;
+        try {
+            Files.createDirectories(directory);
+            Path tmp = Files.createTempFile(directory, key.hex(), ".tmp");
+            Files.writeString(tmp, chord.i() + " " + chord.j() + " " +
+                    Long.toHexString(Double.doubleToLongBits(chord.length())), StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(key.hex()), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // без диска кэш продолжает работать в памяти
+        }
+    }
+
+    /**
+     * Очистить уровень в памяти
+     */
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    /**
+     * Получить кол-во попаданий в память
+     *
+     * @return кол-во попаданий
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Получить кол-во попаданий на диск
+     *
+     * @return кол-во попаданий
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Получить кол-во промахов
+     *
+     * @return кол-во промахов
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
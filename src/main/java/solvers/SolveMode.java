@@ -0,0 +1,115 @@
+package solvers;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.function.Supplier;
+
+/**
+ * Режимы решения задачи
+ */
+public enum SolveMode {
+    /**
+     * Полный перебор в одном потоке
+     */
+    BRUTE_FORCE("Перебор", BruteForceSolver::new),
+    /**
+     * Перебор по блокам, помещающимся в кэш
+     */
+    TILED("Блоками", TiledSolver::new),
+    /**
+     * SIMD-перебор на Vector API, без него - блочный
+     */
+    SIMD("SIMD", VectorSupport::createSolver),
+    /**
+     * Обход корзин направлений по убыванию угловой оценки
+     */
+    ANGULAR("Угловые оценки", AngularBoundSolver::new),
+    /**
+     * Ветви и границы по парам ячеек квадродерева
+     */
+    QUAD_TREE("Квадродерево", QuadTreeSolver::new),
+    /**
+     * Каждая прямая через несколько точек отсекается один раз
+     */
+    LINE_DEDUP("Без повторов прямых", LineDedupSolver::new),
+    /**
+     * Точный перебор прямых в целых номерах узлов сетки
+     */
+    GRID("Целочисленная сетка", GridSolver::new),
+    /**
+     * Лучший ответ за отведённое время, улучшения видны сразу
+     */
+    ANYTIME("За время", AnytimeSolver::new),
+    /**
+     * Параллельный перебор на ForkJoinPool
+     */
+    PARALLEL("Параллельно", ParallelSolver::new);
+
+    /**
+     * Имя убранного режима float32: он был медленнее полного перебора,
+     * поэтому файлы с ним решаются полным перебором
+     */
+    private static final String REMOVED_FLOAT32 = "FLOAT32";
+
+    /**
+     * Название режима для интерфейса
+     */
+    private final String title;
+    /**
+     * Фабрика решателей
+     */
+    private final Supplier<Solver> factory;
+
+    /**
+     * Конструктор режима
+     *
+     * @param title   название режима
+     * @param factory фабрика решателей
+     */
+    SolveMode(String title, Supplier<Solver> factory) {
+        this.title = title;
+        this.factory = factory;
+    }
+
+    /**
+     * Режим по имени из файла задачи
+     *
+     * @param name имя режима
+     * @return режим; для убранных режимов - {@link #BRUTE_FORCE}
+     * @throws IllegalArgumentException если режим неизвестен
+     */
+    @JsonCreator
+    public static SolveMode byName(String name) {
+        if (REMOVED_FLOAT32.equals(name))
+            return BRUTE_FORCE;
+        return valueOf(name);
+    }
+
+    /**
+     * Получить название режима
+     *
+     * @return название
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Создать решатель этого режима
+     *
+     * @return решатель
+     */
+    public Solver createSolver() {
+        return factory.get();
+    }
+
+    /**
+     * Следующий режим (для переключения по кругу)
+     *
+     * @return следующий режим
+     */
+    public SolveMode next() {
+        SolveMode[] modes = values();
+        return modes[(ordinal() + 1) % modes.length];
+    }
+}
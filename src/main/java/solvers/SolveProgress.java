@@ -0,0 +1,118 @@
+package solvers;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ход решения: сколько пар уже перебрано и не отменено ли решение
+ * <p>
+ * Решатель отмечает перебранные пары из любого числа потоков, интерфейс
+ * читает долю готовности при отрисовке. Отмена проверяется при каждой отметке,
+ * поэтому решатели, отмечающие пары построчно, останавливаются за миллисекунды
+ */
+public class SolveProgress {
+    /**
+     * Сколько пар перебрано
+     */
+    private final LongAdder done = new LongAdder();
+    /**
+     * Сколько всего пар
+     */
+    private final long total;
+    /**
+     * Флаг отмены
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Ход решения для заданного кол-ва точек
+     *
+     * @param n кол-во точек
+     */
+    public SolveProgress(int n) {
+        this.total = Math.max((long) n * (n - 1) / 2, 1);
+    }
+
+    /**
+     * Отметить перебранные пары
+     *
+     * @param pairs кол-во пар
+     * @throws CancellationException если решение отменено
+     */
+    public void advance(long pairs) {
+        done.add(pairs);
+        check();
+    }
+
+    /**
+     * Отметить строку перебора, в которой опорная точка i сравнивается со всеми
+     * остальными n - 1 точками: n таких строк вместе дают все пары
+     *
+     * @param i номер строки
+     * @param n кол-во точек
+     * @throws CancellationException если решение отменено
+     */
+    public void advanceRow(int i, int n) {
+        advance((long) (i + 1) * (n - 1) / 2 - (long) i * (n - 1) / 2);
+    }
+
+    /**
+     * Проверить, не отменено ли решение
+     *
+     * @throws CancellationException если решение отменено
+     */
+    public void check() {
+        if (cancelled)
+            throw new CancellationException("решение отменено");
+    }
+
+    /**
+     * Отметить все пары перебранными
+     */
+    public void complete() {
+        done.add(total - done.sum());
+    }
+
+    /**
+     * Отменить решение
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Отменено ли решение
+     *
+     * @return флаг
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Получить кол-во перебранных пар
+     *
+     * @return кол-во пар
+     */
+    public long getDone() {
+        return done.sum();
+    }
+
+    /**
+     * Получить общее кол-во пар
+     *
+     * @return кол-во пар
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Доля готовности
+     *
+     * @return число от 0 до 1
+     */
+    public double fraction() {
+        return Math.min(1, (double) done.sum() / total);
+    }
+}
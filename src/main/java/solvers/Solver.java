@@ -0,0 +1,35 @@
+package solvers;
+
+/**
+ * Решатель задачи о самой длинной хорде
+ */
+public interface Solver {
+    /**
+     * Найти пару точек, прямая через которые высекает из прямоугольника самый длинный отрезок
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    Chord solve(PackedPoints points, ChordClipper clipper);
+
+    /**
+     * Найти самую длинную хорду, отмечая ход решения
+     * <p>
+     * По умолчанию решение идёт целиком и отмечается в конце, поэтому отмена
+     * срабатывает только до начала; переборы пар переопределяют этот метод,
+     * чтобы отмечать пары построчно и останавливаться по отмене сразу
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения
+     * @return лучшая хорда или {@link Chord#NONE}
+     * @throws java.util.concurrent.CancellationException если решение отменено
+     */
+    default Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        progress.check();
+        Chord chord = solve(points, clipper);
+        progress.complete();
+        return chord;
+    }
+}
@@ -0,0 +1,72 @@
+package solvers;
+
+/**
+ * Последовательный перебор пар по блокам, помещающимся в кэш
+ * <p>
+ * Точки делятся на блоки по {@link #TILE} штук, и пары перебираются
+ * блок на блок: координаты обоих блоков (2 * 2 * 8 * TILE байт) остаются в L1/L2
+ * на всё время их перебора. Внутри цикла нет ни одного выделения памяти
+ */
+public class TiledSolver implements Solver {
+    /**
+     * Кол-во точек в блоке
+     */
+    static final int TILE = 1024;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая перебранные пары после каждой пары блоков
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        // перебираем пары блоков (ti, tj), ti <= tj
+        for (int ti = 0; ti < n; ti += TILE) {
+            int tiEnd = Math.min(ti + TILE, n);
+            for (int tj = ti; tj < n; tj += TILE) {
+                int tjEnd = Math.min(tj + TILE, n);
+                long pairs = 0;
+                for (int i = ti; i < tiEnd; i++) {
+                    double ax = xs[i];
+                    double ay = ys[i];
+                    pairs += Math.max(tjEnd - Math.max(tj, i + 1), 0);
+                    for (int j = Math.max(tj, i + 1); j < tjEnd; j++) {
+                        double length = clipper.length(ax, ay, xs[j], ys[j]);
+                        // пары идут не в лексикографическом порядке,
+                        // поэтому равные хорды разбираем явно, как в Chord.isBetter
+                        if (length > lengthMax || (length == lengthMax && length >= 0
+                                && (i < iMax || (i == iMax && j < jMax)))) {
+                            lengthMax = length;
+                            iMax = i;
+                            jMax = j;
+                        }
+                    }
+                }
+                if (progress != null)
+                    progress.advance(pairs);
+            }
+        }
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+}
@@ -0,0 +1,172 @@
+package solvers;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Перебор пар на SIMD через Vector API (модуль jdk.incubator.vector)
+ * <p>
+ * Одна опорная точка i за раз сравнивается с целым вектором партнёров j..j+L-1.
+ * Цепочка if/else из {@link ChordClipper} заменена масками и выбором через blend,
+ * а арифметика повторяет скалярную операция в операцию, поэтому длины хорд
+ * совпадают побитово. Напрямую класс не создаётся: его подгружает
+ * {@link VectorSupport}, если модуль доступен
+ */
+class VectorSolver implements Solver {
+    /**
+     * Предпочтительная ширина вектора на этой машине
+     */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Найти самую длинную хорду
+     *
+     * @param points  упакованные координаты точек
+     * @param clipper отсечение прямоугольником
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper) {
+        return solve(points, clipper, null);
+    }
+
+    /**
+     * Найти самую длинную хорду, отмечая перебранные пары после каждой строки
+     *
+     * @param points   упакованные координаты точек
+     * @param clipper  отсечение прямоугольником
+     * @param progress ход решения, null - не отмечать
+     * @return лучшая хорда или {@link Chord#NONE}
+     */
+    @Override
+    public Chord solve(PackedPoints points, ChordClipper clipper, SolveProgress progress) {
+        int n = points.size();
+        double[] xs = points.xs();
+        double[] ys = points.ys();
+        int lanes = SPECIES.length();
+
+        DoubleVector left = DoubleVector.broadcast(SPECIES, clipper.left);
+        DoubleVector right = DoubleVector.broadcast(SPECIES, clipper.right);
+        DoubleVector bottom = DoubleVector.broadcast(SPECIES, clipper.bottom);
+        DoubleVector top = DoubleVector.broadcast(SPECIES, clipper.top);
+        DoubleVector none = DoubleVector.broadcast(SPECIES, -1);
+
+        double lengthMax = -1;
+        int iMax = -1;
+        int jMax = -1;
+        for (int i = 0; i < n; i++) {
+            double ax = xs[i];
+            double ay = ys[i];
+            DoubleVector axv = DoubleVector.broadcast(SPECIES, ax);
+            DoubleVector ayv = DoubleVector.broadcast(SPECIES, ay);
+            // вертикальная и горизонтальная прямые от партнёра не зависят
+            boolean axIn = ax >= clipper.left && ax <= clipper.right;
+            boolean ayIn = ay >= clipper.bottom && ay <= clipper.top;
+
+            int j = i + 1;
+            for (; j + lanes <= n; j += lanes) {
+                DoubleVector bx = DoubleVector.fromArray(SPECIES, xs, j);
+                DoubleVector by = DoubleVector.fromArray(SPECIES, ys, j);
+                DoubleVector dx = axv.sub(bx);
+                DoubleVector dy = ayv.sub(by);
+
+                VectorMask<Double> vertical = dx.compare(VectorOperators.EQ, 0);
+                VectorMask<Double> same = vertical.and(dy.compare(VectorOperators.EQ, 0));
+                // коэффициент наклона прямой и свободный член
+                DoubleVector k = dy.div(dx);
+                DoubleVector c = ayv.sub(axv.mul(k));
+                VectorMask<Double> horizontal = k.compare(VectorOperators.EQ, 0).andNot(vertical);
+
+                DoubleVector yLeft = k.mul(left).add(c);
+                DoubleVector yRight = k.mul(right).add(c);
+                DoubleVector xTop = top.sub(c).div(k);
+                DoubleVector xBottom = bottom.sub(c).div(k);
+
+                VectorMask<Double> leftIn = yLeft.compare(VectorOperators.LE, top)
+                        .and(yLeft.compare(VectorOperators.GE, bottom));
+                VectorMask<Double> rightIn = yRight.compare(VectorOperators.LE, top)
+                        .and(yRight.compare(VectorOperators.GE, bottom));
+                VectorMask<Double> bottomIn = xBottom.compare(VectorOperators.GE, left)
+                        .and(xBottom.compare(VectorOperators.LE, right));
+                VectorMask<Double> topIn = xTop.compare(VectorOperators.GE, left)
+                        .and(xTop.compare(VectorOperators.LE, right));
+
+                // ветки цепочки накладываем от младшей к старшей, старшая перекрывает младшую:
+                // низ-верх, право-верх, право-низ, лево-верх, лево-низ, лево-право
+                DoubleVector x1 = xBottom;
+                DoubleVector y1 = bottom;
+                DoubleVector x2 = xTop;
+                DoubleVector y2 = top;
+
+                VectorMask<Double> m = rightIn.and(topIn);
+                x1 = x1.blend(right, m);
+                y1 = y1.blend(yRight, m);
+                m = rightIn.and(bottomIn);
+                x1 = x1.blend(right, m);
+                y1 = y1.blend(yRight, m);
+                x2 = x2.blend(xBottom, m);
+                y2 = y2.blend(bottom, m);
+                m = leftIn.and(topIn);
+                x1 = x1.blend(left, leftIn);
+                y1 = y1.blend(yLeft, leftIn);
+                x2 = x2.blend(xTop, m);
+                y2 = y2.blend(top, m);
+                m = leftIn.and(bottomIn);
+                x2 = x2.blend(xBottom, m);
+                y2 = y2.blend(bottom, m);
+                m = leftIn.and(rightIn);
+                x2 = x2.blend(right, m);
+                y2 = y2.blend(yRight, m);
+
+                VectorMask<Double> valid = leftIn.and(rightIn.or(bottomIn).or(topIn))
+                        .or(rightIn.andNot(leftIn).and(bottomIn.or(topIn)))
+                        .or(bottomIn.and(topIn).andNot(leftIn).andNot(rightIn));
+                valid = valid.andNot(horizontal).andNot(vertical);
+
+                // горизонтальная прямая
+                if (ayIn) {
+                    x1 = x1.blend(left, horizontal);
+                    y1 = y1.blend(ayv, horizontal);
+                    x2 = x2.blend(right, horizontal);
+                    y2 = y2.blend(ayv, horizontal);
+                    valid = valid.or(horizontal);
+                }
+                // вертикальная прямая
+                if (axIn) {
+                    x1 = x1.blend(axv, vertical);
+                    y1 = y1.blend(bottom, vertical);
+                    x2 = x2.blend(axv, vertical);
+                    y2 = y2.blend(top, vertical);
+                    valid = valid.or(vertical.andNot(same));
+                }
+
+                DoubleVector ddx = x2.sub(x1);
+                DoubleVector ddy = y2.sub(y1);
+                DoubleVector length = ddx.mul(ddx).add(ddy.mul(ddy)).sqrt();
+                length = none.blend(length, valid);
+
+                double laneMax = length.reduceLanes(VectorOperators.MAX);
+                // строгое сравнение и первая подходящая дорожка оставляют первую из равных пар
+                if (laneMax > lengthMax) {
+                    lengthMax = laneMax;
+                    iMax = i;
+                    jMax = j + length.compare(VectorOperators.EQ, laneMax).firstTrue();
+                }
+            }
+            // хвост, не влезающий в вектор, досчитываем скалярно
+            for (; j < n; j++) {
+                double length = clipper.length(ax, ay, xs[j], ys[j]);
+                if (length > lengthMax) {
+                    lengthMax = length;
+                    iMax = i;
+                    jMax = j;
+                }
+            }
+            if (progress != null)
+                progress.advance(n - 1 - i);
+        }
+        return iMax < 0 ? Chord.NONE : new Chord(iMax, jMax, lengthMax);
+    }
+}
@@ -0,0 +1,67 @@
+package solvers;
+
+/**
+ * Выбор SIMD-решателя при запуске
+ * <p>
+ * Модуль jdk.incubator.vector подключается только флагом
+ * {@code --add-modules jdk.incubator.vector}, поэтому {@link VectorSolver}
+ * загружается через отражение, а без модуля используется {@link TiledSolver}
+ */
+public class VectorSupport {
+    /**
+     * Имя модуля Vector API
+     */
+    private static final String MODULE = "jdk.incubator.vector";
+    /**
+     * Доступен ли Vector API (проверяется один раз при загрузке класса)
+     */
+    private static final boolean AVAILABLE = check();
+
+    /**
+     * Закрытый конструктор
+     */
+    private VectorSupport() {
+        throw new AssertionError("Этот конструктор нельзя вызывать");
+    }
+
+    /**
+     * Проверить, что модуль подключён и SIMD-решатель загружается
+     *
+     * @return флаг
+     */
+    private static boolean check() {
+        if (ModuleLayer.boot().findModule(MODULE).isEmpty())
+            return false;
+        try {
+            Class.forName("solvers.VectorSolver");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Доступен ли Vector API
+     *
+     * @return флаг
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Создать SIMD-решатель, а если Vector API недоступен, то блочный скалярный
+     *
+     * @return решатель
+     */
+    public static Solver createSolver() {
+        if (AVAILABLE) {
+            try {
+                return (Solver) Class.forName("solvers.VectorSolver").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // падаем на скалярный путь ниже
+            }
+        }
+        return new TiledSolver();
+    }
+}
@@ -1,12 +1,72 @@
+import app.BatchCli;
 import app.Point;
+import app.SolveServer;
 import app.Task;
+import app.TaskBinary;
+import app.TaskFiles;
+import app.TaskJournal;
+import app.TaskReader;
+import app.TaskSnapshot;
+import misc.Allocations;
 import misc.CoordinateSystem2d;
+import misc.PersistentList;
 import misc.Vector2d;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
+import solvers.AngularBoundSolver;
+import solvers.AnytimeSolver;
+import solvers.ApproxSolver;
+import solvers.BatchQueryEngine;
+import solvers.BruteForceSolver;
+import solvers.Chord;
+import solvers.ChordClipper;
+import solvers.ChordMailbox;
+import solvers.ChordQuery;
+import solvers.GridSolver;
+import solvers.IncrementalSolver;
+import solvers.LineDedupSolver;
+import solvers.LineIndex;
+import solvers.MappedPoints;
+import solvers.MappedSolver;
+import solvers.PackedPoints;
+import solvers.ParallelSolver;
+import solvers.QuadTreeSolver;
+import solvers.ResultCache;
+import solvers.RectangleTracker;
+import solvers.SolveMode;
+import solvers.SolveProgress;
+import solvers.Solver;
+import solvers.TiledSolver;
+import solvers.VectorSupport;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Класс тестирования
@@ -104,4 +164,1088 @@ public class UnitTest {
 
         test(ownCS, points, tops, sPoints, crossPoints);
     }
+
+    /**
+     * Случайные точки на целочисленной сетке: много равных по длине хорд
+     *
+     * @param cnt  кол-во точек
+     * @param seed зерно генератора
+     * @return список точек
+     */
+    private static PackedPoints gridPoints(int cnt, long seed) {
+        Random random = new Random(seed);
+        PackedPoints points = new PackedPoints();
+        for (int i = 0; i < cnt; i++)
+            points.add(random.nextInt(21) - 10, random.nextInt(21) - 10);
+        return points;
+    }
+
+    /**
+     * Параллельный перебор даёт тот же ответ, что и последовательный,
+     * при любом числе потоков
+     */
+    @Test
+    public void testParallel() {
+        PackedPoints points = gridPoints(1500, 239);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 5));
+
+        Chord expected = new BruteForceSolver().solve(points, clipper);
+        assert expected.exists();
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            Chord actual = new ParallelSolver(pool).solve(points, clipper);
+            pool.shutdown();
+            assert expected.equals(actual);
+        }
+    }
+
+    /**
+     * Блочный перебор даёт тот же ответ, что и построчный, в том числе
+     * при равных хордах, попавших в разные блоки
+     */
+    @Test
+    public void testTiled() {
+        PackedPoints points = gridPoints(2500, 30);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-7, 6), new Vector2d(5, -1));
+
+        Chord expected = new BruteForceSolver().solve(points, clipper);
+        assert expected.exists();
+        assert expected.equals(new TiledSolver().solve(points, clipper));
+    }
+
+    /**
+     * SIMD-перебор (или его скалярная замена без Vector API) совпадает с построчным,
+     * включая вертикальные, горизонтальные прямые и совпадающие точки
+     */
+    @Test
+    public void testSimd() {
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-6, -4), new Vector2d(3, 8));
+        for (long seed = 0; seed < 5; seed++) {
+            PackedPoints points = gridPoints(700 + (int) seed, seed);
+            Chord expected = new BruteForceSolver().solve(points, clipper);
+            assert expected.equals(VectorSupport.createSolver().solve(points, clipper));
+        }
+    }
+
+    /**
+     * Перебор по угловым оценкам даёт тот же ответ, что и полный перебор:
+     * и на сетке с множеством равных хорд, и на случайных вещественных точках
+     */
+    @Test
+    public void testAngularBound() {
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-2, -5), new Vector2d(7, 1));
+        PackedPoints grid = gridPoints(1200, 7);
+        assert new BruteForceSolver().solve(grid, clipper).equals(new AngularBoundSolver().solve(grid, clipper));
+
+        Random random = new Random(8);
+        PackedPoints real = new PackedPoints();
+        for (int i = 0; i < 1200; i++)
+            real.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+        assert new BruteForceSolver().solve(real, clipper).equals(new AngularBoundSolver().solve(real, clipper));
+    }
+
+    /**
+     * Квадродерево даёт тот же ответ, что и полный перебор, на кластерах,
+     * на сетке и на прямых, идущих по сторонам прямоугольника
+     */
+    @Test
+    public void testQuadTree() {
+        Random random = new Random(11);
+        PackedPoints clusters = new PackedPoints();
+        for (int i = 0; i < 3000; i++) {
+            int c = random.nextInt(4);
+            clusters.add(c * 5 - 8 + random.nextGaussian(), c * 3 - 5 + random.nextGaussian());
+        }
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 2));
+        assert new BruteForceSolver().solve(clusters, clipper).equals(new QuadTreeSolver().solve(clusters, clipper));
+
+        PackedPoints grid = gridPoints(1500, 12);
+        ChordClipper narrow = ChordClipper.of(new Vector2d(4, -2), new Vector2d(3.5, 3.5));
+        assert new BruteForceSolver().solve(grid, narrow).equals(new QuadTreeSolver().solve(grid, narrow));
+    }
+
+    /**
+     * Проверка инкрементального решателя на добавлениях и удалениях
+     */
+    @Test
+    public void testIncremental() {
+        Random random = new Random(13);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 3));
+        IncrementalSolver solver = new IncrementalSolver(clipper);
+        solver.reset(gridPoints(200, 14));
+        PackedPoints mirror = gridPoints(200, 14);
+        for (int step = 0; step < 400; step++) {
+            if (mirror.size() > 2 && random.nextInt(3) == 0) {
+                int index = random.nextInt(mirror.size());
+                solver.remove(index);
+                PackedPoints rest = new PackedPoints();
+                for (int i = 0; i < mirror.size(); i++)
+                    if (i != index)
+                        rest.add(mirror.xs()[i], mirror.ys()[i]);
+                mirror = rest;
+            } else {
+                double x = random.nextInt(20) - 10;
+                double y = random.nextInt(20) - 10;
+                solver.add(x, y);
+                mirror.add(x, y);
+            }
+            assert new BruteForceSolver().solve(mirror, clipper).equals(solver.best());
+        }
+    }
+
+    /**
+     * Проверка пакетных запросов по одному индексу
+     */
+    @Test
+    public void testBatchQuery() {
+        Random random = new Random(15);
+        PackedPoints points = gridPoints(800, 16);
+        List<Vector2d[]> rectangles = new ArrayList<>();
+        for (int r = 0; r < 60; r++) {
+            rectangles.add(new Vector2d[]{
+                    new Vector2d(random.nextInt(20) - 10, random.nextInt(20) - 10),
+                    new Vector2d(random.nextInt(20) - 10, random.nextInt(20) - 10)
+            });
+        }
+        BatchQueryEngine.BatchResult result = new BatchQueryEngine(points).solveAll(rectangles);
+        assert result.answers().size() == rectangles.size();
+        for (int r = 0; r < rectangles.size(); r++) {
+            ChordClipper clipper = ChordClipper.of(rectangles.get(r)[0], rectangles.get(r)[1]);
+            assert new BruteForceSolver().solve(points, clipper).equals(result.answers().get(r).chord());
+        }
+    }
+
+    /**
+     * Проверка пересчёта ответа при перетаскивании вершины прямоугольника
+     */
+    @Test
+    public void testRectangleTracker() {
+        Random random = new Random(17);
+        PackedPoints points = new PackedPoints();
+        for (int i = 0; i < 3000; i++)
+            points.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+        RectangleTracker tracker = new RectangleTracker(new LineIndex(points));
+        double x = -3;
+        for (int step = 0; step < 30; step++) {
+            x += random.nextGaussian() * 0.1;
+            ChordClipper clipper = ChordClipper.of(new Vector2d(x, -2), new Vector2d(4, 3));
+            assert new BruteForceSolver().solve(points, clipper).equals(tracker.update(clipper));
+        }
+
+        PackedPoints grid = gridPoints(400, 18);
+        RectangleTracker gridTracker = new RectangleTracker(new LineIndex(grid));
+        for (int step = 0; step < 30; step++) {
+            ChordClipper clipper = ChordClipper.of(new Vector2d(-5 + step % 7, -4), new Vector2d(6, 3 + step % 3));
+            assert new BruteForceSolver().solve(grid, clipper).equals(gridTracker.update(clipper));
+        }
+    }
+
+    /**
+     * Проверка запроса самых длинных хорд и хорд не короче порога
+     */
+    @Test
+    public void testChordQuery() {
+        PackedPoints points = gridPoints(300, 19);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 4));
+        // все хорды полным перебором
+        List<Chord> all = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++)
+            for (int j = i + 1; j < points.size(); j++) {
+                double length = clipper.length(points.xs()[i], points.ys()[i], points.xs()[j], points.ys()[j]);
+                if (length >= 0)
+                    all.add(new Chord(i, j, length));
+            }
+        all.sort((a, b) -> a.isBetter(b) ? -1 : b.isBetter(a) ? 1 : 0);
+
+        ChordQuery.Result result = new ChordQuery(50, 10).run(points, clipper);
+        assert Arrays.asList(result.top()).equals(all.subList(0, 50));
+        List<Chord> over = all.stream().filter(c -> c.length() >= 10).toList();
+        assert Arrays.asList(result.over()).equals(over);
+
+        ChordQuery.Result onlyTop = new ChordQuery(1, Double.POSITIVE_INFINITY).run(points, clipper);
+        assert onlyTop.over().length == 0;
+        assert onlyTop.top()[0].equals(new BruteForceSolver().solve(points, clipper));
+    }
+
+    /**
+     * Проверка перебора прямых без повторов
+     */
+    @Test
+    public void testLineDedup() {
+        // четыре точки на одной прямой и одна в стороне: 10 пар, 5 прямых
+        PackedPoints line = new PackedPoints();
+        for (int i = 0; i < 4; i++)
+            line.add(i, i);
+        line.add(0, 3);
+        ChordClipper square = ChordClipper.of(new Vector2d(-1, -1), new Vector2d(5, 5));
+        LineDedupSolver solver = new LineDedupSolver();
+        Chord chord = solver.solve(line, square);
+        assert chord.equals(new BruteForceSolver().solve(line, square));
+        assert solver.getLastStats().lines() == 5;
+        assert solver.getLastStats().skipped() == 5;
+        assert Arrays.equals(solver.getLastStats().winningLine(), new int[]{0, 1, 2, 3});
+        assert solver.getLastStats().winningPairs() == 6;
+
+        for (int seed = 0; seed < 20; seed++) {
+            PackedPoints points = gridPoints(150, seed);
+            ChordClipper clipper = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 4));
+            Chord expected = new BruteForceSolver().solve(points, clipper);
+            Chord actual = solver.solve(points, clipper);
+            // прямая та же, пара - наименьшая на ней
+            int[] onLine = solver.getLastStats().winningLine();
+            assert Math.abs(expected.length() - actual.length()) < 1e-9;
+            assert Arrays.binarySearch(onLine, expected.i()) >= 0 && Arrays.binarySearch(onLine, expected.j()) >= 0;
+            assert actual.i() == onLine[0];
+            assert solver.getLastStats().skipped() > 0;
+        }
+    }
+
+    /**
+     * Проверка точного перебора прямых на сетке
+     */
+    @Test
+    public void testGrid() {
+        Random random = new Random(21);
+        GridSolver solver = new GridSolver();
+        for (int seed = 0; seed < 20; seed++) {
+            // узлы сетки 30x30, как у addRandomPoints, в double не представимы точно
+            PackedPoints points = new PackedPoints();
+            for (int i = 0; i < 200; i++)
+                points.add(-10 + 20.0 * random.nextInt(30) / 30, -10 + 20.0 * random.nextInt(30) / 30);
+            ChordClipper clipper = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 4));
+            Chord expected = new BruteForceSolver().solve(points, clipper);
+            Chord actual = solver.solve(points, clipper);
+            assert solver.isLastOnGrid();
+            assert Math.abs(expected.length() - actual.length()) < 1e-9;
+            // длина ответа - та же, что отсечение даёт для его пары, поэтому по ней строятся
+            // точки пересечения и ответ проходит проверку кэша
+            Vector2d a = new Vector2d(points.xs()[actual.i()], points.ys()[actual.i()]);
+            Vector2d b = new Vector2d(points.xs()[actual.j()], points.ys()[actual.j()]);
+            assert actual.length() == clipper.length(a.x, a.y, b.x, b.y);
+            assert clipper.cross(a, b) != null;
+            // при равных по длине разных прямых перебор выбирает по погрешности округления,
+            // поэтому сравниваем длину и то, что пара ответа - наименьшая на своей прямой
+            int[] onLine = solver.getLastStats().winningLine();
+            assert actual.i() == onLine[0];
+            long[] direction = solver.getLastDirection();
+            assert BigInteger.valueOf(direction[0]).gcd(BigInteger.valueOf(direction[1])).equals(BigInteger.ONE);
+        }
+
+        // на целой сетке координаты точны, ответ совпадает с перебором
+        PackedPoints integers = new PackedPoints();
+        for (int i = 0; i < 150; i++)
+            integers.add(random.nextInt(15) - 7, random.nextInt(15) - 7);
+        ChordClipper square = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 4));
+        assert solver.solve(integers, square).length() == new BruteForceSolver().solve(integers, square).length();
+
+        // точки не на сетке решаются в double
+        PackedPoints scattered = new PackedPoints();
+        for (int i = 0; i < 100; i++)
+            scattered.add(random.nextGaussian() * 5, random.nextGaussian() * 5);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-4, -3), new Vector2d(5, 4));
+        assert solver.solve(scattered, clipper).equals(new BruteForceSolver().solve(scattered, clipper));
+        assert !solver.isLastOnGrid();
+    }
+
+    /**
+     * Проверка приближённого решения: хорда не короче (1 - eps) от лучшей,
+     * оценка сверху не меньше лучшей хорды
+     */
+    @Test
+    public void testApprox() throws InterruptedException {
+        Random random = new Random(23);
+        for (int seed = 0; seed < 10; seed++) {
+            PackedPoints points = new PackedPoints();
+            // на малом числе точек сетка направлений может не дать гарантии
+            int n = seed % 5 == 0 ? 10 : 500;
+            for (int i = 0; i < n; i++)
+                points.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(2 + random.nextDouble() * 3, 3));
+            double eps = seed % 2 == 0 ? 0.05 : 0.02;
+            Chord exact = new BruteForceSolver().solve(points, clipper);
+            ApproxSolver.Result result = new ApproxSolver(eps).approximate(points, clipper, null);
+            assert result.chord().length() >= (1 - eps) * exact.length();
+            assert result.upperBound() >= exact.length();
+            assert result.achievedEps() <= eps;
+            assert !result.exact() || result.chord().equals(exact);
+        }
+
+        // из интерфейса приближённое решение идёт в фоне, как и обычное
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), points, tops);
+        CountDownLatch done = new CountDownLatch(1);
+        assert task.solveApproxInBackground(0.05, done::countDown);
+        assert done.await(10, TimeUnit.SECONDS);
+        assert task.finishBackgroundSolve();
+        Chord exact = new BruteForceSolver().solve(PackedPoints.of(points), ChordClipper.of(new Vector2d(-3, -2),
+                new Vector2d(4, 3)));
+        assert task.getSnapshot().chord().length() >= 0.95 * exact.length();
+    }
+
+    /**
+     * Проверка фонового решения: ответ как у обычного, отмена останавливает перебор
+     */
+    @Test
+    public void testBackgroundSolve() throws InterruptedException {
+        Random random = new Random(24);
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task expected = new Task(new CoordinateSystem2d(-10, -10, 20, 20), new ArrayList<>(points), new ArrayList<>(tops));
+        expected.solve();
+
+        for (SolveMode mode : new SolveMode[]{SolveMode.BRUTE_FORCE, SolveMode.PARALLEL, SolveMode.QUAD_TREE}) {
+            Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), new ArrayList<>(points), new ArrayList<>(tops));
+            task.setSolveMode(mode);
+            // без кэша каждый режим действительно решает в фоне
+            task.setResultCache(null);
+            CountDownLatch done = new CountDownLatch(1);
+            assert task.solveInBackground(done::countDown);
+            assert task.isSolving();
+            assert done.await(10, TimeUnit.SECONDS);
+            assert task.finishBackgroundSolve();
+            assert !task.isSolving();
+            assert task.getsPoints().equals(expected.getsPoints());
+            // расход памяти замеряется и у фонового решения
+            assert !Allocations.isSupported() || task.getLastSolveBytes() > 0;
+        }
+
+        // отменённый ход решения останавливает перебор на ближайшей строке
+        PackedPoints packed = PackedPoints.of(points);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 3));
+        SolveProgress progress = new SolveProgress(packed.size());
+        progress.cancel();
+        boolean stopped = false;
+        try {
+            new BruteForceSolver().solve(packed, clipper, progress);
+        } catch (CancellationException e) {
+            stopped = true;
+        }
+        assert stopped;
+        assert progress.getDone() == packed.size() - 1;
+
+        progress = new SolveProgress(packed.size());
+        assert new ParallelSolver().solve(packed, clipper, progress).equals(new BruteForceSolver().solve(packed, clipper));
+        assert progress.getDone() == progress.getTotal();
+        assert progress.fraction() == 1;
+
+        // остальные переборы тоже отмечают ход по ходу решения и останавливаются по отмене
+        PackedPoints large = new PackedPoints();
+        for (int i = 0; i < 5000; i++)
+            large.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+        for (Solver solver : new Solver[]{VectorSupport.createSolver(), new AngularBoundSolver(),
+                new QuadTreeSolver(), new LineDedupSolver(), new GridSolver()}) {
+            progress = new SolveProgress(packed.size());
+            assert solver.solve(packed, clipper, progress).equals(solver.solve(packed, clipper));
+            assert progress.getDone() == progress.getTotal();
+            progress = new SolveProgress(large.size());
+            progress.cancel();
+            stopped = false;
+            try {
+                solver.solve(large, clipper, progress);
+            } catch (CancellationException e) {
+                stopped = true;
+            }
+            assert stopped && progress.getDone() < progress.getTotal();
+        }
+
+        // отмена фонового решения: перебор останавливается, ответ не применяется;
+        // точек столько, что полный перебор идёт секунды, а кэша нет
+        ArrayList<Point> many = new ArrayList<>();
+        for (int i = 0; i < 30000; i++)
+            many.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), many, new ArrayList<>(tops));
+        task.setResultCache(null);
+        CountDownLatch done = new CountDownLatch(1);
+        assert task.solveInBackground(done::countDown);
+        SolveProgress running = task.getSolveProgress();
+        task.cancelBackgroundSolve();
+        assert done.await(10, TimeUnit.SECONDS);
+        assert !task.finishBackgroundSolve();
+        assert !task.isSolving();
+        assert running.isCancelled() && running.getDone() < running.getTotal();
+        assert !task.isSolved() && task.getsPoints().isEmpty();
+        assert !task.getSnapshot().chord().exists();
+    }
+
+    /**
+     * Проверка решения с бюджетом времени: с запасом времени ответ точный,
+     * улучшения попадают в ящик, без времени остаётся первая найденная хорда
+     */
+    @Test
+    public void testAnytime() {
+        Random random = new Random(25);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 3));
+        for (int seed = 0; seed < 10; seed++) {
+            PackedPoints points = new PackedPoints();
+            for (int i = 0; i < 400; i++)
+                points.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+            ChordMailbox mailbox = new ChordMailbox();
+            AnytimeSolver solver = new AnytimeSolver(10_000_000_000L);
+            solver.setMailbox(mailbox);
+            Chord chord = solver.solve(points, clipper);
+            assert solver.isLastProven();
+            assert chord.equals(new BruteForceSolver().solve(points, clipper));
+            // в ящике последнее улучшение, после чтения он пуст
+            assert chord.equals(mailbox.take());
+            assert mailbox.take() == null;
+
+            AnytimeSolver hurried = new AnytimeSolver(0);
+            Chord first = hurried.solve(points, clipper);
+            assert !hurried.isLastProven() || first.equals(chord);
+            assert first.length() <= chord.length();
+        }
+    }
+
+    /**
+     * Проверка пакетного решения файлов задач без окна
+     */
+    @Test
+    public void testBatchCli() throws IOException {
+        Random random = new Random(26);
+        Path dir = Files.createTempDirectory("batch");
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Chord> expected = new ArrayList<>();
+        List<PackedPoints> packed = new ArrayList<>();
+        for (int f = 0; f < 6; f++) {
+            ArrayList<Point> points = new ArrayList<>();
+            for (int i = 0; i < 50 + f * 20; i++)
+                points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+            ArrayList<Point> tops = new ArrayList<>();
+            tops.add(new Point(new Vector2d(-3, -2)));
+            tops.add(new Point(new Vector2d(4, 3)));
+            // так же, как сохраняет PanelRendering.save()
+            objectMapper.writeValue(dir.resolve("task" + f + ".json").toFile(),
+                    new Task(new CoordinateSystem2d(-10, -10, 20, 20), points, tops));
+            packed.add(PackedPoints.of(points));
+            expected.add(new BruteForceSolver().solve(PackedPoints.of(points),
+                    ChordClipper.of(tops.get(0).getPos(), tops.get(1).getPos())));
+        }
+        Files.writeString(dir.resolve("broken.json"), "{");
+
+        List<Path> files = BatchCli.collect(List.of(dir.toString()));
+        assert files.size() == 7;
+        List<BatchCli.Result> results = new ArrayList<>();
+        BatchCli.Summary summary = BatchCli.run(files, SolveMode.QUAD_TREE, 3, results::add);
+        assert summary.files() == 7;
+        assert summary.failed() == 1;
+        assert results.size() == 7;
+        for (BatchCli.Result result : results) {
+            if (result.file().endsWith("broken.json")) {
+                assert result.error() != null;
+                continue;
+            }
+            int f = Integer.parseInt(result.file().replaceAll(".*task(\\d+)\\.json", "$1"));
+            assert result.error() == null;
+            assert new Chord(result.i(), result.j(), result.length()).equals(expected.get(f));
+            assert result.cross().length == 2;
+        }
+        assert summary.pairs() > 0 && summary.pairsPerSecond() > 0;
+
+        // тот же пакет по списку прямоугольников вместо прямоугольника из файла
+        Path rects = dir.resolve("rects.txt");
+        Files.writeString(rects, "# x1 y1 x2 y2\n-3 -2 4 3\n\n0 0 5 1.5\n-8 -8 -1 -2\n");
+        List<Vector2d[]> rectangles = BatchCli.readRectangles(rects);
+        assert rectangles.size() == 3;
+        results.clear();
+        summary = BatchCli.runRectangles(files, rectangles, 3, results::add);
+        assert summary.files() == 7;
+        assert summary.failed() == 1;
+        assert results.size() == 6 * rectangles.size() + 1;
+        for (BatchCli.Result result : results) {
+            if (result.file().endsWith("broken.json"))
+                continue;
+            int f = Integer.parseInt(result.file().replaceAll(".*task(\\d+)\\.json", "$1"));
+            ChordClipper clipper = ChordClipper.of(rectangles.get(result.rect())[0],
+                    rectangles.get(result.rect())[1]);
+            assert new Chord(result.i(), result.j(), result.length())
+                    .equals(new BruteForceSolver().solve(packed.get(f), clipper));
+        }
+    }
+
+    /**
+     * Проверка локального HTTP-сервиса: ответы совпадают с перебором,
+     * переполнение очереди даёт 503, метрики считают запросы
+     */
+    @Test
+    public void testSolveServer() throws Exception {
+        Random random = new Random(27);
+        ObjectMapper objectMapper = new ObjectMapper();
+        SolveServer server = new SolveServer(0, 2, 1);
+        server.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            URI solve = URI.create("http://127.0.0.1:" + server.getPort() + "/solve?mode=QUAD_TREE");
+            List<Chord> expected = new ArrayList<>();
+            List<HttpResponse<String>> responses = new ArrayList<>();
+            for (int r = 0; r < 8; r++) {
+                ArrayList<Point> points = new ArrayList<>();
+                for (int i = 0; i < 100; i++)
+                    points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+                ArrayList<Point> tops = new ArrayList<>();
+                tops.add(new Point(new Vector2d(-3, -2)));
+                tops.add(new Point(new Vector2d(4, 3)));
+                expected.add(new BruteForceSolver().solve(PackedPoints.of(points),
+                        ChordClipper.of(tops.get(0).getPos(), tops.get(1).getPos())));
+                String body = objectMapper.writeValueAsString(new Task(new CoordinateSystem2d(-10, -10, 20, 20), points, tops));
+                // запросы идут по одному, чтобы очередь на 2 места не переполнялась
+                responses.add(client.send(HttpRequest.newBuilder(solve)
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            for (int r = 0; r < responses.size(); r++) {
+                HttpResponse<String> response = responses.get(r);
+                assert response.statusCode() == 200;
+                Map<?, ?> result = (Map<?, ?>) objectMapper.readValue(response.body(), Map.class).get("result");
+                Chord chord = new Chord((Integer) result.get("i"), (Integer) result.get("j"), (Double) result.get("length"));
+                assert chord.equals(expected.get(r));
+            }
+
+            // задача без @class, как в файлах конфигурации, и испорченный JSON
+            String conf = "{\"ownCS\":{\"min\":{\"x\":-10,\"y\":-10},\"max\":{\"x\":10,\"y\":10}}," +
+                    "\"points\":[{\"pos\":{\"x\":1,\"y\":1},\"setType\":\"FIRST\"},{\"pos\":{\"x\":9,\"y\":9}}]," +
+                    "\"rect\":[{\"pos\":{\"x\":0,\"y\":0}},{\"pos\":{\"x\":5,\"y\":5}}]}";
+            assert client.send(HttpRequest.newBuilder(solve).POST(HttpRequest.BodyPublishers.ofString(conf)).build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+            assert client.send(HttpRequest.newBuilder(solve).POST(HttpRequest.BodyPublishers.ofString("{")).build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode() == 400;
+
+            Map<?, ?> metrics = objectMapper.readValue(client.send(HttpRequest.newBuilder(
+                            URI.create("http://127.0.0.1:" + server.getPort() + "/metrics")).build(),
+                    HttpResponse.BodyHandlers.ofString()).body(), Map.class);
+            assert ((Number) metrics.get("completed")).longValue() == 9;
+            assert ((Number) metrics.get("queueCapacity")).intValue() == 2;
+            assert ((Map<?, ?>) metrics.get("latencyMs")).containsKey("p99");
+        } finally {
+            server.stop();
+        }
+
+        // очередь на одно место: пока все решатели заняты, лишний запрос сразу получает 503,
+        // а при остановке ответ получают и запрос в очереди, и запрос, взятый раскладчиком
+        SolveServer busy = new SolveServer(0, 1, 1);
+        busy.start();
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 10000; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        HttpRequest slow = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + busy.getPort() + "/solve?mode=BRUTE_FORCE"))
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(
+                        new Task(new CoordinateSystem2d(-10, -10, 20, 20), points, tops)))).build();
+        HttpClient client = HttpClient.newHttpClient();
+        int concurrency = ((Number) busy.metrics().get("concurrency")).intValue();
+        List<CompletableFuture<HttpResponse<String>>> waiting = new ArrayList<>();
+        try {
+            for (int r = 0; r < concurrency + 2; r++) {
+                waiting.add(client.sendAsync(slow, HttpResponse.BodyHandlers.ofString()));
+                // ждём приёма; все запросы, кроме последнего, раскладчик забирает из очереди
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (((Number) busy.metrics().get("accepted")).intValue() < r + 1
+                        || (r <= concurrency && ((Number) busy.metrics().get("queueDepth")).intValue() > 0)) {
+                    assert System.nanoTime() < deadline;
+                    Thread.sleep(5);
+                }
+            }
+            HttpResponse<String> full = client.send(slow, HttpResponse.BodyHandlers.ofString());
+            assert full.statusCode() == 503;
+            assert full.headers().firstValue("Retry-After").orElse("").equals("1");
+            assert ((Number) busy.metrics().get("rejected")).intValue() == 1;
+        } finally {
+            busy.stop();
+        }
+        int unavailable = 0;
+        for (CompletableFuture<HttpResponse<String>> response : waiting) {
+            int code = response.get(60, TimeUnit.SECONDS).statusCode();
+            assert code == 200 || code == 503;
+            if (code == 503)
+                unavailable++;
+        }
+        assert unavailable == 2;
+    }
+
+    /**
+     * Тест кэша решений: ключ по содержимому, вытеснение из памяти, уровень на диске
+     * и пересчёт после изменения задачи
+     */
+    @Test
+    public void testResultCache() throws IOException {
+        Random random = new Random(28);
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 60; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 3));
+        PackedPoints packed = PackedPoints.of(points);
+        ResultCache.Key key = ResultCache.key(packed, clipper, SolveMode.BRUTE_FORCE);
+        assert key.equals(ResultCache.key(PackedPoints.of(points), clipper, SolveMode.BRUTE_FORCE));
+        // другой прямоугольник, режим или порядок точек - другой ключ
+        assert !key.equals(ResultCache.key(packed, ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 4)),
+                SolveMode.BRUTE_FORCE));
+        assert !key.equals(ResultCache.key(packed, clipper, SolveMode.GRID));
+        ArrayList<Point> swapped = new ArrayList<>(points);
+        Collections.swap(swapped, 0, 1);
+        assert !key.equals(ResultCache.key(PackedPoints.of(swapped), clipper, SolveMode.BRUTE_FORCE));
+
+        Path dir = Files.createTempDirectory("cache");
+        ResultCache cache = new ResultCache(1, dir);
+        Chord chord = new BruteForceSolver().solve(packed, clipper);
+        assert cache.get(key, packed, clipper) == null;
+        cache.put(key, chord);
+        assert chord.equals(cache.get(key, packed, clipper));
+        // второй ключ вытесняет первый из памяти, но первый остаётся на диске
+        PackedPoints swappedPacked = PackedPoints.of(swapped);
+        ResultCache.Key other = ResultCache.key(swappedPacked, clipper, SolveMode.BRUTE_FORCE);
+        Chord otherChord = new BruteForceSolver().solve(swappedPacked, clipper);
+        cache.put(other, otherChord);
+        assert chord.equals(cache.get(key, packed, clipper));
+        assert cache.getHits() == 1 && cache.getDiskHits() == 1 && cache.getMisses() == 1;
+        // новый кэш над той же папкой видит сохранённые ответы
+        assert otherChord.equals(new ResultCache(4, dir).get(other, swappedPacked, clipper));
+        ResultCache memoryOnly = new ResultCache(1, null);
+        memoryOnly.put(key, chord);
+        memoryOnly.put(other, otherChord);
+        assert memoryOnly.get(key, packed, clipper) == null;
+
+        // ответ, не подходящий к задаче, - промах: пара вне задачи, другая длина,
+        // испорченный файл; ответ без хорды не запоминается
+        memoryOnly.put(key, new Chord(chord.i(), packed.size(), chord.length()));
+        assert memoryOnly.get(key, packed, clipper) == null;
+        memoryOnly.put(key, new Chord(chord.i(), chord.j(), Math.nextUp(chord.length())));
+        assert memoryOnly.get(key, packed, clipper) == null;
+        Files.writeString(dir.resolve(key.hex()), chord.j() + " " + chord.i() + " 0");
+        assert new ResultCache(4, dir).get(key, packed, clipper) == null;
+        memoryOnly.put(key, Chord.NONE);
+        assert memoryOnly.get(key, packed, clipper) == null;
+
+        // повторное решение задачи совпадает с первым, изменённая задача решается заново
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), new ArrayList<>(points), tops);
+        task.solve();
+        List<Point> first = new ArrayList<>(task.getsPoints());
+        task.solve();
+        assert first.equals(task.getsPoints());
+        task.addPoint(new Vector2d(-9.5, -9.9));
+        task.addPoint(new Vector2d(9.7, 9.8));
+        task.solve();
+        points.add(new Point(new Vector2d(-9.5, -9.9)));
+        points.add(new Point(new Vector2d(9.7, 9.8)));
+        Chord expected = new BruteForceSolver().solve(PackedPoints.of(points), clipper);
+        assert task.getsPoints().get(0).getPos().equals(points.get(expected.i()).getPos());
+        assert task.getsPoints().get(1).getPos().equals(points.get(expected.j()).getPos());
+    }
+
+    /**
+     * Нагрузочный тест снимков: задача меняется, пока другие потоки решают и читают её снимки
+     */
+    @Test
+    public void testSnapshots() throws InterruptedException {
+        Random random = new Random(29);
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 80; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), points, tops);
+        // снимок не зависит от списков, переданных в задачу
+        points.clear();
+        assert task.getPoints().size() == 80;
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            Thread reader = new Thread(() -> {
+                long lastVersion = -1;
+                try {
+                    while (running.get()) {
+                        TaskSnapshot snapshot = task.getSnapshot();
+                        assert snapshot.version() >= lastVersion;
+                        lastVersion = snapshot.version();
+                        // решение снимка ссылается на его же точки
+                        if (snapshot.solved() && snapshot.chord().exists()) {
+                            assert snapshot.sPoints().get(0) == snapshot.points().get(snapshot.chord().i());
+                            assert snapshot.sPoints().get(1) == snapshot.points().get(snapshot.chord().j());
+                            assert snapshot.crossPoints().size() == 2;
+                        }
+                        ChordClipper clipper = snapshot.clipper();
+                        if (clipper != null && snapshot.points().size() >= 2) {
+                            PackedPoints packed = PackedPoints.of(snapshot.points());
+                            assert packed.size() == snapshot.points().size();
+                            assert new ParallelSolver().solve(packed, clipper)
+                                    .equals(new BruteForceSolver().solve(packed, clipper));
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        // изменения идут из одного потока, как из потока интерфейса
+        int expected = 80;
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(100);
+            if (action < 55) {
+                task.addPoint(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10));
+                expected++;
+            } else if (action < 85 && expected > 0) {
+                task.removePoint(random.nextInt(expected));
+                expected--;
+            } else if (action < 95) {
+                task.solve();
+            } else if (action < 98) {
+                task.cancel();
+            } else {
+                task.clear();
+                task.addTop(new Vector2d(-3, -2));
+                task.addTop(new Vector2d(4, 3));
+                expected = 0;
+            }
+            assert task.getPoints().size() == expected;
+        }
+        running.set(false);
+        for (Thread reader : readers)
+            reader.join();
+        assert failure.get() == null : failure.get();
+
+        // ответ фонового решения по устаревшему снимку отбрасывается
+        task.addRandomPoints(40);
+        CountDownLatch done = new CountDownLatch(1);
+        task.cancel();
+        assert task.solveInBackground(done::countDown);
+        task.addPoint(new Vector2d(0.5, 0.5));
+        assert done.await(10, TimeUnit.SECONDS);
+        assert !task.finishBackgroundSolve();
+        assert !task.isSolved();
+    }
+
+    /**
+     * Тест истории: неизменяемый список с общей структурой, отмена и повтор изменений задачи
+     */
+    @Test
+    public void testHistory() {
+        Random random = new Random(30);
+        List<PersistentList<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expected = new ArrayList<>();
+        PersistentList<Integer> list = PersistentList.of(List.of(1, 2, 3));
+        ArrayList<Integer> model = new ArrayList<>(List.of(1, 2, 3));
+        for (int step = 0; step < 5000; step++) {
+            int action = random.nextInt(10);
+            if (action < 5 || model.isEmpty()) {
+                list = list.plus(step);
+                model.add(step);
+            } else if (action < 8) {
+                int index = random.nextInt(model.size());
+                list = list.minus(index);
+                model.remove(index);
+            } else {
+                int index = random.nextInt(model.size());
+                list = list.with(index, -step);
+                model.set(index, -step);
+            }
+            if (step % 97 == 0) {
+                versions.add(list);
+                expected.add(new ArrayList<>(model));
+            }
+        }
+        assert list.equals(model) && model.equals(list);
+        for (int i = 0; i < model.size(); i++)
+            assert list.get(i).equals(model.get(i));
+        // старые версии не меняются от новых изменений
+        for (int v = 0; v < versions.size(); v++)
+            assert versions.get(v).equals(expected.get(v));
+
+        ArrayList<Point> tops = new ArrayList<>();
+        Task task = new Task(new CoordinateSystem2d(-10, -10, 20, 20), new ArrayList<>(), tops);
+        assert !task.undo();
+        task.addPoint(new Vector2d(1, 1));
+        task.addPoint(new Vector2d(2, 3));
+        task.addRandomPoints(10);
+        task.addTop(new Vector2d(-3, -2));
+        task.addTop(new Vector2d(4, 3));
+        task.removePoint(0);
+        List<Point> full = task.getPoints();
+        task.solve();
+        assert task.isSolved();
+        task.clear();
+        assert task.getPoints().isEmpty();
+
+        assert task.undo();
+        assert task.getPoints() == full && task.getTops().size() == 2 && !task.isSolved();
+        assert task.undo();
+        assert task.getPoints().size() == 12 && task.getPoints().get(0).getPos().equals(new Vector2d(1, 1));
+        assert task.undo() && task.undo();
+        assert task.getTops().isEmpty();
+        // случайные точки отменяются одним шагом
+        assert task.undo();
+        assert task.getPoints().size() == 2;
+        assert task.redo() && task.redo();
+        assert task.getPoints().size() == 12 && task.getTops().size() == 1;
+        // новое изменение стирает отменённые шаги
+        task.addPoint(new Vector2d(5, 5));
+        assert !task.redo();
+        assert task.undo() && task.undo();
+        assert task.getPoints().size() == 12 && task.getTops().isEmpty();
+    }
+
+    /**
+     * Тест решения по файлу точек, отображённому в память
+     */
+    @Test
+    public void testMapped() throws IOException {
+        Random random = new Random(31);
+        PackedPoints packed = new PackedPoints();
+        // несколько блоков и неполный последний блок, плюс точки на одной прямой для равных хорд
+        for (int i = 0; i < 9000; i++)
+            packed.add(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10);
+        for (int i = 0; i < 5; i++)
+            packed.add(-9 + i, -9 + i);
+        ChordClipper clipper = ChordClipper.of(new Vector2d(-3, -2), new Vector2d(4, 3));
+        Path file = Files.createTempFile("points", ".pts");
+        MappedPoints.write(file, packed);
+        assert Files.size(file) == 16 + 16L * packed.size();
+        try (MappedPoints points = MappedPoints.open(file)) {
+            assert points.size() == packed.size();
+            double[] xs = new double[3];
+            double[] ys = new double[3];
+            points.read(4095, 3, xs, ys);
+            assert xs[1] == packed.xs()[4096] && ys[2] == packed.ys()[4097];
+            SolveProgress progress = new SolveProgress(points.size());
+            MappedSolver.Result result = new MappedSolver().solve(points, clipper, progress);
+            assert result.chord().equals(new BruteForceSolver().solve(packed, clipper));
+            assert progress.getDone() == progress.getTotal();
+            // строка блоков читает свой блок и все следующие: блок 0 один раз, блок 1 дважды, блок 2 трижды
+            assert result.bytesRead() == 16L * (3 * 4096 + 3 * (packed.size() - 2 * 4096));
+        }
+        Files.writeString(file, "не файл точек");
+        boolean rejected = false;
+        try {
+            MappedPoints.open(file).close();
+        } catch (IOException e) {
+            rejected = true;
+        }
+        assert rejected;
+        Files.delete(file);
+    }
+
+    /**
+     * Двоичный формат задачи: точки, прямоугольник и режим переживают запись и чтение,
+     * файл меньше JSON, повреждённый файл отвергается
+     */
+    @Test
+    public void testTaskBinary() throws IOException {
+        Random random = new Random(37);
+        ArrayList<Point> points = new ArrayList<>();
+        // больше одного блока, отрицательные, целые и одинаковые координаты
+        for (int i = 0; i < 5000; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextInt(21) - 10)));
+        points.add(new Point(new Vector2d(-0.0, Double.MAX_VALUE)));
+        points.add(new Point(new Vector2d(-0.0, Double.MAX_VALUE)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task task = new Task(new CoordinateSystem2d(new Vector2d(-10, -10), new Vector2d(10, 10)), points, tops);
+        task.setSolveMode(SolveMode.values()[SolveMode.values().length - 1]);
+        int jsonSize = new ObjectMapper().writeValueAsBytes(task).length;
+        for (boolean compress : new boolean[]{false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TaskBinary.write(task, out, compress);
+            assert out.size() < jsonSize / 2;
+            Task read = TaskBinary.read(new ByteArrayInputStream(out.toByteArray()));
+            assert read.getPoints().size() == points.size();
+            for (int i = 0; i < points.size(); i++)
+                assert Double.doubleToRawLongBits(read.getPoints().get(i).getPos().x)
+                        == Double.doubleToRawLongBits(points.get(i).getPos().x)
+                        && read.getPoints().get(i).getPos().y == points.get(i).getPos().y;
+            assert read.getTops().get(1).getPos().equals(tops.get(1).getPos());
+            assert read.getOwnCS().getMax().equals(task.getOwnCS().getMax());
+            assert read.getSolveMode() == task.getSolveMode();
+
+            byte[] broken = Arrays.copyOf(out.toByteArray(), out.size() - 7);
+            boolean rejected = false;
+            try {
+                TaskBinary.read(new ByteArrayInputStream(broken));
+            } catch (IOException e) {
+                rejected = true;
+            }
+            assert rejected;
+        }
+    }
+
+    /**
+     * Потоковый загрузчик читает то же, что и привязка данных Jackson,
+     * в том числе старые файлы с лишними полями
+     */
+    @Test
+    public void testTaskReader() throws IOException {
+        // как conf2.json: класс, целые координаты, поля setType и solved
+        String old = "{\"@class\":\"app.Task\",\"ownCS\":{\"min\":{\"x\":-10,\"y\":-10.0}," +
+                "\"max\":{\"x\":10.0,\"y\":10}},\"points\":[{\"pos\":{\"x\":-1.0,\"y\":1}," +
+                "\"setType\":\"FIRST_SET\"},{\"setType\":\"SECOND_SET\",\"pos\":{\"x\":1.5,\"y\":-2.25}}]," +
+                "\"solved\":true}";
+        Task task = TaskReader.parse(old).toTask();
+        assert task.getOwnCS().getMin().equals(new Vector2d(-10, -10));
+        assert task.getPoints().equals(List.of(new Point(new Vector2d(-1, 1)), new Point(new Vector2d(1.5, -2.25))));
+        assert task.getTops().isEmpty();
+        assert task.getSolveMode() == SolveMode.BRUTE_FORCE;
+
+        Random random = new Random(41);
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            points.add(new Point(new Vector2d(random.nextGaussian() * 1e-7, random.nextDouble() * 1e9)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task saved = new Task(new CoordinateSystem2d(new Vector2d(-10, -10), new Vector2d(10, 10)), points, tops);
+        saved.setSolveMode(SolveMode.values()[SolveMode.values().length - 1]);
+        String json = new ObjectMapper().writeValueAsString(saved);
+        Task bound = new ObjectMapper().readValue(json, Task.class);
+        Task streamed = TaskReader.parse(json).toTask();
+        assert streamed.getPoints().equals(bound.getPoints()) && streamed.getPoints().equals(points);
+        assert streamed.getTops().equals(bound.getTops());
+        assert streamed.getSolveMode() == bound.getSolveMode();
+
+        // файлы с убранным режимом float32 решаются полным перебором
+        String float32 = "{\"points\":[],\"solveMode\":\"FLOAT32\"}";
+        assert TaskReader.parse(float32).toTask().getSolveMode() == SolveMode.BRUTE_FORCE;
+        assert new ObjectMapper().readValue(float32, Task.class).getSolveMode() == SolveMode.BRUTE_FORCE;
+
+        boolean rejected = false;
+        try {
+            TaskReader.parse("{\"points\":[{\"pos\":{\"x\":1,\"y\":2}},{\"x\":3}]}");
+        } catch (IOException e) {
+            rejected = true;
+        }
+        assert rejected;
+    }
+
+    /**
+     * Фоновые загрузка и сохранение: запись атомарная и без временных файлов,
+     * при загрузке большой задачи приходят промежуточные задачи растущего размера
+     */
+    @Test
+    public void testTaskFiles() throws Exception {
+        Random random = new Random(43);
+        ArrayList<Point> points = new ArrayList<>();
+        for (int i = 0; i < 70000; i++)
+            points.add(new Point(new Vector2d(random.nextDouble() * 20 - 10, random.nextDouble() * 20 - 10)));
+        ArrayList<Point> tops = new ArrayList<>();
+        tops.add(new Point(new Vector2d(-3, -2)));
+        tops.add(new Point(new Vector2d(4, 3)));
+        Task task = new Task(new CoordinateSystem2d(new Vector2d(-10, -10), new Vector2d(10, 10)), points, tops);
+        Path dir = Files.createTempDirectory("tasks");
+        for (String name : new String[]{"task.json", "task" + TaskBinary.EXTENSION}) {
+            Path file = dir.resolve(name);
+            Files.writeString(file, "старое содержимое");
+            TaskFiles.save(task, file).get();
+            List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+            Task loaded = TaskFiles.load(file, partial -> sizes.add(partial.getPoints().size())).get();
+            assert loaded.getPoints().equals(points) && loaded.getTops().equals(tops);
+            // промежуточные задачи есть только у потокового JSON
+            if (name.endsWith(".json"))
+                assert sizes.equals(List.of(65536));
+        }
+        boolean failed = false;
+        try {
+            TaskFiles.save(task, dir.resolve("missing").resolve("task.json")).get();
+        } catch (ExecutionException e) {
+            failed = e.getCause() instanceof UncheckedIOException;
+        }
+        assert failed;
+        try (var files = Files.list(dir)) {
+            assert files.filter(f -> f.toString().endsWith(".tmp")).count() == 0;
+        }
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Журнал изменений: после "падения" задача восстанавливается по снимку и журналу,
+     * оборванный хвост отбрасывается, разросшийся журнал складывается в снимок
+     */
+    @Test
+    public void testJournal() throws Exception {
+        Path dir = Files.createTempDirectory("journal");
+        CoordinateSystem2d cs = new CoordinateSystem2d(new Vector2d(-10, -10), new Vector2d(10, 10));
+        TaskJournal journal = TaskJournal.open(dir, TaskJournal.COMPACT_BYTES);
+        assert journal.getRecovered() == null;
+        Task task = new Task(cs, new ArrayList<>(), new ArrayList<>());
+        task.addPoint(new Vector2d(9, 9));
+        task.setJournal(journal);
+        task.addRandomPoints(500);
+        task.addTop(new Vector2d(-3, -2));
+        task.addTop(new Vector2d(4, 3));
+        task.removePoint(7);
+        task.clear();
+        for (int i = 0; i < 20; i++)
+            task.addPoint(new Vector2d(i * 0.5, -i * 0.25));
+        task.addTop(new Vector2d(1, 1));
+        task.removePoint(0);
+        journal.sync();
+        long compactions = journal.getCompactions();
+        // отмена и повтор пишутся обратными записями: вставка точки, удаление вершины и точки, добавление точки
+        task.undo();
+        task.undo();
+        task.undo();
+        task.redo();
+        journal.sync();
+        assert journal.getCompactions() == compactions;
+        // записи пачки фиксируются общим fsync
+        assert journal.getCommits() < journal.getRecords();
+        // процесс "падает": журнал не закрывается
+        TaskJournal reopened = TaskJournal.open(dir, TaskJournal.COMPACT_BYTES);
+        Task recovered = reopened.getRecovered();
+        assert reopened.getReplayed() == 500 + 2 + 1 + 1 + 20 + 1 + 1 + 4;
+        assert task.getPoints().size() == 20 && task.getTops().isEmpty();
+        assert recovered.getPoints().equals(task.getPoints()) && recovered.getTops().equals(task.getTops());
+        assert recovered.getOwnCS().getMax().equals(cs.getMax());
+        reopened.close();
+
+        // оборванная последняя запись не мешает восстановлению
+        Path log;
+        try (var files = Files.list(dir)) {
+            log = files.filter(f -> f.toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.write(log, new byte[]{1, 0, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+        reopened = TaskJournal.open(dir, 64);
+        recovered = reopened.getRecovered();
+        assert recovered.getPoints().equals(task.getPoints());
+        // маленький порог: журнал складывается в снимок, старые файлы удаляются
+        recovered.setJournal(reopened);
+        for (int i = 0; i < 50; i++) {
+            recovered.addPoint(new Vector2d(i, i * 0.125));
+            reopened.sync();
+        }
+        recovered.undo();
+        reopened.sync();
+        assert reopened.getCompactions() > 2;
+        try (var files = Files.list(dir)) {
+            assert files.count() == 2;
+        }
+        TaskJournal last = TaskJournal.open(dir, TaskJournal.COMPACT_BYTES);
+        assert last.getRecovered().getPoints().equals(recovered.getPoints());
+        assert last.getRecovered().getPoints().size() == task.getPoints().size() + 49;
+        last.close();
+        reopened.close();
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList())
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
 }